@@ -0,0 +1,31 @@
+package org.pipservices3.memcached.benchmark;
+
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.memcached.embedded.MemcachedTestServer;
+
+/**
+ * Builds configuration of benchmarked components.
+ * The memcached server is set by MEMCACHED_SERVICE_HOST and MEMCACHED_SERVICE_PORT environment variables.
+ * When they are not set, benchmarks run against the embedded in-JVM memcached server.
+ */
+public class BenchmarkConfig {
+    /**
+     * Creates configuration to connect to the benchmarked memcached server.
+     *
+     * @param options additional configuration parameters as key-value pairs.
+     * @return the configuration parameters.
+     */
+    public static ConfigParams create(Object... options) {
+        var host = MemcachedTestServer.getHost();
+        var port = MemcachedTestServer.getPort();
+
+        var tuples = new Object[options.length + 4];
+        tuples[0] = "connection.host";
+        tuples[1] = host;
+        tuples[2] = "connection.port";
+        tuples[3] = port;
+        System.arraycopy(options, 0, tuples, 4, options.length);
+
+        return ConfigParams.fromTuples(tuples);
+    }
+}
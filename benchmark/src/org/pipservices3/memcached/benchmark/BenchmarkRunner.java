@@ -0,0 +1,33 @@
+package org.pipservices3.memcached.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with several thread counts and saves results as JSON,
+ * so they can be compared between versions.
+ * <p>
+ * Thread counts are set by BENCHMARK_THREADS environment variable (default: 1,4,16).
+ * Command line arguments are standard JMH options, for example a benchmark name filter.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        var commandLine = new CommandLineOptions(args);
+        var threadCounts = System.getenv("BENCHMARK_THREADS") != null ? System.getenv("BENCHMARK_THREADS") : "1,4,16";
+
+        for (var threads : threadCounts.split(",")) {
+            var options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("benchmark-results-" + threads.trim() + "-threads.json")
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+}
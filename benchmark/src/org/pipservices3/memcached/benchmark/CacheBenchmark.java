@@ -0,0 +1,96 @@
+package org.pipservices3.memcached.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.memcached.cache.MemcachedCache;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures throughput and latency percentiles of MemcachedCache operations.
+ * Pool sizes show how throughput grows with connections when the runner uses several threads.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+    private static final AtomicLong SEEDS = new AtomicLong();
+
+    @Param({"16", "1024", "16384", "131072"})
+    public int valueSize;
+
+    @Param({"text", "binary"})
+    public String protocol;
+
+    @Param({"uniform", "zipfian"})
+    public String keyDistribution;
+
+    @Param({"10000"})
+    public int keyCount;
+
+    @Param({"1", "4", "16"})
+    public int poolSize;
+
+    private MemcachedCache _cache;
+    private String _value;
+
+    @State(Scope.Thread)
+    public static class Keys {
+        private KeyGenerator _generator;
+
+        @Setup(Level.Trial)
+        public void setup(CacheBenchmark benchmark) {
+            _generator = new KeyGenerator("bench_cache_", benchmark.keyCount,
+                    benchmark.keyDistribution, SEEDS.incrementAndGet());
+        }
+
+        public String next() {
+            return _generator.next();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws ApplicationException {
+        var chars = new char[valueSize];
+        Arrays.fill(chars, 'x');
+        _value = new String(chars);
+
+        _cache = new MemcachedCache();
+        _cache.configure(BenchmarkConfig.create(
+                "options.protocol", protocol,
+                "options.pool_size", poolSize,
+                "options.shared_client", false
+        ));
+        _cache.open(null);
+
+        var generator = new KeyGenerator("bench_cache_", keyCount, keyDistribution, 0);
+        for (var key : generator.getKeys())
+            _cache.store(null, key, _value, 600000);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        _cache.close(null);
+    }
+
+    @Benchmark
+    public Object store(Keys keys) {
+        return _cache.store(null, keys.next(), _value, 600000);
+    }
+
+    @Benchmark
+    public void retrieve(Keys keys, Blackhole blackhole) {
+        blackhole.consume(_cache.retrieve(null, keys.next()));
+    }
+
+    @Benchmark
+    public void remove(Keys keys) {
+        _cache.remove(null, keys.next());
+    }
+}
@@ -0,0 +1,107 @@
+package org.pipservices3.memcached.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.memcached.cache.MemcachedCache;
+import org.pipservices3.memcached.codec.MemcachedTranscoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures latency of storing and retrieving a large document with different compression modes.
+ * The size of the document on the wire and its compression ratio are reported
+ * as the encodedBytes, rawBytes and compressionRatio secondary results.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    @Param({"none", "deflate", "gzip"})
+    public String compression;
+
+    @Param({"1000"})
+    public int itemCount;
+
+    private MemcachedCache _cache;
+    private List<Map<String, Object>> _document;
+    private int _rawBytes;
+    private int _encodedBytes;
+
+    /**
+     * Reports sizes of the document encoded the same way as the cache sends it.
+     * Counters of all threads are summed, so only the first thread reports them.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ValueSize {
+        public long encodedBytes;
+        public long rawBytes;
+
+        @Setup(Level.Iteration)
+        public void setup(CompressionBenchmark benchmark, ThreadParams threadParams) {
+            if (threadParams.getThreadIndex() == 0) {
+                encodedBytes = benchmark._encodedBytes;
+                rawBytes = benchmark._rawBytes;
+            }
+        }
+
+        public double compressionRatio() {
+            return encodedBytes > 0 ? (double) rawBytes / encodedBytes : 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws ApplicationException {
+        _document = new ArrayList<>();
+        for (var i = 0; i < itemCount; i++) {
+            var item = new HashMap<String, Object>();
+            item.put("id", i);
+            item.put("name", "item " + i);
+            item.put("description", "a description of the cached item number " + i);
+            item.put("tags", List.of("red", "green", "blue"));
+            _document.add(item);
+        }
+
+        var transcoder = new MemcachedTranscoder(MemcachedTranscoder.createCodec("json"));
+        _rawBytes = transcoder.encode(_document).getData().length;
+        if (!"none".equalsIgnoreCase(compression)) {
+            transcoder.setCompressionMode(MemcachedTranscoder.parseCompressionMode(compression));
+            transcoder.setCompressionThreshold(COMPRESSION_THRESHOLD);
+        }
+        _encodedBytes = transcoder.encode(_document).getData().length;
+
+        _cache = new MemcachedCache();
+        _cache.configure(BenchmarkConfig.create(
+                "options.compression", compression,
+                "options.compression_threshold", COMPRESSION_THRESHOLD
+        ));
+        _cache.open(null);
+        _cache.store(null, "bench_compressed", _document, 600000);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        _cache.close(null);
+    }
+
+    @Benchmark
+    public Object store(ValueSize size) {
+        return _cache.store(null, "bench_compressed", _document, 600000);
+    }
+
+    @Benchmark
+    public void retrieve(ValueSize size, Blackhole blackhole) {
+        blackhole.consume(_cache.retrieve(null, "bench_compressed"));
+    }
+}
@@ -0,0 +1,75 @@
+package org.pipservices3.memcached.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates benchmark keys with uniform or zipfian distribution.
+ * Zipfian distribution models a small set of hot keys receiving most of the traffic.
+ */
+public class KeyGenerator {
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    private final String[] _keys;
+    private final double[] _cumulative;
+    private final SplittableRandom _random;
+
+    /**
+     * Creates a new instance of the generator.
+     *
+     * @param prefix       a prefix of generated keys.
+     * @param keyCount     a number of distinct keys.
+     * @param distribution a key distribution: uniform or zipfian.
+     * @param seed         a random seed.
+     */
+    public KeyGenerator(String prefix, int keyCount, String distribution, long seed) {
+        _keys = new String[keyCount];
+        for (var i = 0; i < keyCount; i++)
+            _keys[i] = prefix + i;
+
+        _random = new SplittableRandom(seed);
+
+        if ("zipfian".equalsIgnoreCase(distribution)) {
+            _cumulative = new double[keyCount];
+            var sum = 0.0;
+            for (var i = 0; i < keyCount; i++) {
+                sum += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+                _cumulative[i] = sum;
+            }
+            for (var i = 0; i < keyCount; i++)
+                _cumulative[i] /= sum;
+        } else {
+            _cumulative = null;
+        }
+    }
+
+    /**
+     * Gets all distinct keys.
+     *
+     * @return the generated keys.
+     */
+    public String[] getKeys() {
+        return _keys;
+    }
+
+    /**
+     * Picks the next key.
+     *
+     * @return a key from the configured distribution.
+     */
+    public String next() {
+        if (_cumulative == null)
+            return _keys[_random.nextInt(_keys.length)];
+
+        var point = _random.nextDouble();
+        var low = 0;
+        var high = _cumulative.length - 1;
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (_cumulative[middle] < point)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return _keys[low];
+    }
+}
@@ -0,0 +1,74 @@
+package org.pipservices3.memcached.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.memcached.lock.MemcachedLock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures throughput and latency percentiles of MemcachedLock operations.
+ * Each operation acquires and releases a lock, so the lock is found free
+ * unless concurrent threads pick the same key.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LockBenchmark {
+    private static final AtomicLong SEEDS = new AtomicLong();
+
+    @Param({"uniform", "zipfian"})
+    public String keyDistribution;
+
+    @Param({"1000"})
+    public int keyCount;
+
+    private MemcachedLock _lock;
+
+    @State(Scope.Thread)
+    public static class Keys {
+        private KeyGenerator _generator;
+
+        @Setup(Level.Trial)
+        public void setup(LockBenchmark benchmark) {
+            _generator = new KeyGenerator("bench_lock_", benchmark.keyCount,
+                    benchmark.keyDistribution, SEEDS.incrementAndGet());
+        }
+
+        public String next() {
+            return _generator.next();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws ApplicationException {
+        _lock = new MemcachedLock();
+        _lock.configure(BenchmarkConfig.create("options.retry_timeout", 1));
+        _lock.open(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        _lock.close(null);
+    }
+
+    @Benchmark
+    public boolean tryAcquireLock(Keys keys) {
+        var key = keys.next();
+        var acquired = _lock.tryAcquireLock(null, key, 10000);
+        if (acquired)
+            _lock.releaseLock(null, key);
+        return acquired;
+    }
+
+    @Benchmark
+    public void acquireLock(Keys keys) throws ApplicationException, InterruptedException {
+        var key = keys.next();
+        _lock.acquireLock(null, key, 10000, 5000);
+        _lock.releaseLock(null, key);
+    }
+}
@@ -3,17 +3,26 @@ package org.pipservices3.memcached.build;
 import org.pipservices3.commons.refer.Descriptor;
 import org.pipservices3.components.build.Factory;
 import org.pipservices3.memcached.cache.MemcachedCache;
+import org.pipservices3.memcached.cache.MemcachedCounterAccumulator;
+import org.pipservices3.memcached.cache.MemcachedNearCache;
 import org.pipservices3.memcached.lock.MemcachedLock;
+import org.pipservices3.memcached.stats.MemcachedStatsCollector;
 
 /**
  * Creates Redis components by their descriptors.
  *
  * @see MemcachedCache
+ * @see MemcachedNearCache
  * @see MemcachedLock
+ * @see MemcachedStatsCollector
+ * @see MemcachedCounterAccumulator
  */
 public class DefaultMemcachedFactory extends Factory {
     private static final Descriptor MemcachedCacheDescriptor = new Descriptor("pip-services", "cache", "memcached", "*", "1.0");
+    private static final Descriptor MemcachedNearCacheDescriptor = new Descriptor("pip-services", "cache", "memcached-near", "*", "1.0");
     private static final Descriptor MemcachedLockDescriptor = new Descriptor("pip-services", "lock", "memcached", "*", "1.0");
+    private static final Descriptor MemcachedStatsCollectorDescriptor = new Descriptor("pip-services", "stats-collector", "memcached", "*", "1.0");
+    private static final Descriptor MemcachedCounterAccumulatorDescriptor = new Descriptor("pip-services", "counter-accumulator", "memcached", "*", "1.0");
 
     /**
      * Create a new instance of the factory.
@@ -21,6 +30,9 @@ public class DefaultMemcachedFactory extends Factory {
     public DefaultMemcachedFactory() {
         super();
         this.registerAsType(DefaultMemcachedFactory.MemcachedCacheDescriptor, MemcachedCache.class);
+        this.registerAsType(DefaultMemcachedFactory.MemcachedNearCacheDescriptor, MemcachedNearCache.class);
         this.registerAsType(DefaultMemcachedFactory.MemcachedLockDescriptor, MemcachedLock.class);
+        this.registerAsType(DefaultMemcachedFactory.MemcachedStatsCollectorDescriptor, MemcachedStatsCollector.class);
+        this.registerAsType(DefaultMemcachedFactory.MemcachedCounterAccumulatorDescriptor, MemcachedCounterAccumulator.class);
     }
 }
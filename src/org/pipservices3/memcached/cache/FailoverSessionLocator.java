@@ -0,0 +1,67 @@
+package org.pipservices3.memcached.cache;
+
+import com.google.code.yanf4j.core.Session;
+import net.rubyeye.xmemcached.MemcachedSessionLocator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Session locator that ejects nodes opened by {@link NodeCircuitBreaker} from the key distribution.
+ * <p>
+ * Keys of ejected nodes are placed on the remaining nodes by the wrapped locator.
+ * Ejected nodes are returned to the distribution when their retry timeout passes,
+ * so the next request probes them.
+ */
+class FailoverSessionLocator implements MemcachedSessionLocator {
+    private final MemcachedSessionLocator _locator;
+    private final NodeCircuitBreaker _breaker;
+    private volatile List<Session> _sessions = new ArrayList<>();
+    private volatile long _nextRebuildTime = Long.MAX_VALUE;
+
+    /**
+     * Creates a new instance of the locator.
+     *
+     * @param locator a locator that distributes keys between available nodes.
+     * @param breaker a circuit breaker that tracks failing nodes.
+     */
+    FailoverSessionLocator(MemcachedSessionLocator locator, NodeCircuitBreaker breaker) {
+        _locator = locator;
+        _breaker = breaker;
+    }
+
+    @Override
+    public Session getSessionByKey(String key) {
+        if (System.currentTimeMillis() >= _nextRebuildTime)
+            this.rebuild();
+        return _locator.getSessionByKey(key);
+    }
+
+    @Override
+    public void updateSessions(Collection<Session> list) {
+        _sessions = new ArrayList<>(list);
+        this.rebuild();
+    }
+
+    @Override
+    public void setFailureMode(boolean failureMode) {
+        _locator.setFailureMode(failureMode);
+    }
+
+    /**
+     * Updates the key distribution after nodes are opened or closed.
+     */
+    synchronized void rebuild() {
+        var sessions = _sessions;
+        var available = new ArrayList<Session>();
+        for (var session : sessions) {
+            if (!_breaker.isOpen(session.getRemoteSocketAddress()))
+                available.add(session);
+        }
+
+        // Keep all nodes when every one of them fails, the breaker fails their calls fast
+        _locator.updateSessions(available.isEmpty() ? sessions : available);
+        _nextRebuildTime = _breaker.getNextRetryTime();
+    }
+}
@@ -0,0 +1,182 @@
+package org.pipservices3.memcached.cache;
+
+import org.pipservices3.components.count.ICounters;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Detector of frequently retrieved keys based on a sampled space-saving top-K sketch.
+ * <p>
+ * Only a share of retrieves is sampled, so most calls pay for a random number and a set lookup.
+ * Sampled keys are counted in a fixed number of slots: a new key replaces the key with the lowest
+ * count and inherits its count as the estimation error. Counts are collected in time windows,
+ * and a key is hot when its guaranteed count in the current or the previous window reaches the threshold.
+ */
+class HotKeyDetector {
+    private static final int MAX_RANK_COUNTERS = 10;
+
+    private static class Slot {
+        private long count;
+        private long error;
+
+        private Slot(long count, long error) {
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final HashMap<String, Slot> _slots = new HashMap<>();
+    private final int _capacity;
+    private final double _sampleRate;
+    private final long _threshold;
+    private final long _window;
+    private final ICounters _counters;
+    private long _windowEnd;
+    private volatile Set<String> _hotKeys = Set.of();
+    private volatile Map<String, Long> _topKeys = Map.of();
+
+    /**
+     * Creates a new instance of the detector.
+     *
+     * @param capacity   a number of counted keys.
+     * @param sampleRate a share of retrieves that are counted from 0 to 1.
+     * @param threshold  a number of retrieves in a window that makes a key hot.
+     * @param window     a duration of a window in milliseconds.
+     * @param counters   (optional) counters to publish counts of top keys of finished windows by their ranks.
+     */
+    HotKeyDetector(int capacity, double sampleRate, long threshold, long window, ICounters counters) {
+        _capacity = Math.max(1, capacity);
+        _sampleRate = Math.min(1, Math.max(0.0001, sampleRate));
+        _threshold = Math.max(1, threshold);
+        _window = Math.max(1, window);
+        _counters = counters;
+        _windowEnd = System.currentTimeMillis() + _window;
+    }
+
+    /**
+     * Records a retrieve of a key and checks if the key is hot.
+     *
+     * @param key a retrieved key.
+     * @return <code>true</code> if the key is hot and <code>false</code> otherwise.
+     */
+    boolean record(String key) {
+        if (_sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= _sampleRate)
+            return this.isHot(key);
+
+        synchronized (this) {
+            var now = System.currentTimeMillis();
+            if (now >= _windowEnd)
+                this.rotate(now);
+
+            var slot = _slots.get(key);
+            if (slot != null) {
+                slot.count++;
+            } else if (_slots.size() < _capacity) {
+                slot = new Slot(1, 0);
+                _slots.put(key, slot);
+            } else {
+                var minKey = this.findMinKey();
+                var min = _slots.remove(minKey);
+                slot = new Slot(min.count + 1, min.count);
+                _slots.put(key, slot);
+            }
+
+            // Guaranteed count is not affected by keys replaced in the slot
+            if (this.estimate(slot.count - slot.error) >= _threshold && !_hotKeys.contains(key)) {
+                var hotKeys = new HashSet<>(_hotKeys);
+                hotKeys.add(key);
+                _hotKeys = hotKeys;
+            }
+        }
+
+        return this.isHot(key);
+    }
+
+    /**
+     * Checks if a key is hot.
+     *
+     * @param key a key to check.
+     * @return <code>true</code> if the key is hot and <code>false</code> otherwise.
+     */
+    boolean isHot(String key) {
+        return _hotKeys.contains(key);
+    }
+
+    /**
+     * Gets the most retrieved keys of the last finished window.
+     *
+     * @return estimated numbers of retrieves by keys ordered from the most retrieved.
+     */
+    Map<String, Long> getTopKeys() {
+        synchronized (this) {
+            var now = System.currentTimeMillis();
+            if (now >= _windowEnd)
+                this.rotate(now);
+        }
+        return _topKeys;
+    }
+
+    /**
+     * Removes all counted keys.
+     */
+    synchronized void clear() {
+        _slots.clear();
+        _hotKeys = Set.of();
+        _topKeys = Map.of();
+        _windowEnd = System.currentTimeMillis() + _window;
+    }
+
+    private long estimate(long count) {
+        return Math.round(count / _sampleRate);
+    }
+
+    private String findMinKey() {
+        String minKey = null;
+        var minCount = Long.MAX_VALUE;
+        for (var entry : _slots.entrySet()) {
+            if (entry.getValue().count < minCount) {
+                minKey = entry.getKey();
+                minCount = entry.getValue().count;
+            }
+        }
+        return minKey;
+    }
+
+    private void rotate(long now) {
+        var entries = new ArrayList<>(_slots.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().count, a.getValue().count));
+
+        var topKeys = new LinkedHashMap<String, Long>();
+        var hotKeys = new HashSet<String>();
+        for (var entry : entries) {
+            var slot = entry.getValue();
+            topKeys.put(entry.getKey(), this.estimate(slot.count));
+            if (this.estimate(slot.count - slot.error) >= _threshold)
+                hotKeys.add(entry.getKey());
+        }
+
+        // A window without requests means the keys are no longer retrieved
+        if (now - _windowEnd >= _window) {
+            topKeys.clear();
+            hotKeys.clear();
+        }
+
+        // Counter names do not include keys, so their number is bounded and user data does not leak
+        if (_counters != null) {
+            var counts = topKeys.values().iterator();
+            for (var rank = 1; rank <= Math.min(_capacity, MAX_RANK_COUNTERS); rank++)
+                _counters.last("memcached.hot_keys.top" + rank, counts.hasNext() ? counts.next() : 0);
+        }
+
+        _slots.clear();
+        _topKeys = topKeys;
+        _hotKeys = hotKeys;
+        _windowEnd = now + _window;
+    }
+}
@@ -0,0 +1,68 @@
+package org.pipservices3.memcached.cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of {@link MemcachedCache#incrementMany(String, Map, long, long)}.
+ * <p>
+ * Servers are changed independently, so some counters can be applied while others fail.
+ * Deltas of failed keys were not applied or their outcome is unknown: when a server times out
+ * or fails in the middle of a pipeline, some of its commands may have been executed.
+ */
+public final class IncrementManyResult {
+    private final Map<String, Long> _values;
+    private final Set<String> _failedKeys;
+    private final List<String> _failedServers;
+
+    /**
+     * Creates a new instance of the result.
+     *
+     * @param values        new values of applied counters by their keys.
+     * @param failedKeys    keys of counters that were not applied or have unknown outcome.
+     * @param failedServers addresses of servers that failed or were skipped as failing.
+     */
+    IncrementManyResult(Map<String, Long> values, Set<String> failedKeys, List<String> failedServers) {
+        _values = Collections.unmodifiableMap(values);
+        _failedKeys = Collections.unmodifiableSet(failedKeys);
+        _failedServers = Collections.unmodifiableList(failedServers);
+    }
+
+    /**
+     * Gets new values of counters that were applied.
+     *
+     * @return the counter values by their keys.
+     */
+    public Map<String, Long> getValues() {
+        return _values;
+    }
+
+    /**
+     * Gets keys of counters that were not applied or whose outcome is unknown.
+     *
+     * @return the counter keys.
+     */
+    public Set<String> getFailedKeys() {
+        return _failedKeys;
+    }
+
+    /**
+     * Gets addresses of servers that failed or were skipped as failing.
+     *
+     * @return the server addresses as host:port.
+     */
+    public List<String> getFailedServers() {
+        return _failedServers;
+    }
+
+    /**
+     * Checks if all counters were applied.
+     *
+     * @return <code>true</code> if no keys failed and <code>false</code> otherwise.
+     */
+    public boolean isComplete() {
+        return _failedKeys.isEmpty();
+    }
+}
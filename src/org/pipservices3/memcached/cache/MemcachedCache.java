@@ -1,43 +1,236 @@
 package org.pipservices3.memcached.cache;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import net.rubyeye.xmemcached.XMemcachedClient;
+import net.rubyeye.xmemcached.GetsResponse;
+import net.rubyeye.xmemcached.MemcachedClient;
+import net.rubyeye.xmemcached.MemcachedSessionLocator;
+import net.rubyeye.xmemcached.XMemcachedClientBuilder;
 import net.rubyeye.xmemcached.exception.MemcachedException;
+import net.rubyeye.xmemcached.impl.ArrayMemcachedSessionLocator;
+import net.rubyeye.xmemcached.impl.KetamaMemcachedSessionLocator;
+import net.rubyeye.xmemcached.transcoders.CachedData;
+import net.rubyeye.xmemcached.transcoders.CompressionMode;
+import net.rubyeye.xmemcached.transcoders.Transcoder;
 import org.pipservices3.commons.config.ConfigParams;
 import org.pipservices3.commons.config.IConfigurable;
-import org.pipservices3.commons.convert.JsonConverter;
 import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.commons.errors.BadRequestException;
 import org.pipservices3.commons.errors.ConfigException;
+import org.pipservices3.commons.errors.ConflictException;
+import org.pipservices3.commons.errors.ConnectionException;
 import org.pipservices3.commons.errors.InvalidStateException;
 import org.pipservices3.commons.refer.IReferenceable;
 import org.pipservices3.commons.refer.IReferences;
+import org.pipservices3.commons.refer.ReferenceException;
 import org.pipservices3.commons.run.IOpenable;
 import org.pipservices3.components.cache.ICache;
+import org.pipservices3.components.connect.ConnectionParams;
 import org.pipservices3.components.connect.ConnectionResolver;
+import org.pipservices3.components.count.CompositeCounters;
+import org.pipservices3.memcached.codec.CachedValue;
+import org.pipservices3.memcached.codec.MemcachedTranscoder;
+import org.pipservices3.memcached.connect.MemcachedClientRegistry;
 
 import java.io.IOException;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * Distributed cache that stores values in Memcached caching service.
+ * <p>
+ * The current implementation does not support authentication.
+ * <p>
+ * {@link #incrementMany} and the meta protocol mode send meta commands, so they require memcached 1.6 or newer.
+ * Meta commands use separate connections, up to <code>options.pool_size</code> per server,
+ * that are not shared with other caches and locks whatever <code>options.protocol</code> is.
+ * <p>
+ * ### Configuration parameters ###
+ * <ul>
+ * <li>connection(s):
+ *   <ul>
+ *   <li>discovery_key:         (optional) a key to retrieve the connection from {@link org.pipservices3.components.connect.IDiscovery}
+ *   <li>host:                  host name or IP address
+ *   <li>port:                  port number
+ *   <li>uri:                   resource URI or connection string with all parameters in it
+ *   <li>weight:                (optional) relative share of keys placed on the server (default: 1)
+ *   </ul>
+ * <li>options:
+ *   <ul>
+ *   <li>protocol:              memcached protocol: text, binary or meta. Binary protocol sends pipelined multi-key
+ *                              writes as quiet commands without replies. Meta protocol sends regular commands as text
+ *                              and serves getOrLoad, peekTimeToLive and invalidate with single meta commands.
+ *                              In meta mode empty items without flags are recompute placeholders and read as misses,
+ *                              so empty values written by other clients without flags are misses too (default: text)
+ *   <li>pool_size:             number of connections opened to each server (default: 5)
+ *   <li>shared_client:         true to share the client with other caches and locks connected to the same servers with the same options.
+ *                              Clients with refresh_interval or remove set are never shared (default: true)
+ *   <li>distribution:          key distribution between servers: modulo or ketama consistent hashing (default: modulo)
+ *   <li>refresh_interval:      interval in milliseconds to re-resolve connections and update servers of the open client, 0 to disable (default: 0)
+ *   <li>timeout:               default time in milliseconds for a single operation and for the whole call (default: 5000)
+ *   <li>read_timeout:          time in milliseconds for a single read operation (default: timeout)
+ *   <li>write_timeout:         time in milliseconds for a single write operation (default: timeout)
+ *   <li>retries:               number of retries of failed reads, writes are never retried (default: 5)
+ *   <li>retry_backoff:         base delay in milliseconds between retries, doubled with each retry and randomized (default: 50)
+ *   <li>deadline:              maximum time in milliseconds of a call including all retries (default: timeout)
+ *   <li>failures:              number of consecutive failures after which a server gets no requests, 0 to disable (default: 5)
+ *   <li>retry:                 time in milliseconds a failed server gets no requests before it is probed again (default: 30000)
+ *   <li>remove:                true to move keys of a failed server to other servers, false to fail them fast with NODE_UNAVAILABLE errors or misses in fail-open mode (default: false)
+ *   <li>fail_open:             true to turn errors of reads into misses and drop failed writes instead of throwing errors (default: false)
+ *   <li>fail_open_failures:    number of consecutive failed calls after which calls skip the network in fail-open mode (default: 5)
+ *   <li>fail_open_window:      time in milliseconds calls skip the network before the cluster is probed again (default: 1000)
+ *   <li>codec:                 codec for values other than strings and byte arrays: json, binary, raw or codec class name (default: json)
+ *   <li>compression:           compression of large values: none, deflate or gzip (default: none)
+ *   <li>compression_threshold: minimum size in bytes of values that are compressed (default: 16384)
+ *   <li>coalesce_reads:        true to share a single request between concurrent retrieves of the same key (default: true)
+ *   <li>load_lock_timeout:     time in milliseconds a recompute lock taken by getOrLoad is held at most (default: 10000)
+ *   <li>load_wait_timeout:     time in milliseconds getOrLoad waits for a value recomputed by another caller (default: 5000)
+ *   <li>load_retry_timeout:    interval in milliseconds between checks for a value recomputed by another caller (default: 100)
+ *   <li>stale_timeout:         time in milliseconds getOrLoad keeps serving expired values while one caller refreshes them, 0 to disable (default: 0)
+ *   <li>async_threads:         maximum number of threads serving asynchronous operations, started on first use (default: 2)
+ *   <li>async_batch_size:      maximum number of keys fetched by a single asynchronous multi-get (default: 100)
+ *   <li>cas_retries:           number of times update retries a write that lost a race with another writer (default: 10)
+ *   </ul>
+ * <li>near_cache:
+ *   <ul>
+ *   <li>enabled:               true to keep recently used values in process memory (default: false)
+ *   <li>max_size:              maximum number of values kept in process memory (default: 1000)
+ *   <li>max_weight:            maximum estimated size in bytes of values kept in process memory, 0 for no limit (default: 0)
+ *   <li>timeout:               time in milliseconds values are kept in process memory, capped by their expiration (default: 1000)
+ *   </ul>
+ * <li>hot_keys:
+ *   <ul>
+ *   <li>enabled:               true to detect keys that get a large share of retrieves (default: false)
+ *   <li>capacity:              number of most retrieved keys that are tracked (default: 100)
+ *   <li>sample_rate:           share of retrieves that are counted from 0 to 1 (default: 0.01)
+ *   <li>threshold:             number of retrieves of a key in a window that makes it hot (default: 1000)
+ *   <li>window:                time in milliseconds retrieves are counted in (default: 1000)
+ *   <li>promote:               true to keep local copies of hot keys, so they are served without network calls (default: false)
+ *   <li>timeout:               time in milliseconds local copies of hot keys are kept, capped by their expiration (default: 500)
+ *   </ul>
+ * </ul>
+ * <p>
+ * ### References ###
+ * <ul>
+ * <li>*:discovery:*:*:1.0        (optional) {@link org.pipservices3.components.connect.IDiscovery} services to resolve connection
+ * <li>*:counters:*:*:1.0         (optional) {@link org.pipservices3.components.count.ICounters} components to pass collected measurements
+ * </ul>
+ * <p>
+ * ### Counters ###
+ * <ul>
+ * <li>memcached.&lt;operation&gt;.call_time:   time of retrieve, store, remove, retrieve_many, store_many, remove_many, get_or_load
+ *                                     and meta_get, meta_set, meta_delete, update, gets, cas, increment, decrement,
+ *                                     get_counter, increment_many calls
+ * <li>memcached.update.conflicts:        number of update writes that lost a race and were retried
+ * <li>memcached.&lt;operation&gt;.errors:      number of failed calls
+ * <li>memcached.retrieve.hits / misses:  number of found and missing values, including near cache hits
+ * <li>memcached.near_cache.hits:         number of values found in the near cache
+ * <li>memcached.hot_keys.hits:           number of values found in local copies of hot keys
+ * <li>memcached.hot_keys.top1..top10:    estimated number of retrieves of the top keys by rank in the last window, see getHotKeys()
+ * <li>memcached.get_or_load.loads:       number of values loaded by getOrLoad
+ * <li>memcached.suppressed_errors:       number of errors suppressed in fail-open mode
+ * <li>memcached.&lt;host:port&gt;.call_time / errors: time and failures of single-key operations by server
+ * <li>memcached.encode.time / decode.time: time of value serialization
+ * <li>memcached.value_size:              size in bytes of stored values
+ * </ul>
+ */
 public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IOpenable {
 
+    /**
+     * Key of the whole cluster in the circuit breaker of fail-open mode.
+     */
+    private static final InetSocketAddress ALL_NODES = InetSocketAddress.createUnresolved("*", 0);
+
     private final ConnectionResolver _connectionResolver = new ConnectionResolver();
+    private final CompositeCounters _counters = new CompositeCounters();
 
 //    private int _maxKeySize = 250;
 //    private long _maxExpiration = 2592000;
 //    private long _maxValue = 1048576;
-//    private int _poolSize = 5;
+    private String _protocol = "text";
+    private int _poolSize = 5;
+    private boolean _sharedClient = true;
 //    private int _reconnect = 10000;
-//    private int _timeout = 5000;
-//    private int _retries = 5;
-//    private int _failures = 5;
-//    private int _retry = 30000;
-//    private boolean _remove = false;
+    private int _timeout = 5000;
+    private int _retries = 5;
+    private long _readTimeout = 5000;
+    private long _writeTimeout = 5000;
+    private long _retryBackoff = 50;
+    private long _deadline = 5000;
+    private int _failures = 5;
+    private int _retry = 30000;
+    private boolean _remove = false;
+    private boolean _failOpen = false;
+    private int _failOpenFailures = 5;
+    private long _failOpenWindow = 1000;
 //    private int _idle = 5000;
 
-    private XMemcachedClient _client = null;
+    private String _distribution = "modulo";
+    private long _refreshInterval = 0;
+    private String _codec = "json";
+    private String _compression = "none";
+    private int _compressionThreshold = 16384;
+    private boolean _coalesceReads = true;
+    private long _loadLockTimeout = 10000;
+    private long _loadWaitTimeout = 5000;
+    private long _loadRetryTimeout = 100;
+    private long _staleTimeout = 0;
+    private int _asyncThreads = 2;
+    private int _asyncBatchSize = 100;
+    private int _casRetries = 10;
+
+    protected boolean _nearCacheEnabled = false;
+    private int _nearCacheMaxSize = 1000;
+    private long _nearCacheMaxWeight = 0;
+    private long _nearCacheTimeout = 1000;
+    private boolean _hotKeysEnabled = false;
+    private int _hotKeysCapacity = 100;
+    private double _hotKeysSampleRate = 0.01;
+    private long _hotKeysThreshold = 1000;
+    private long _hotKeysWindow = 1000;
+    private boolean _hotKeysPromote = false;
+    private long _hotKeysTimeout = 500;
+
+    private MemcachedClient _client = null;
+    private boolean _clientShared = false;
+    private MemcachedSessionLocator _sessionLocator = null;
+    private NodeCircuitBreaker _breaker = null;
+    private FailoverSessionLocator _failoverLocator = null;
+    private NodeCircuitBreaker _clusterBreaker = null;
+    private MetaProtocolClient _metaClient = null;
+    private boolean _metaProtocol = false;
+    private final AtomicLong _suppressedErrors = new AtomicLong();
+    private MemcachedTranscoder _transcoder = null;
+    private ExecutorService _executor = null;
+    private RetrieveBatcher _retrieveBatcher = null;
+    private NearCache _nearCache = null;
+    private HotKeyDetector _hotKeys = null;
+    private NearCache _hotCache = null;
+    private final SingleFlight<Object> _retrieveFlight = new SingleFlight<>();
+    private final SingleFlight<Object> _loadFlight = new SingleFlight<>();
+    private final Set<String> _refreshingKeys = ConcurrentHashMap.newKeySet();
+    private ExecutorService _refreshExecutor = null;
+    // Replaced as a whole by updateServers, so readers see a complete map without locks
+    private volatile Map<String, Integer> _servers = new LinkedHashMap<>();
+    private ScheduledExecutorService _serversRefresher = null;
 
     /**
      * Configures component by passing configuration parameters.
@@ -48,17 +241,53 @@ public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IO
     public void configure(ConfigParams config) {
         this._connectionResolver.configure(config);
 
+        this._protocol = config.getAsStringWithDefault("options.protocol", this._protocol);
+        this._poolSize = Math.max(1, config.getAsIntegerWithDefault("options.pool_size", this._poolSize));
+        this._sharedClient = config.getAsBooleanWithDefault("options.shared_client", this._sharedClient);
+        this._distribution = config.getAsStringWithDefault("options.distribution", this._distribution);
+        this._refreshInterval = config.getAsLongWithDefault("options.refresh_interval", this._refreshInterval);
+        this._timeout = config.getAsIntegerWithDefault("options.timeout", this._timeout);
+        this._readTimeout = config.getAsLongWithDefault("options.read_timeout", this._timeout);
+        this._writeTimeout = config.getAsLongWithDefault("options.write_timeout", this._timeout);
+        this._retries = Math.max(0, config.getAsIntegerWithDefault("options.retries", this._retries));
+        this._retryBackoff = Math.max(1, config.getAsLongWithDefault("options.retry_backoff", this._retryBackoff));
+        this._deadline = config.getAsLongWithDefault("options.deadline", this._timeout);
+        this._failures = config.getAsIntegerWithDefault("options.failures", this._failures);
+        this._retry = config.getAsIntegerWithDefault("options.retry", this._retry);
+        this._remove = config.getAsBooleanWithDefault("options.remove", this._remove);
+        this._failOpen = config.getAsBooleanWithDefault("options.fail_open", this._failOpen);
+        this._failOpenFailures = config.getAsIntegerWithDefault("options.fail_open_failures", this._failOpenFailures);
+        this._failOpenWindow = config.getAsLongWithDefault("options.fail_open_window", this._failOpenWindow);
+        this._codec = config.getAsStringWithDefault("options.codec", this._codec);
+        this._compression = config.getAsStringWithDefault("options.compression", this._compression);
+        this._compressionThreshold = config.getAsIntegerWithDefault("options.compression_threshold", this._compressionThreshold);
+        this._coalesceReads = config.getAsBooleanWithDefault("options.coalesce_reads", this._coalesceReads);
+        this._loadLockTimeout = config.getAsLongWithDefault("options.load_lock_timeout", this._loadLockTimeout);
+        this._loadWaitTimeout = config.getAsLongWithDefault("options.load_wait_timeout", this._loadWaitTimeout);
+        this._loadRetryTimeout = Math.max(1, config.getAsLongWithDefault("options.load_retry_timeout", this._loadRetryTimeout));
+        this._staleTimeout = config.getAsLongWithDefault("options.stale_timeout", this._staleTimeout);
+        this._asyncThreads = Math.max(1, config.getAsIntegerWithDefault("options.async_threads", this._asyncThreads));
+        this._asyncBatchSize = Math.max(1, config.getAsIntegerWithDefault("options.async_batch_size", this._asyncBatchSize));
+        this._casRetries = Math.max(0, config.getAsIntegerWithDefault("options.cas_retries", this._casRetries));
+
+        this._nearCacheEnabled = config.getAsBooleanWithDefault("near_cache.enabled", this._nearCacheEnabled);
+        this._nearCacheMaxSize = config.getAsIntegerWithDefault("near_cache.max_size", this._nearCacheMaxSize);
+        this._nearCacheMaxWeight = config.getAsLongWithDefault("near_cache.max_weight", this._nearCacheMaxWeight);
+        this._nearCacheTimeout = config.getAsLongWithDefault("near_cache.timeout", this._nearCacheTimeout);
+
+        this._hotKeysEnabled = config.getAsBooleanWithDefault("hot_keys.enabled", this._hotKeysEnabled);
+        this._hotKeysCapacity = config.getAsIntegerWithDefault("hot_keys.capacity", this._hotKeysCapacity);
+        this._hotKeysSampleRate = config.getAsDoubleWithDefault("hot_keys.sample_rate", this._hotKeysSampleRate);
+        this._hotKeysThreshold = config.getAsLongWithDefault("hot_keys.threshold", this._hotKeysThreshold);
+        this._hotKeysWindow = config.getAsLongWithDefault("hot_keys.window", this._hotKeysWindow);
+        this._hotKeysPromote = config.getAsBooleanWithDefault("hot_keys.promote", this._hotKeysPromote);
+        this._hotKeysTimeout = config.getAsLongWithDefault("hot_keys.timeout", this._hotKeysTimeout);
+
 //        todo this options is not supported
 //        this._maxKeySize = config.getAsIntegerWithDefault("options.max_key_size", this._maxKeySize);
 //        this._maxExpiration = config.getAsLongWithDefault("options.max_expiration", this._maxExpiration);
 //        this._maxValue = config.getAsLongWithDefault("options.max_value", this._maxValue);
-//        this._poolSize = config.getAsIntegerWithDefault("options.pool_size", this._poolSize);
 //        this._reconnect = config.getAsIntegerWithDefault("options.reconnect", this._reconnect);
-//        this._timeout = config.getAsIntegerWithDefault("options.timeout", this._timeout);
-//        this._retries = config.getAsIntegerWithDefault("options.retries", this._retries);
-//        this._failures = config.getAsIntegerWithDefault("options.failures", this._failures);
-//        this._retry = config.getAsIntegerWithDefault("options.retry", this._retry);
-//        this._remove = config.getAsBooleanWithDefault("options.remove", this._remove);
 //        this._idle = config.getAsIntegerWithDefault("options.idle", this._idle);
     }
 
@@ -68,8 +297,9 @@ public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IO
      * @param references references to locate the component dependencies.
      */
     @Override
-    public void setReferences(IReferences references) {
+    public void setReferences(IReferences references) throws ReferenceException {
         this._connectionResolver.setReferences(references);
+        this._counters.setReferences(references);
     }
 
     /**
@@ -82,6 +312,15 @@ public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IO
         return _client != null;
     }
 
+    /**
+     * Opens the component.
+     * Each resolved server gets a pool of <code>options.pool_size</code> connections,
+     * so concurrent requests are not serialized over a single socket per node.
+     * With <code>options.distribution</code> set to ketama keys are placed on a consistent
+     * hash ring, so adding or removing a server moves only its share of keys.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     */
     @Override
     public void open(String correlationId) throws ApplicationException {
         var connections = this._connectionResolver.resolveAll(correlationId);
@@ -93,18 +332,120 @@ public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IO
             );
         }
 
+        var codec = MemcachedTranscoder.createCodec(this._codec);
+        if (codec == null) {
+            throw new ConfigException(
+                    correlationId,
+                    "BAD_CODEC",
+                    "Value codec " + this._codec + " is not supported"
+            );
+        }
+        _transcoder = new MemcachedTranscoder(codec);
+        _transcoder.setCounters(_counters);
+        _transcoder.setEmptyItemsAsMissing("meta".equalsIgnoreCase(this._protocol));
+
+        if (!"none".equalsIgnoreCase(this._compression)) {
+            var compressionMode = MemcachedTranscoder.parseCompressionMode(this._compression);
+            if (compressionMode == null) {
+                throw new ConfigException(
+                        correlationId,
+                        "BAD_COMPRESSION",
+                        "Compression " + this._compression + " is not supported"
+                );
+            }
+            _transcoder.setCompressionMode(compressionMode);
+            _transcoder.setCompressionThreshold(this._compressionThreshold);
+        }
+
+        var commandFactory = MemcachedClientRegistry.createCommandFactory(this._protocol);
+        if (commandFactory == null) {
+            throw new ConfigException(
+                    correlationId,
+                    "BAD_PROTOCOL",
+                    "Protocol " + this._protocol + " is not supported"
+            );
+        }
+
+        var ketama = "ketama".equalsIgnoreCase(this._distribution);
+        if (!ketama && !"modulo".equalsIgnoreCase(this._distribution)) {
+            throw new ConfigException(
+                    correlationId,
+                    "BAD_DISTRIBUTION",
+                    "Key distribution " + this._distribution + " is not supported"
+            );
+        }
+
+        var servers = toServers(connections);
+        var addresses = new ArrayList<InetSocketAddress>();
+        var weights = new int[servers.size()];
+        for (var server : servers.entrySet()) {
+            weights[addresses.size()] = server.getValue();
+            addresses.add(toAddress(server.getKey()));
+        }
+
         try {
-            _client = new XMemcachedClient();
+            var builder = new XMemcachedClientBuilder(addresses, weights);
+            builder.setCommandFactory(commandFactory);
+            builder.setConnectionPoolSize(this._poolSize);
+            builder.setOpTimeout(this._timeout);
+            MemcachedSessionLocator locator = ketama ? new KetamaMemcachedSessionLocator() : new ArrayMemcachedSessionLocator();
+            if (this._failures > 0) {
+                _breaker = new NodeCircuitBreaker(this._failures, this._retry);
+                if (this._remove) {
+                    _failoverLocator = new FailoverSessionLocator(locator, _breaker);
+                    locator = _failoverLocator;
+                }
+            }
+            builder.setSessionLocator(locator);
 
-            for (var connection : connections) {
-                var host = connection.getHost();
-                var port = connection.getAsIntegerWithDefault("port", 11211);
+            if (this._failOpen)
+                _clusterBreaker = new NodeCircuitBreaker(this._failOpenFailures, this._failOpenWindow);
 
-                _client.addServer(host, port);
+            // Failover locators and server updates change the client, so such clients are not shared
+            _clientShared = this._sharedClient && _failoverLocator == null && this._refreshInterval <= 0;
+            if (_clientShared) {
+                var key = MemcachedClientRegistry.createKey(servers, this._protocol, this._distribution,
+                        this._poolSize, this._timeout);
+                _client = MemcachedClientRegistry.acquire(key, builder);
+                _sessionLocator = MemcachedClientRegistry.getSessionLocator(_client);
+            } else {
+                _client = builder.build();
+                _sessionLocator = locator;
             }
+            _servers = servers;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        // Meta commands open connections on demand, so without meta protocol
+        // the client is only connected by pipelined counter updates
+        _metaProtocol = "meta".equalsIgnoreCase(this._protocol);
+        _metaClient = new MetaProtocolClient(this._poolSize);
+
+        if (this._nearCacheEnabled)
+            _nearCache = new NearCache(this._nearCacheMaxSize, this._nearCacheMaxWeight, this._nearCacheTimeout);
+
+        if (this._hotKeysEnabled) {
+            _hotKeys = new HotKeyDetector(this._hotKeysCapacity, this._hotKeysSampleRate,
+                    this._hotKeysThreshold, this._hotKeysWindow, _counters);
+            if (this._hotKeysPromote)
+                _hotCache = new NearCache(this._hotKeysCapacity, 0, this._hotKeysTimeout);
+        }
+
+        if (this._refreshInterval > 0) {
+            _serversRefresher = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                var thread = new Thread(runnable, "memcached-servers");
+                thread.setDaemon(true);
+                return thread;
+            });
+            _serversRefresher.scheduleWithFixedDelay(() -> {
+                try {
+                    this.refreshServers(correlationId);
+                } catch (Exception ex) {
+                    // Keep the current servers until the next refresh
+                }
+            }, this._refreshInterval, this._refreshInterval, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -114,14 +455,372 @@ public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IO
      */
     @Override
     public void close(String correlationId) {
+        if (_serversRefresher != null) {
+            _serversRefresher.shutdown();
+            _serversRefresher = null;
+        }
+
+        synchronized (this) {
+            if (_executor != null) {
+                _executor.shutdown();
+                _executor = null;
+                _retrieveBatcher = null;
+            }
+
+            if (_refreshExecutor != null) {
+                _refreshExecutor.shutdown();
+                _refreshExecutor = null;
+            }
+        }
+
+        if (_nearCache != null) {
+            _nearCache.clear();
+            _nearCache = null;
+        }
+
+        if (_hotCache != null) {
+            _hotCache.clear();
+            _hotCache = null;
+        }
+        _hotKeys = null;
+
+        _sessionLocator = null;
+        _breaker = null;
+        _failoverLocator = null;
+        _clusterBreaker = null;
+
+        if (_metaClient != null) {
+            _metaClient.close();
+            _metaClient = null;
+        }
+        _metaProtocol = false;
+
         try {
-            _client.shutdown();
+            if (_clientShared)
+                MemcachedClientRegistry.release(_client);
+            else
+                _client.shutdown();
             _client = null;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Resolves connections again and updates servers of the open client.
+     * It is called periodically when <code>options.refresh_interval</code> is set.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @throws ApplicationException when connections cannot be resolved.
+     * @see #updateServers(String, List)
+     */
+    public void refreshServers(String correlationId) throws ApplicationException {
+        this.checkOpened(correlationId);
+        this.updateServers(correlationId, this._connectionResolver.resolveAll(correlationId));
+    }
+
+    /**
+     * Updates servers of the open client without reopening the component.
+     * Only added and removed servers are connected and disconnected,
+     * so requests to the remaining servers are not interrupted.
+     * Servers with changed weights are reconnected.
+     * Servers of a shared client cannot be updated, so the cache shall be opened
+     * with <code>options.shared_client</code> disabled or <code>options.refresh_interval</code> set.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param connections   connections to all servers that shall be used.
+     * @throws ApplicationException when the list of connections is empty or the client is shared.
+     */
+    public synchronized void updateServers(String correlationId, List<ConnectionParams> connections) throws ApplicationException {
+        this.checkOpened(correlationId);
+
+        if (_clientShared) {
+            throw new InvalidStateException(
+                    correlationId,
+                    "SHARED_CLIENT",
+                    "Servers of a shared client cannot be updated"
+            );
+        }
+
+        if (connections.size() == 0) {
+            throw new ConfigException(
+                    correlationId,
+                    "NO_CONNECTION",
+                    "Connection is not configured"
+            );
+        }
+
+        var servers = toServers(connections);
+        var current = _servers;
+
+        var removed = new ArrayList<String>();
+        for (var server : current.entrySet()) {
+            if (!server.getValue().equals(servers.get(server.getKey())))
+                removed.add(server.getKey());
+        }
+        if (removed.size() > 0)
+            _client.removeServer(String.join(" ", removed));
+
+        for (var server : servers.entrySet()) {
+            if (server.getValue().equals(current.get(server.getKey())))
+                continue;
+
+            var address = toAddress(server.getKey());
+            try {
+                _client.addServer(address.getHostString(), address.getPort(), server.getValue());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        _servers = servers;
+    }
+
+    /**
+     * Gets addresses of servers used by the open client.
+     *
+     * @return server addresses in host:port format.
+     */
+    public List<String> getServers() {
+        return new ArrayList<>(_servers.keySet());
+    }
+
+    private static Map<String, Integer> toServers(List<ConnectionParams> connections) {
+        var servers = new LinkedHashMap<String, Integer>();
+        for (var connection : connections) {
+            var host = connection.getHost();
+            var port = connection.getAsIntegerWithDefault("port", 11211);
+            var weight = Math.max(1, connection.getAsIntegerWithDefault("weight", 1));
+
+            servers.put(host + ":" + port, weight);
+        }
+        return servers;
+    }
+
+    private static InetSocketAddress toAddress(String server) {
+        var index = server.lastIndexOf(':');
+        return new InetSocketAddress(server.substring(0, index), Integer.parseInt(server.substring(index + 1)));
+    }
+
+    /**
+     * Operation of memcached client.
+     *
+     * @param <T> a type of the operation result.
+     */
+    @FunctionalInterface
+    private interface MemcachedOperation<T> {
+        T execute(long timeout) throws TimeoutException, InterruptedException, MemcachedException;
+    }
+
+    /**
+     * Transcoder of values encoded in advance, so written values are encoded once
+     * and the same bytes fill the near cache.
+     */
+    private static final class EncodedTranscoder implements Transcoder<CachedData> {
+        @Override
+        public CachedData encode(CachedData data) {
+            return data;
+        }
+
+        @Override
+        public CachedData decode(CachedData data) {
+            return data;
+        }
+
+        @Override
+        public void setPrimitiveAsString(boolean primitiveAsString) {
+        }
+
+        @Override
+        public void setPackZeros(boolean packZeros) {
+        }
+
+        @Override
+        public void setCompressionThreshold(int threshold) {
+        }
+
+        @Override
+        public boolean isPrimitiveAsString() {
+            return false;
+        }
+
+        @Override
+        public boolean isPackZeros() {
+            return false;
+        }
+
+        @Override
+        public void setCompressionMode(CompressionMode compressionMode) {
+        }
+    }
+
+    private static final EncodedTranscoder ENCODED = new EncodedTranscoder();
+
+    /**
+     * Fallback result of gets that tells a skipped or failed read from a missing value.
+     */
+    private static final GetsResponse<Object> GETS_FALLBACK = new GetsResponse<>(0, null);
+
+    /**
+     * Gets the number of failed or skipped operations which errors were suppressed in fail-open mode.
+     *
+     * @return the number of suppressed errors.
+     */
+    public long getSuppressedErrorCount() {
+        return _suppressedErrors.get();
+    }
+
+    private InetSocketAddress getNode(String key) {
+        var locator = _sessionLocator;
+        var session = locator != null ? locator.getSessionByKey(key) : null;
+        return session != null ? session.getRemoteSocketAddress() : null;
+    }
+
+    private boolean isNodeOpen(String key) {
+        var breaker = _breaker;
+        if (breaker == null)
+            return false;
+
+        var node = this.getNode(key);
+        return node != null && breaker.isOpen(node);
+    }
+
+    /**
+     * Executes an operation within the call deadline.
+     * <p>
+     * Each attempt gets the read or write timeout, capped by the time left until the deadline.
+     * Failed reads are retried after a randomized exponential backoff, writes are not retried.
+     * When the key is set and its server is failing the operation is not sent
+     * and it fails fast with {@link ConnectionException}, or returns the fallback result in fail-open mode.
+     * <p>
+     * In fail-open mode failed operations return the fallback result as well.
+     *
+     * @param name      a name of the operation for counters.
+     * @param key       a key to find the server of a single-key operation or <code>null</code> for multi-key operations.
+     * @param read      true for idempotent reads that can be retried.
+     * @param fallback  a result returned when the server of the key is failing.
+     * @param operation an operation to execute.
+     */
+    private <T> T execute(String name, String key, boolean read, T fallback, MemcachedOperation<T> operation) {
+        var timing = _counters.beginTiming("memcached." + name + ".call_time");
+        try {
+            var clusterBreaker = _clusterBreaker;
+            if (clusterBreaker == null)
+                return this.executeWithRetries(key, read, fallback, operation);
+
+            // In fail-open mode errors become fallback results, and a failing cluster is skipped for a while
+            if (!clusterBreaker.allowRequest(ALL_NODES)) {
+                this.suppressError();
+                return fallback;
+            }
+
+            var recorded = false;
+            try {
+                var result = this.executeWithRetries(key, read, fallback, operation);
+                clusterBreaker.recordSuccess(ALL_NODES);
+                recorded = true;
+                return result;
+            } catch (RuntimeException e) {
+                if (!(e.getCause() instanceof TimeoutException) && !(e.getCause() instanceof MemcachedException))
+                    throw e;
+
+                _counters.incrementOne("memcached." + name + ".errors");
+                clusterBreaker.recordFailure(ALL_NODES);
+                recorded = true;
+                this.suppressError();
+                return fallback;
+            } finally {
+                // Errors unrelated to the servers must not leave the probe taken forever
+                if (!recorded)
+                    clusterBreaker.releaseProbe(ALL_NODES);
+            }
+        } catch (RuntimeException e) {
+            _counters.incrementOne("memcached." + name + ".errors");
+            throw e;
+        } finally {
+            timing.endTiming();
+        }
+    }
+
+    private void suppressError() {
+        _suppressedErrors.incrementAndGet();
+        _counters.incrementOne("memcached.suppressed_errors");
+    }
+
+    private <T> T executeWithRetries(String key, boolean read, T fallback, MemcachedOperation<T> operation) {
+        var timeout = read ? this._readTimeout : this._writeTimeout;
+        var retries = read ? this._retries : 0;
+        var deadline = this._deadline > 0 ? System.currentTimeMillis() + this._deadline : Long.MAX_VALUE;
+
+        Exception lastError = null;
+        for (var attempt = 0; ; attempt++) {
+            var remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                throw new RuntimeException(new TimeoutException("Operation deadline of " + this._deadline + " ms is exceeded"));
+
+            var breaker = _breaker;
+            var node = key != null ? this.getNode(key) : null;
+            if (breaker != null && node != null && !breaker.allowRequest(node)) {
+                if (lastError != null)
+                    throw new RuntimeException(lastError);
+                if (this._failOpen) {
+                    this.suppressError();
+                    return fallback;
+                }
+                throw new RuntimeException(
+                        new ConnectionException(
+                                null,
+                                "NODE_UNAVAILABLE",
+                                "Memcached server " + node.getHostString() + ":" + node.getPort()
+                                        + " is failing and gets no requests for a while"
+                        )
+                );
+            }
+
+            var nodeName = node != null ? "memcached." + node.getHostString() + ":" + node.getPort() : null;
+            var timing = nodeName != null ? _counters.beginTiming(nodeName + ".call_time") : null;
+            var recorded = false;
+            try {
+                var result = operation.execute(Math.min(timeout, remaining));
+                if (timing != null)
+                    timing.endTiming();
+                recorded = true;
+                if (breaker != null && node != null && breaker.recordSuccess(node) && _failoverLocator != null)
+                    _failoverLocator.rebuild();
+                return result;
+            } catch (TimeoutException | MemcachedException e) {
+                if (nodeName != null)
+                    _counters.incrementOne(nodeName + ".errors");
+                recorded = true;
+                if (breaker != null && node != null && breaker.recordFailure(node) && _failoverLocator != null)
+                    _failoverLocator.rebuild();
+                lastError = e;
+
+                if (attempt >= retries)
+                    throw new RuntimeException(e);
+
+                // Full jitter spreads retries of concurrent callers
+                var backoff = ThreadLocalRandom.current().nextLong(
+                        Math.min(this._retryBackoff << Math.min(attempt, 20), Math.max(1, timeout)) + 1);
+                if (System.currentTimeMillis() + backoff >= deadline)
+                    throw new RuntimeException(e);
+
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(ex);
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                // Interrupts and errors unrelated to the server, like encoding failures, tell nothing about its health
+                if (!recorded && breaker != null && node != null)
+                    breaker.releaseProbe(node);
+            }
+        }
+    }
+
     private void checkOpened(String correlationId) {
         if (!this.isOpen()) {
             throw new RuntimeException(
@@ -134,9 +833,40 @@ public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IO
         }
     }
 
+    private void storeNear(String key, CachedData data, long timeout) {
+        // Local copies of hot keys are taken again by the next retrieve
+        var hotCache = _hotCache;
+        if (hotCache != null)
+            hotCache.remove(key);
+
+        var nearCache = _nearCache;
+        if (nearCache != null) {
+            // Cache a copy decoded from the written bytes, so near hits return exactly what memcached would
+            this.putNear(nearCache, key, _transcoder.decode(data), timeout);
+        }
+    }
+
+    private Object putNear(NearCache nearCache, String key, Object rawValue, long timeout) {
+        if (!(rawValue instanceof CachedValue)) {
+            if (nearCache != null)
+                nearCache.put(key, rawValue, timeout);
+            return rawValue;
+        }
+
+        // Never keep values in the near cache after their soft expiration
+        var cachedValue = (CachedValue) rawValue;
+        var softTimeout = cachedValue.getSoftExpiration() - System.currentTimeMillis();
+        if (nearCache != null && softTimeout > 0)
+            nearCache.put(key, cachedValue.getValue(), timeout > 0 ? Math.min(timeout, softTimeout) : softTimeout);
+        return cachedValue.getValue();
+    }
+
     /**
      * Retrieves cached value from the cache using its key.
      * If value is missing in the cache or expired it returns null.
+     * Concurrent retrieves of the same key share a single network request
+     * unless <code>options.coalesce_reads</code> is disabled. Retrieves started after
+     * a write of the key returns never share requests sent before it.
      *
      * @param correlationId (optional) transaction id to trace execution through call chain.
      * @param key           a unique value key.
@@ -146,11 +876,50 @@ public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IO
     public Object retrieve(String correlationId, String key) {
         this.checkOpened(correlationId);
 
-        try {
-            return _client.get(key);
-        } catch (TimeoutException | InterruptedException | MemcachedException e) {
-            throw new RuntimeException(e);
+        var hotKeys = _hotKeys;
+        var hotCache = hotKeys != null && hotKeys.record(key) ? _hotCache : null;
+        if (hotCache != null) {
+            var value = hotCache.get(key);
+            if (value != null) {
+                _counters.incrementOne("memcached.hot_keys.hits");
+                _counters.incrementOne("memcached.retrieve.hits");
+                return value;
+            }
         }
+
+        var nearCache = _nearCache;
+        if (nearCache != null) {
+            var value = nearCache.get(key);
+            if (value != null) {
+                _counters.incrementOne("memcached.near_cache.hits");
+                _counters.incrementOne("memcached.retrieve.hits");
+                return value;
+            }
+        }
+
+        var rawValue = this._coalesceReads
+                ? _retrieveFlight.execute(key, () -> this.retrieveRaw(key))
+                : this.retrieveRaw(key);
+        var value = this.putNear(nearCache, key, rawValue, 0);
+        if (hotCache != null)
+            this.putNear(hotCache, key, rawValue, 0);
+        _counters.incrementOne(value != null ? "memcached.retrieve.hits" : "memcached.retrieve.misses");
+        return value;
+    }
+
+    /**
+     * Gets the most retrieved keys detected when <code>hot_keys.enabled</code> is set.
+     *
+     * @return estimated numbers of retrieves in the last window by keys ordered from the most retrieved.
+     */
+    public Map<String, Long> getHotKeys() {
+        var hotKeys = _hotKeys;
+        return hotKeys != null ? hotKeys.getTopKeys() : Map.of();
+    }
+
+    private Object retrieveRaw(String key) {
+        // Placeholders created by the meta protocol are decoded as null
+        return this.execute("retrieve", key, true, null, (timeout) -> _client.get(key, timeout, _transcoder));
     }
 
     /**
@@ -167,22 +936,23 @@ public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IO
         this.checkOpened(correlationId);
 
         var timeoutInSec = (int) (timeout / 1000);
+        var data = _transcoder.encode(value);
 
+        Object result;
         try {
-            String cacheValue;
-
-            if (value instanceof String || value == null)
-                cacheValue = String.valueOf(value);
-            else if (value instanceof ZonedDateTime)
-                cacheValue = ((ZonedDateTime) value).withZoneSameInstant(ZoneId.of("UTC"))
-                        .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-            else
-                cacheValue = JsonConverter.toJson(value);
-
-            return _client.set(key, timeoutInSec, cacheValue);
-        } catch (TimeoutException | InterruptedException | MemcachedException | JsonProcessingException e) {
-            throw new RuntimeException(e);
+            result = this.execute("store", key, false, false,
+                    (opTimeout) -> _client.set(key, timeoutInSec, data, ENCODED, opTimeout));
+        } finally {
+            // Retrieves sent before the write must not be shared with retrieves after it
+            _retrieveFlight.forget(key);
         }
+
+        // A failed or skipped write leaves the server value unknown
+        if (Boolean.TRUE.equals(result))
+            storeNear(key, data, timeout);
+        else
+            removeNear(key);
+        return result;
     }
 
     /**
@@ -195,10 +965,870 @@ public class MemcachedCache implements ICache, IConfigurable, IReferenceable, IO
     public void remove(String correlationId, String key) {
         this.checkOpened(correlationId);
 
+        if (_nearCache != null)
+            _nearCache.remove(key);
+        if (_hotCache != null)
+            _hotCache.remove(key);
+
         try {
-            _client.delete(key);
-        } catch (TimeoutException | InterruptedException | MemcachedException e) {
-            throw new RuntimeException(e);
+            this.execute("remove", key, false, false, (timeout) -> _client.delete(key, timeout));
+        } finally {
+            _retrieveFlight.forget(key);
+        }
+    }
+
+    /**
+     * Retrieves multiple cached values in a single round trip per server.
+     * Keys are grouped by server and fetched with one multi-get command each.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param keys          a list of unique value keys.
+     * @return a map of cached values by their keys. Missing or expired keys are not included.
+     */
+    public Map<String, Object> retrieveMany(String correlationId, Collection<String> keys) {
+        this.checkOpened(correlationId);
+
+        var result = new HashMap<String, Object>();
+        var missingKeys = keys;
+
+        var nearCache = _nearCache;
+        if (nearCache != null) {
+            missingKeys = new ArrayList<>();
+            for (var key : keys) {
+                var value = nearCache.get(key);
+                if (value != null)
+                    result.put(key, value);
+                else
+                    missingKeys.add(key);
+            }
+        }
+
+        // Keys of failing servers are misses
+        if (_breaker != null) {
+            var availableKeys = new ArrayList<String>();
+            for (var key : missingKeys) {
+                if (!this.isNodeOpen(key))
+                    availableKeys.add(key);
+            }
+            missingKeys = availableKeys;
+        }
+
+        if (!missingKeys.isEmpty()) {
+            var requestKeys = missingKeys;
+            Map<String, Object> values = this.execute("retrieve_many", null, true, null,
+                    (timeout) -> _client.get(requestKeys, timeout, _transcoder));
+            if (values != null) {
+                for (var entry : values.entrySet()) {
+                    if (entry.getValue() != null)
+                        result.put(entry.getKey(), this.putNear(nearCache, entry.getKey(), entry.getValue(), 0));
+                }
+            }
+        }
+
+        _counters.increment("memcached.retrieve.hits", result.size());
+        _counters.increment("memcached.retrieve.misses", Math.max(0, keys.size() - result.size()));
+        return result;
+    }
+
+    /**
+     * Stores multiple values in the cache with the same expiration time.
+     * Set commands are pipelined without waiting for individual replies.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param values        a map of values to store by their keys.
+     * @param timeout       expiration timeout in milliseconds.
+     */
+    public void storeMany(String correlationId, Map<String, Object> values, long timeout) {
+        this.checkOpened(correlationId);
+
+        var timeoutInSec = (int) (timeout / 1000);
+
+        var sent = new LinkedHashMap<String, CachedData>();
+        for (var entry : values.entrySet()) {
+            if (!this.isNodeOpen(entry.getKey()))
+                sent.put(entry.getKey(), _transcoder.encode(entry.getValue()));
+        }
+
+        var stored = false;
+        try {
+            stored = this.execute("store_many", null, false, false, (opTimeout) -> {
+                for (var entry : sent.entrySet())
+                    _client.setWithNoReply(entry.getKey(), timeoutInSec, entry.getValue(), ENCODED);
+                return true;
+            });
+        } finally {
+            // Keys of skipped or failed writes must not keep stale local copies
+            for (var key : values.keySet()) {
+                _retrieveFlight.forget(key);
+                var data = stored ? sent.get(key) : null;
+                if (data != null)
+                    storeNear(key, data, timeout);
+                else
+                    removeNear(key);
+            }
+        }
+    }
+
+    /**
+     * Removes multiple values from the cache by their keys.
+     * Delete commands are pipelined without waiting for individual replies.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param keys          a list of unique value keys.
+     */
+    public void removeMany(String correlationId, Collection<String> keys) {
+        this.checkOpened(correlationId);
+
+        if (_nearCache != null)
+            _nearCache.removeAll(keys);
+        if (_hotCache != null)
+            _hotCache.removeAll(keys);
+
+        try {
+            this.execute("remove_many", null, false, null, (timeout) -> {
+                for (var key : keys) {
+                    if (!this.isNodeOpen(key))
+                        _client.deleteWithNoReply(key);
+                }
+                return null;
+            });
+        } finally {
+            for (var key : keys)
+                _retrieveFlight.forget(key);
+        }
+    }
+
+    /**
+     * Atomically updates a value in the cache without locks.
+     * <p>
+     * The value is read with its cas version, passed to the mutator, and the result is written
+     * only if nobody changed the value in between. When another writer wins the race the update
+     * is repeated with the new value up to <code>options.cas_retries</code> times,
+     * so the mutator can be called more than once and shall have no side effects.
+     * <p>
+     * In fail-open mode an update that cannot reach the server is dropped and returns <code>null</code>.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique value key.
+     * @param mutator       a function that gets the current value or <code>null</code> if it is missing
+     *                      and returns the new value or <code>null</code> to remove it.
+     * @param timeout       expiration timeout in milliseconds.
+     * @return the stored value or <code>null</code> if it was removed or dropped in fail-open mode.
+     * @throws RuntimeException with {@link ConflictException} when all retries lost the race.
+     */
+    public Object update(String correlationId, String key, Function<Object, Object> mutator, long timeout) {
+        this.checkOpened(correlationId);
+
+        var timing = _counters.beginTiming("memcached.update.call_time");
+        try {
+            return this.updateWithRetries(correlationId, key, mutator, timeout);
+        } catch (RuntimeException e) {
+            _counters.incrementOne("memcached.update.errors");
+            throw e;
+        } finally {
+            _retrieveFlight.forget(key);
+            timing.endTiming();
+        }
+    }
+
+    private Object updateWithRetries(String correlationId, String key, Function<Object, Object> mutator, long timeout) {
+        var timeoutInSec = (int) (timeout / 1000);
+
+        for (var attempt = 0; attempt <= this._casRetries; attempt++) {
+            if (attempt > 0) {
+                _counters.incrementOne("memcached.update.conflicts");
+
+                // Randomized backoff lets one of the competing writers finish first
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(
+                            Math.min(this._retryBackoff << Math.min(attempt - 1, 20), this._writeTimeout) + 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+
+            GetsResponse<Object> response = this.execute("gets", key, true, GETS_FALLBACK,
+                    (opTimeout) -> _client.gets(key, opTimeout, _transcoder));
+            // The current value is unknown, so the mutator is not called
+            if (response == GETS_FALLBACK)
+                return null;
+
+            var current = response != null ? response.getValue() : null;
+            if (current instanceof CachedValue)
+                current = ((CachedValue) current).getValue();
+
+            var value = mutator.apply(current);
+            var data = value != null ? _transcoder.encode(value) : null;
+
+            // Writes that fail open return null rather than false, which means a lost race
+            Boolean written;
+            if (value == null && response == null) {
+                written = true;
+            } else if (value == null) {
+                written = this.execute("cas", key, false, null,
+                        (opTimeout) -> _client.delete(key, response.getCas(), opTimeout));
+            } else if (response == null) {
+                written = this.execute("cas", key, false, null, (opTimeout) -> {
+                    try {
+                        return _client.add(key, timeoutInSec, data, ENCODED, opTimeout);
+                    } catch (MemcachedException e) {
+                        if (e.getMessage() != null && e.getMessage().contains("not stored"))
+                            return false;
+                        throw e;
+                    }
+                });
+            } else {
+                written = this.execute("cas", key, false, null,
+                        (opTimeout) -> _client.cas(key, timeoutInSec, data, ENCODED, opTimeout, response.getCas()));
+            }
+
+            if (written == null) {
+                removeNear(key);
+                return null;
+            }
+            if (written) {
+                if (data != null)
+                    storeNear(key, data, timeout);
+                else
+                    removeNear(key);
+                return value;
+            }
+        }
+
+        throw new RuntimeException(
+                new ConflictException(
+                        correlationId,
+                        "UPDATE_CONFLICT",
+                        "Value " + key + " was changed by other writers " + (this._casRetries + 1) + " times"
+                )
+        );
+    }
+
+    /**
+     * Atomically increments a counter on the server.
+     * A missing counter is created with the initial value without adding the delta,
+     * the same way memcached incr with an initial value works.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique counter key.
+     * @param delta         a non-negative value to add.
+     * @param initial       a value of the counter when it is missing.
+     * @param timeout       expiration timeout in milliseconds of a created counter. Existing counters keep their expiration.
+     * @return the new value of the counter or -1 if the call was skipped because the server is failing.
+     */
+    public long increment(String correlationId, String key, long delta, long initial, long timeout) {
+        this.checkOpened(correlationId);
+        this.removeNear(key);
+
+        var timeoutInSec = (int) (timeout / 1000);
+        try {
+            return this.execute("increment", key, false, -1L,
+                    (opTimeout) -> _client.incr(key, delta, initial, opTimeout, timeoutInSec));
+        } finally {
+            _retrieveFlight.forget(key);
+        }
+    }
+
+    /**
+     * Atomically decrements a counter on the server. Counters never go below zero.
+     * A missing counter is created with the initial value without subtracting the delta.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique counter key.
+     * @param delta         a non-negative value to subtract.
+     * @param initial       a value of the counter when it is missing.
+     * @param timeout       expiration timeout in milliseconds of a created counter. Existing counters keep their expiration.
+     * @return the new value of the counter or -1 if the call was skipped because the server is failing.
+     */
+    public long decrement(String correlationId, String key, long delta, long initial, long timeout) {
+        this.checkOpened(correlationId);
+        this.removeNear(key);
+
+        var timeoutInSec = (int) (timeout / 1000);
+        try {
+            return this.execute("decrement", key, false, -1L,
+                    (opTimeout) -> _client.decr(key, delta, initial, opTimeout, timeoutInSec));
+        } finally {
+            _retrieveFlight.forget(key);
+        }
+    }
+
+    /**
+     * Gets the current value of a counter.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique counter key.
+     * @return the counter value or <code>null</code> if the counter is missing.
+     * @throws RuntimeException with {@link BadRequestException} when the value is not a number.
+     */
+    public Long getCounter(String correlationId, String key) {
+        this.checkOpened(correlationId);
+
+        var value = this.execute("get_counter", key, true, null, (timeout) -> _client.get(key, timeout, _transcoder));
+        if (value == null)
+            return null;
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+
+        try {
+            return Long.parseUnsignedLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException(
+                    new BadRequestException(
+                            correlationId,
+                            "NOT_COUNTER",
+                            "Value " + key + " is not a counter"
+                    )
+            );
+        }
+    }
+
+    /**
+     * Atomically changes multiple counters in a single round trip per server.
+     * <p>
+     * Counters of each server are changed by meta arithmetic commands pipelined in one write,
+     * so the servers shall support meta commands of memcached 1.6 or newer with any <code>options.protocol</code>.
+     * The commands are sent over the meta connections of this cache rather than the regular client.
+     * Positive deltas increment counters and negative deltas decrement them.
+     * A missing counter is created with the initial value without applying the delta,
+     * the same way {@link #increment} and {@link #decrement} work.
+     * <p>
+     * Errors of servers do not fail the call: keys of failed servers are returned as failed keys,
+     * and the errors are counted as <code>memcached.increment_many.errors</code>. When a server times out
+     * or fails in the middle of a pipeline some of its counters may be changed anyway,
+     * so resending failed keys gives at-least-once delivery.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param deltas        values to add by counter keys.
+     * @param initial       a value of counters that are missing.
+     * @param timeout       expiration timeout in milliseconds of created counters. Existing counters keep their expiration.
+     * @return new values of applied counters, and keys and servers that failed.
+     * @throws RuntimeException with {@link BadRequestException} when a key is invalid or a delta is null.
+     */
+    public IncrementManyResult incrementMany(String correlationId, Map<String, Long> deltas, long initial, long timeout) {
+        return this.incrementMany(correlationId, deltas, false, initial, timeout);
+    }
+
+    /**
+     * Changes multiple counters like {@link #incrementMany(String, Map, long, long)}.
+     * With createWithDeltas set, missing counters are created with their positive deltas or zero instead,
+     * so write-behind accumulators lose no increments of new counters.
+     */
+    IncrementManyResult incrementMany(String correlationId, Map<String, Long> deltas, boolean createWithDeltas,
+                                      long initial, long timeout) {
+        this.checkOpened(correlationId);
+
+        // Nothing is sent when any of the commands is invalid
+        for (var entry : deltas.entrySet()) {
+            try {
+                MetaProtocolClient.checkKey(entry.getKey());
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException(
+                        new BadRequestException(
+                                correlationId,
+                                "INVALID_KEY",
+                                "Counter key " + entry.getKey() + " is invalid: " + e.getMessage()
+                        )
+                );
+            }
+
+            if (entry.getValue() == null) {
+                throw new RuntimeException(
+                        new BadRequestException(
+                                correlationId,
+                                "NO_DELTA",
+                                "Delta of counter " + entry.getKey() + " is not set"
+                        )
+                );
+            }
+        }
+
+        var timeoutInSec = timeout / 1000;
+        var keysByServer = new LinkedHashMap<InetSocketAddress, List<String>>();
+        var failedKeys = new LinkedHashSet<String>();
+        var failedServers = new ArrayList<String>();
+        for (var key : deltas.keySet()) {
+            this.removeNear(key);
+            var server = this.getMetaServer(key);
+            if (!this.isNodeOpen(key)) {
+                keysByServer.computeIfAbsent(server, (address) -> new ArrayList<>()).add(key);
+            } else {
+                failedKeys.add(key);
+                var address = server.getHostString() + ":" + server.getPort();
+                if (!failedServers.contains(address))
+                    failedServers.add(address);
+            }
+        }
+
+        var values = new HashMap<String, Long>();
+        for (var entry : keysByServer.entrySet()) {
+            var server = entry.getKey();
+            var keys = entry.getValue();
+
+            var flags = new ArrayList<String>(keys.size());
+            for (var key : keys) {
+                long delta = deltas.get(key);
+                var absDelta = Long.toUnsignedString(delta < 0 ? -delta : delta);
+                var created = createWithDeltas ? (delta > 0 ? absDelta : "0") : Long.toUnsignedString(initial);
+                flags.add("N" + timeoutInSec + " J" + created
+                        + " D" + absDelta + " M" + (delta < 0 ? "D" : "I") + " v");
+            }
+
+            // A failed server must not hide counters already changed on other servers
+            List<MetaProtocolClient.Reply> replies;
+            try {
+                replies = this.execute("increment_many", null, false, null,
+                        (opTimeout) -> _metaClient.arithmetic(server, keys, flags, opTimeout));
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof InterruptedException)
+                    Thread.currentThread().interrupt();
+                replies = null;
+            }
+            if (replies == null) {
+                failedKeys.addAll(keys);
+                failedServers.add(server.getHostString() + ":" + server.getPort());
+                continue;
+            }
+
+            for (var index = 0; index < keys.size(); index++) {
+                var reply = replies.get(index);
+                if (reply.value != null)
+                    values.put(keys.get(index), Long.parseUnsignedLong(new String(reply.value, StandardCharsets.US_ASCII)));
+                else
+                    failedKeys.add(keys.get(index));
+            }
         }
+
+        for (var key : deltas.keySet())
+            _retrieveFlight.forget(key);
+        return new IncrementManyResult(values, failedKeys, failedServers);
+    }
+
+    private void removeNear(String key) {
+        if (_nearCache != null)
+            _nearCache.remove(key);
+        if (_hotCache != null)
+            _hotCache.remove(key);
+    }
+
+    /**
+     * Asynchronously retrieves cached value from the cache using its key.
+     * Concurrent asynchronous retrieves are combined into multi-gets, so a bounded
+     * number of threads serves any number of requests in flight.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique value key.
+     * @return a future completed with the cached value or <code>null</code> if nothing was found.
+     */
+    public CompletableFuture<Object> retrieveAsync(String correlationId, String key) {
+        try {
+            this.checkOpened(correlationId);
+
+            var nearCache = _nearCache;
+            if (nearCache != null) {
+                var value = nearCache.get(key);
+                if (value != null)
+                    return CompletableFuture.completedFuture(value);
+            }
+
+            return this.getRetrieveBatcher(correlationId).submit(key);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Asynchronously stores value in the cache with expiration time.
+     * The value is encoded and sent by one of <code>options.async_threads</code> threads,
+     * and the future completes when the server replies, so server errors fail the future.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique value key.
+     * @param value         a value to store.
+     * @param timeout       expiration timeout in milliseconds.
+     * @return a future completed with the result of {@link #store(String, String, Object, long)}.
+     */
+    public CompletableFuture<Object> storeAsync(String correlationId, String key, Object value, long timeout) {
+        try {
+            this.checkOpened(correlationId);
+            return CompletableFuture.supplyAsync(() -> this.store(correlationId, key, value, timeout),
+                    this.getAsyncExecutor(correlationId));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Asynchronously removes a value from the cache by its key.
+     * The delete is sent by one of <code>options.async_threads</code> threads,
+     * and the future completes when the server replies, so server errors fail the future.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique value key.
+     * @return a future completed when the value is removed.
+     */
+    public CompletableFuture<Void> removeAsync(String correlationId, String key) {
+        try {
+            this.checkOpened(correlationId);
+            return CompletableFuture.runAsync(() -> this.remove(correlationId, key),
+                    this.getAsyncExecutor(correlationId));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Gets the executor of asynchronous operations. It is created on the first use,
+     * so components that never call asynchronous methods keep no threads.
+     */
+    private synchronized ExecutorService getAsyncExecutor(String correlationId) {
+        this.checkOpened(correlationId);
+        if (_executor == null) {
+            _executor = Executors.newFixedThreadPool(this._asyncThreads, (runnable) -> {
+                var thread = new Thread(runnable, "memcached-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+            _retrieveBatcher = new RetrieveBatcher(_executor, this._asyncThreads, this._asyncBatchSize,
+                    (keys) -> this.retrieveMany(correlationId, keys));
+        }
+        return _executor;
+    }
+
+    private synchronized RetrieveBatcher getRetrieveBatcher(String correlationId) {
+        this.getAsyncExecutor(correlationId);
+        return _retrieveBatcher;
+    }
+
+    private synchronized ExecutorService getRefreshExecutor() {
+        if (_refreshExecutor == null && this.isOpen()) {
+            _refreshExecutor = Executors.newCachedThreadPool((runnable) -> {
+                var thread = new Thread(runnable, "memcached-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _refreshExecutor;
+    }
+
+    /**
+     * Retrieves cached value and loads it when it is missing.
+     * <p>
+     * Only one caller recomputes a missing value: concurrent callers in this process
+     * share the same load, and callers in other processes are held off by a short
+     * recompute lock kept in memcached. Those callers wait for the value to appear
+     * for up to <code>options.load_wait_timeout</code> and then load it themselves.
+     * <p>
+     * When <code>options.stale_timeout</code> is set, values are refreshed
+     * in stale-while-revalidate mode as described in {@link #getOrLoad(String, String, Supplier, long, long)}.
+     * <p>
+     * With <code>options.protocol</code> set to meta the value and the right to recompute it
+     * are taken by a single mg command: the server creates an empty placeholder for a missing key
+     * and tells exactly one client that it won the recompute.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique value key.
+     * @param loader        a function that loads the value when it is missing in the cache.
+     * @param timeout       expiration timeout in milliseconds.
+     * @return a cached or loaded value. Null values returned by the loader are not cached.
+     */
+    public Object getOrLoad(String correlationId, String key, Supplier<Object> loader, long timeout) {
+        return this.getOrLoad(correlationId, key, loader, timeout, this._staleTimeout);
+    }
+
+    /**
+     * Retrieves cached value and loads it when it is missing,
+     * serving expired values while they are refreshed.
+     * <p>
+     * Loaded values become stale after <code>timeout</code> but are kept
+     * in memcached for another <code>staleTimeout</code>. Readers of a stale value
+     * get it immediately while a single caller across all processes
+     * reloads it in the background. Missing values are loaded
+     * the same way as by {@link #getOrLoad(String, String, Supplier, long)}.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique value key.
+     * @param loader        a function that loads the value when it is missing or stale.
+     * @param timeout       time in milliseconds after which the value is stale.
+     * @param staleTimeout  time in milliseconds the stale value is served after the timeout,
+     *                      or 0 to expire values at the timeout.
+     * @return a cached or loaded value. Null values returned by the loader are not cached.
+     */
+    public Object getOrLoad(String correlationId, String key, Supplier<Object> loader, long timeout, long staleTimeout) {
+        var timing = _counters.beginTiming("memcached.get_or_load.call_time");
+        try {
+            return this.retrieveOrLoad(correlationId, key, loader, timeout, staleTimeout);
+        } catch (RuntimeException e) {
+            _counters.incrementOne("memcached.get_or_load.errors");
+            throw e;
+        } finally {
+            timing.endTiming();
+        }
+    }
+
+    private Object retrieveOrLoad(String correlationId, String key, Supplier<Object> loader, long timeout, long staleTimeout) {
+        if (_metaProtocol) {
+            this.checkOpened(correlationId);
+
+            var nearCache = _nearCache;
+            var value = nearCache != null ? nearCache.get(key) : null;
+            if (value != null)
+                return value;
+
+            return _loadFlight.execute(key, () -> this.metaGetOrLoad(correlationId, key, loader, timeout, staleTimeout));
+        }
+
+        if (staleTimeout <= 0) {
+            var value = this.retrieve(correlationId, key);
+            if (value != null)
+                return value;
+        } else {
+            this.checkOpened(correlationId);
+
+            var nearCache = _nearCache;
+            var value = nearCache != null ? nearCache.get(key) : null;
+            if (value != null)
+                return value;
+
+            var rawValue = this._coalesceReads
+                    ? _retrieveFlight.execute(key, () -> this.retrieveRaw(key))
+                    : this.retrieveRaw(key);
+
+            if (rawValue instanceof CachedValue && ((CachedValue) rawValue).isStale()) {
+                this.refreshInBackground(key, () -> {
+                    var lockKey = key + ":load_lock";
+                    if (this.tryAcquireLoadLock(lockKey)) {
+                        try {
+                            this.load(correlationId, key, loader, timeout, staleTimeout);
+                        } finally {
+                            this.releaseLoadLock(lockKey);
+                        }
+                    }
+                });
+            }
+
+            value = this.putNear(nearCache, key, rawValue, 0);
+            if (value != null)
+                return value;
+        }
+
+        return _loadFlight.execute(key, () -> this.loadWithLock(correlationId, key, loader, timeout, staleTimeout));
+    }
+
+    private Object loadWithLock(String correlationId, String key, Supplier<Object> loader, long timeout, long staleTimeout) {
+        var lockKey = key + ":load_lock";
+
+        if (this.tryAcquireLoadLock(lockKey)) {
+            try {
+                return this.load(correlationId, key, loader, timeout, staleTimeout);
+            } finally {
+                this.releaseLoadLock(lockKey);
+            }
+        }
+
+        // Another caller recomputes the value, wait until it is stored
+        var deadline = System.currentTimeMillis() + this._loadWaitTimeout;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(this._loadRetryTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+
+            var value = this.putNear(_nearCache, key, this.retrieveRaw(key), 0);
+            if (value != null)
+                return value;
+        }
+
+        return this.load(correlationId, key, loader, timeout, staleTimeout);
+    }
+
+    private Object load(String correlationId, String key, Supplier<Object> loader, long timeout, long staleTimeout) {
+        _counters.incrementOne("memcached.get_or_load.loads");
+        var value = loader.get();
+        if (value == null)
+            return null;
+
+        if (staleTimeout > 0) {
+            var softExpiration = System.currentTimeMillis() + timeout;
+            this.store(correlationId, key, new CachedValue(value, softExpiration), timeout + staleTimeout);
+        } else {
+            this.store(correlationId, key, value, timeout);
+        }
+        return value;
+    }
+
+    private void refreshInBackground(String key, Runnable refresh) {
+        var refreshExecutor = this.getRefreshExecutor();
+        if (refreshExecutor == null || !_refreshingKeys.add(key))
+            return;
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh.run();
+                } catch (RuntimeException e) {
+                    // Keep serving the stale value, the next reader retries the refresh
+                } finally {
+                    _refreshingKeys.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            _refreshingKeys.remove(key);
+        }
+    }
+
+    private boolean tryAcquireLoadLock(String lockKey) {
+        var lifetimeInSec = (int) Math.max(1, this._loadLockTimeout / 1000);
+
+        // Without a reachable server the caller loads the value itself
+        return this.execute("load_lock", lockKey, false, true, (timeout) -> {
+            try {
+                return _client.add(lockKey, lifetimeInSec, (Object) "lock", _transcoder, timeout);
+            } catch (MemcachedException e) {
+                if (e.getMessage() != null && e.getMessage().contains("not stored"))
+                    return false;
+                throw e;
+            }
+        });
+    }
+
+    private void releaseLoadLock(String lockKey) {
+        this.execute("load_unlock", lockKey, false, false, (timeout) -> _client.delete(lockKey, timeout));
+    }
+
+    private Object metaGetOrLoad(String correlationId, String key, Supplier<Object> loader, long timeout, long staleTimeout) {
+        // A missing key gets a placeholder for the recompute lock time, a value close to
+        // its expiration is recomputed by the first reader within the stale timeout
+        var flags = "v f N" + Math.max(1, this._loadLockTimeout / 1000)
+                + (staleTimeout > 0 ? " R" + Math.max(1, staleTimeout / 1000) : "");
+        var reply = this.execute("meta_get", key, false, null,
+                (opTimeout) -> _metaClient.get(this.getMetaServer(key), key, flags, opTimeout));
+
+        // Without a reachable server the caller loads the value itself
+        if (reply == null)
+            return this.metaLoad(correlationId, key, loader, timeout, staleTimeout);
+
+        if (reply.isSuccess() && !isPlaceholder(reply)) {
+            if (reply.win)
+                this.refreshInBackground(key, () -> this.metaLoad(correlationId, key, loader, timeout, staleTimeout));
+            return this.putNear(_nearCache, key, _transcoder.decode(new CachedData(reply.flags, reply.value)), 0);
+        }
+
+        if (reply.win || !reply.isSuccess())
+            return this.metaLoad(correlationId, key, loader, timeout, staleTimeout);
+
+        // Another caller recomputes the value, wait until it is stored
+        var deadline = System.currentTimeMillis() + this._loadWaitTimeout;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(this._loadRetryTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+
+            reply = this.execute("meta_get", key, true, null,
+                    (opTimeout) -> _metaClient.get(this.getMetaServer(key), key, "v f", opTimeout));
+            if (reply != null && reply.isSuccess() && !isPlaceholder(reply))
+                return this.putNear(_nearCache, key, _transcoder.decode(new CachedData(reply.flags, reply.value)), 0);
+        }
+
+        return this.metaLoad(correlationId, key, loader, timeout, staleTimeout);
+    }
+
+    private static boolean isPlaceholder(MetaProtocolClient.Reply reply) {
+        // Empty strings are saved with a flag, so only placeholders are empty without flags
+        return reply.value != null && reply.value.length == 0 && reply.flags == 0;
+    }
+
+    private Object metaLoad(String correlationId, String key, Supplier<Object> loader, long timeout, long staleTimeout) {
+        _counters.incrementOne("memcached.get_or_load.loads");
+        var value = loader.get();
+        if (value == null) {
+            // Drop the placeholder, so other callers do not wait for a value that never comes
+            this.execute("meta_delete", key, false, null,
+                    (opTimeout) -> _metaClient.delete(this.getMetaServer(key), key, "", opTimeout));
+            return null;
+        }
+
+        // Stale values are kept by the server and recached by the R flag of the next reader
+        var timeoutInSec = (staleTimeout > 0 ? timeout + staleTimeout : timeout) / 1000;
+        var data = _transcoder.encode(value);
+        var reply = this.execute("meta_set", key, false, null,
+                (opTimeout) -> _metaClient.set(this.getMetaServer(key), key, data.getData(),
+                        "T" + timeoutInSec + " F" + Integer.toUnsignedString(data.getFlag()), opTimeout));
+        _retrieveFlight.forget(key);
+        if (reply != null && reply.isSuccess())
+            storeNear(key, data, timeout);
+        else
+            removeNear(key);
+        return value;
+    }
+
+    private InetSocketAddress getMetaServer(String key) {
+        var node = this.getNode(key);
+        return node != null ? node : toAddress(_servers.keySet().iterator().next());
+    }
+
+    private void checkMeta(String correlationId) {
+        if (!_metaProtocol) {
+            throw new RuntimeException(
+                    new InvalidStateException(
+                            correlationId,
+                            "NOT_SUPPORTED",
+                            "Operation requires options.protocol set to meta"
+                    )
+            );
+        }
+    }
+
+    /**
+     * Gets the remaining time to live of a value without fetching the value.
+     * It requires <code>options.protocol</code> set to meta.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique value key.
+     * @return the remaining time in milliseconds, -1 if the value never expires
+     * or <code>null</code> if the value is missing.
+     */
+    public Long peekTimeToLive(String correlationId, String key) {
+        this.checkOpened(correlationId);
+        this.checkMeta(correlationId);
+
+        var reply = this.execute("meta_get", key, true, null,
+                (timeout) -> _metaClient.get(this.getMetaServer(key), key, "t", timeout));
+        if (reply == null || !reply.isSuccess())
+            return null;
+        return reply.ttl < 0 ? -1 : reply.ttl * 1000;
+    }
+
+    /**
+     * Marks a value as stale instead of removing it.
+     * <p>
+     * With <code>options.protocol</code> set to meta the value is invalidated by an md command:
+     * the next getOrLoad call recomputes it while concurrent callers still get the stale value.
+     * With other protocols the value is removed.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique value key.
+     */
+    public void invalidate(String correlationId, String key) {
+        if (!_metaProtocol) {
+            this.remove(correlationId, key);
+            return;
+        }
+
+        this.checkOpened(correlationId);
+
+        if (_nearCache != null)
+            _nearCache.remove(key);
+        if (_hotCache != null)
+            _hotCache.remove(key);
+
+        this.execute("meta_delete", key, false, null,
+                (timeout) -> _metaClient.delete(this.getMetaServer(key), key, "I", timeout));
     }
 }
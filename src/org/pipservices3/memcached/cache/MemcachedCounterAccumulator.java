@@ -0,0 +1,353 @@
+package org.pipservices3.memcached.cache;
+
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.config.IConfigurable;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.commons.errors.BadRequestException;
+import org.pipservices3.commons.refer.IReferenceable;
+import org.pipservices3.commons.refer.IReferences;
+import org.pipservices3.commons.refer.ReferenceException;
+import org.pipservices3.commons.run.IOpenable;
+import org.pipservices3.components.count.CompositeCounters;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind accumulator of memcached counters.
+ * <p>
+ * Increments are summed in striped in-memory cells and sent to memcached
+ * by {@link MemcachedCache#incrementMany(String, Map, long, long)} on a flush interval
+ * or when the number of pending increments reaches the threshold.
+ * Unlike {@link MemcachedCache#increment}, counters missing on the servers are created
+ * with their first flushed delta, so no increments of new counters are lost.
+ * Round trips to the servers grow with the number of distinct counters
+ * rather than the number of increments. Values on the servers lag behind
+ * by up to the flush interval, and pending increments are lost if the process dies.
+ * Deltas of failed servers are kept and sent with the next flush. When a server times out
+ * or fails in the middle of a flush, its counters may be changed anyway, so delivery
+ * is at-least-once and such deltas can be counted twice.
+ * Cells of counters that have nothing pending are removed after each flush.
+ * <p>
+ * ### Configuration parameters ###
+ * <p>
+ * Supports connection(s) and options of {@link MemcachedCache} and:
+ * <ul>
+ * <li>options:
+ *   <ul>
+ *   <li>flush_interval:        interval in milliseconds between flushes, 0 to flush only on demand or threshold (default: 1000)
+ *   <li>flush_threshold:       number of pending increments that triggers a flush, 0 to disable (default: 10000)
+ *   <li>counter_timeout:       expiration timeout in milliseconds of counters created on the servers, 0 for none (default: 0)
+ *   </ul>
+ * </ul>
+ * <p>
+ * ### References ###
+ * <ul>
+ * <li>*:discovery:*:*:1.0        (optional) {@link org.pipservices3.components.connect.IDiscovery} services to resolve connection
+ * <li>*:counters:*:*:1.0         (optional) {@link org.pipservices3.components.count.ICounters} components to pass collected measurements
+ * </ul>
+ * <p>
+ * ### Counters ###
+ * <ul>
+ * <li>memcached.accumulator.flush_time:   time of flushes
+ * <li>memcached.accumulator.flushed:      number of counters sent to the servers
+ * <li>memcached.accumulator.errors:       number of flushes that failed on some servers
+ * <li>memcached.accumulator.dropped:      number of counters dropped because the servers can never accept them
+ * </ul>
+ *
+ * @see MemcachedCache
+ */
+public class MemcachedCounterAccumulator implements IConfigurable, IReferenceable, IOpenable {
+    /**
+     * Striped sum of a counter. A cell removed by a flush is marked,
+     * so increments that raced with the removal move to a new cell.
+     */
+    private static final class Cell {
+        private final LongAdder sum = new LongAdder();
+        private volatile boolean removed = false;
+    }
+
+    private final MemcachedCache _cache = new MemcachedCache();
+    private final CompositeCounters _counters = new CompositeCounters();
+
+    private long _flushInterval = 1000;
+    private long _flushThreshold = 10000;
+    private long _counterTimeout = 0;
+
+    private final ConcurrentHashMap<String, Cell> _cells = new ConcurrentHashMap<>();
+    private final LongAdder _pending = new LongAdder();
+    private final AtomicBoolean _flushRequested = new AtomicBoolean();
+    private ScheduledExecutorService _flusher = null;
+    private String _correlationId = null;
+
+    /**
+     * Configures component by passing configuration parameters.
+     *
+     * @param config configuration parameters to be set.
+     */
+    @Override
+    public void configure(ConfigParams config) {
+        this._cache.configure(config);
+
+        this._flushInterval = config.getAsLongWithDefault("options.flush_interval", this._flushInterval);
+        this._flushThreshold = config.getAsLongWithDefault("options.flush_threshold", this._flushThreshold);
+        this._counterTimeout = config.getAsLongWithDefault("options.counter_timeout", this._counterTimeout);
+    }
+
+    /**
+     * Sets references to dependent components.
+     *
+     * @param references references to locate the component dependencies.
+     */
+    @Override
+    public void setReferences(IReferences references) throws ReferenceException {
+        this._cache.setReferences(references);
+        this._counters.setReferences(references);
+    }
+
+    /**
+     * Checks if the component is opened.
+     *
+     * @return true if the component has been opened and false otherwise.
+     */
+    @Override
+    public boolean isOpen() {
+        return _flusher != null;
+    }
+
+    /**
+     * Opens the component and starts periodic flushes.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     */
+    @Override
+    public void open(String correlationId) throws ApplicationException {
+        _cache.open(correlationId);
+        _correlationId = correlationId;
+
+        _flusher = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            var thread = new Thread(runnable, "memcached-counters");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (this._flushInterval > 0) {
+            _flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    this.flush(correlationId);
+                } catch (Exception ex) {
+                    // Failed deltas are kept until the next flush
+                }
+            }, this._flushInterval, this._flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Flushes pending increments and closes the component.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     */
+    @Override
+    public void close(String correlationId) {
+        if (_flusher != null) {
+            _flusher.shutdown();
+            try {
+                _flusher.awaitTermination(1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            _flusher = null;
+        }
+
+        if (!_cache.isOpen())
+            return;
+
+        try {
+            this.flush(correlationId);
+        } catch (RuntimeException ex) {
+            // Pending increments cannot be delivered without servers
+        } finally {
+            _cache.close(correlationId);
+        }
+    }
+
+    /**
+     * Adds a delta to a counter in memory. It never blocks on the network.
+     *
+     * @param key   a unique counter key.
+     * @param delta a value to add, negative to subtract.
+     * @throws RuntimeException with {@link BadRequestException} when the key is not a valid memcached key.
+     */
+    public void increment(String key, long delta) {
+        // An invalid key would fail every flush it is part of
+        try {
+            MetaProtocolClient.checkKey(key);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException(
+                    new BadRequestException(
+                            _correlationId,
+                            "INVALID_KEY",
+                            "Counter key " + key + " is invalid: " + e.getMessage()
+                    )
+            );
+        }
+
+        this.add(key, delta);
+        _pending.increment();
+
+        if (this._flushThreshold > 0 && _pending.sum() >= this._flushThreshold)
+            this.requestFlush();
+    }
+
+    /**
+     * Adds one to a counter in memory.
+     *
+     * @param key a unique counter key.
+     * @throws RuntimeException with {@link BadRequestException} when the key is not a valid memcached key.
+     */
+    public void increment(String key) {
+        this.increment(key, 1);
+    }
+
+    /**
+     * Gets the delta of a counter that is not sent to the servers yet.
+     *
+     * @param key a unique counter key.
+     * @return the pending delta.
+     */
+    public long getPendingDelta(String key) {
+        var cell = _cells.get(key);
+        return cell != null ? cell.sum.sum() : 0;
+    }
+
+    /**
+     * Gets the number of counters kept in memory.
+     *
+     * @return the number of counters.
+     */
+    int getCellCount() {
+        return _cells.size();
+    }
+
+    /**
+     * Gets the value of a counter on the servers with the pending delta added.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @param key           a unique counter key.
+     * @return the counter value.
+     */
+    public long getCounter(String correlationId, String key) {
+        var value = _cache.getCounter(correlationId, key);
+        return Math.max(0, (value != null ? value : 0) + this.getPendingDelta(key));
+    }
+
+    private void requestFlush() {
+        var flusher = _flusher;
+        if (flusher == null || !_flushRequested.compareAndSet(false, true))
+            return;
+
+        try {
+            flusher.execute(() -> {
+                try {
+                    this.flush(_correlationId);
+                } catch (Exception ex) {
+                    // Failed deltas are kept until the next flush
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            _flushRequested.set(false);
+        }
+    }
+
+    /**
+     * Sends pending deltas of all counters to the servers in one pipeline per server.
+     * Deltas of failed servers are kept for the next flush.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @return new values of the flushed counters by their keys.
+     */
+    public synchronized Map<String, Long> flush(String correlationId) {
+        _flushRequested.set(false);
+        _pending.reset();
+
+        var deltas = new HashMap<String, Long>();
+        for (var entry : _cells.entrySet()) {
+            var delta = entry.getValue().sum.sumThenReset();
+            if (delta != 0)
+                deltas.put(entry.getKey(), delta);
+        }
+
+        try {
+            return deltas.isEmpty() ? new HashMap<>() : this.send(correlationId, deltas);
+        } finally {
+            this.removeEmptyCells();
+        }
+    }
+
+    private Map<String, Long> send(String correlationId, Map<String, Long> deltas) {
+        var timing = _counters.beginTiming("memcached.accumulator.flush_time");
+        try {
+            var result = _cache.incrementMany(correlationId, deltas, true, 0, this._counterTimeout);
+
+            // Counters of failed servers are sent again with the next flush
+            for (var key : result.getFailedKeys())
+                this.restore(key, deltas.get(key));
+            if (!result.isComplete())
+                _counters.incrementOne("memcached.accumulator.errors");
+
+            _counters.increment("memcached.accumulator.flushed", result.getValues().size());
+            return new HashMap<>(result.getValues());
+        } catch (RuntimeException e) {
+            _counters.incrementOne("memcached.accumulator.errors");
+
+            // Rejected deltas fail the same way on every retry, so they are dropped
+            if (e.getCause() instanceof BadRequestException) {
+                _counters.increment("memcached.accumulator.dropped", deltas.size());
+                throw e;
+            }
+
+            // Server errors are reported in the result, so nothing was sent
+            for (var delta : deltas.entrySet())
+                this.restore(delta.getKey(), delta.getValue());
+            throw e;
+        } finally {
+            timing.endTiming();
+        }
+    }
+
+    private void restore(String key, long delta) {
+        this.add(key, delta);
+        _pending.increment();
+    }
+
+    private void add(String key, long delta) {
+        while (delta != 0) {
+            var cell = _cells.computeIfAbsent(key, (k) -> new Cell());
+            cell.sum.add(delta);
+            if (!cell.removed)
+                return;
+
+            // The cell was removed in between, so whatever was not flushed from it moves to a new cell
+            delta = cell.sum.sumThenReset();
+        }
+    }
+
+    private void removeEmptyCells() {
+        for (var key : _cells.keySet()) {
+            _cells.computeIfPresent(key, (k, cell) -> {
+                cell.removed = true;
+                if (cell.sum.sum() == 0)
+                    return null;
+                cell.removed = false;
+                return cell;
+            });
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.pipservices3.memcached.cache;
+
+/**
+ * Distributed cache that stores values in Memcached caching service
+ * and keeps recently used values in a bounded in-process near cache.
+ * <p>
+ * Reads of hot keys are served from process memory until their near cache
+ * timeout expires. Stores and removes write through both tiers.
+ * Values changed by other processes may be seen after up to <code>near_cache.timeout</code>.
+ * <p>
+ * ### Configuration parameters ###
+ * <p>
+ * Supports all parameters of {@link MemcachedCache} with near cache enabled by default.
+ *
+ * @see MemcachedCache
+ */
+public class MemcachedNearCache extends MemcachedCache {
+    /**
+     * Creates a new instance of the cache.
+     */
+    public MemcachedNearCache() {
+        super();
+        this._nearCacheEnabled = true;
+    }
+}
@@ -0,0 +1,380 @@
+package org.pipservices3.memcached.cache;
+
+import net.rubyeye.xmemcached.exception.MemcachedException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client of memcached meta commands mg, ms, md and ma.
+ * <p>
+ * Meta commands return the value, flags, cas, remaining time to live and
+ * recompute marks of an item in one round trip. Connections are opened on demand,
+ * and up to the pool size of idle connections is kept for each server.
+ * A connection that failed or timed out is closed, so its late replies are never read.
+ * Keys are checked before they are sent, so they cannot inject other commands.
+ */
+class MetaProtocolClient {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final int MAX_KEY_LENGTH = 250;
+
+    /**
+     * Reply of a meta command.
+     */
+    static final class Reply {
+        final String status;
+        final byte[] value;
+        final int flags;
+        final long cas;
+        final long ttl;
+        final boolean win;
+        final boolean stale;
+        final boolean winSent;
+
+        private Reply(String status, byte[] value, int flags, long cas, long ttl,
+                      boolean win, boolean stale, boolean winSent) {
+            this.status = status;
+            this.value = value;
+            this.flags = flags;
+            this.cas = cas;
+            this.ttl = ttl;
+            this.win = win;
+            this.stale = stale;
+            this.winSent = winSent;
+        }
+
+        /**
+         * Checks if the item was found or, for writes, the command succeeded.
+         *
+         * @return true for VA and HD replies.
+         */
+        boolean isSuccess() {
+            return "VA".equals(status) || "HD".equals(status);
+        }
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final InputStream input;
+        private final OutputStream output;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.input = new BufferedInputStream(socket.getInputStream());
+            this.output = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Nothing to do with a broken connection
+            }
+        }
+    }
+
+    private final int _poolSize;
+    private final ConcurrentHashMap<InetSocketAddress, ConcurrentLinkedDeque<Connection>> _idle = new ConcurrentHashMap<>();
+    private final AtomicInteger _idleCount = new AtomicInteger();
+    private volatile boolean _closed = false;
+
+    /**
+     * Creates a new client.
+     *
+     * @param poolSize a maximum number of idle connections kept for each server.
+     */
+    MetaProtocolClient(int poolSize) {
+        _poolSize = Math.max(1, poolSize);
+    }
+
+    /**
+     * Gets an item with the mg command.
+     *
+     * @param server  an address of the server that holds the key.
+     * @param key     an item key.
+     * @param flags   meta flags separated by spaces, for example "v f t N30".
+     * @param timeout an operation timeout in milliseconds.
+     * @return the reply with VA, HD or EN status.
+     */
+    Reply get(InetSocketAddress server, String key, String flags, long timeout)
+            throws TimeoutException, InterruptedException, MemcachedException {
+        checkKey(key);
+        return execute(server, ("mg " + key + " " + flags).trim(), null, timeout);
+    }
+
+    /**
+     * Stores an item with the ms command.
+     *
+     * @param server  an address of the server that holds the key.
+     * @param key     an item key.
+     * @param data    item data.
+     * @param flags   meta flags separated by spaces, for example "T60 F0".
+     * @param timeout an operation timeout in milliseconds.
+     * @return the reply with HD, NS, EX or NF status.
+     */
+    Reply set(InetSocketAddress server, String key, byte[] data, String flags, long timeout)
+            throws TimeoutException, InterruptedException, MemcachedException {
+        checkKey(key);
+        return execute(server, ("ms " + key + " " + data.length + " " + flags).trim(), data, timeout);
+    }
+
+    /**
+     * Deletes or invalidates an item with the md command.
+     *
+     * @param server  an address of the server that holds the key.
+     * @param key     an item key.
+     * @param flags   meta flags separated by spaces, for example "I" to mark the item as stale.
+     * @param timeout an operation timeout in milliseconds.
+     * @return the reply with HD, EX or NF status.
+     */
+    Reply delete(InetSocketAddress server, String key, String flags, long timeout)
+            throws TimeoutException, InterruptedException, MemcachedException {
+        checkKey(key);
+        return execute(server, ("md " + key + " " + flags).trim(), null, timeout);
+    }
+
+    /**
+     * Changes numeric items with ma commands pipelined in a single write.
+     *
+     * @param server  an address of the server that holds the keys.
+     * @param keys    item keys.
+     * @param flags   meta flags of each key separated by spaces, for example "N60 J0 D5 MI v".
+     * @param timeout an operation timeout in milliseconds.
+     * @return replies with VA, HD, NF or NS status in the order of the keys.
+     */
+    List<Reply> arithmetic(InetSocketAddress server, List<String> keys, List<String> flags, long timeout)
+            throws TimeoutException, InterruptedException, MemcachedException {
+        if (keys.size() != flags.size())
+            throw new IllegalArgumentException("Number of keys and flags must be equal");
+
+        var requests = new ArrayList<String>(keys.size());
+        for (var index = 0; index < keys.size(); index++) {
+            checkKey(keys.get(index));
+            requests.add(("ma " + keys.get(index) + " " + flags.get(index)).trim());
+        }
+        return executeMany(server, requests, null, timeout);
+    }
+
+    /**
+     * Checks that a key can be sent in a command line.
+     * The same rules are applied by memcached and xmemcached: at most 250 bytes
+     * without spaces and control characters.
+     *
+     * @param key a key to check.
+     * @throws IllegalArgumentException when the key is invalid.
+     */
+    static void checkKey(String key) {
+        if (key == null || key.isEmpty())
+            throw new IllegalArgumentException("Key must not be empty");
+
+        var bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_KEY_LENGTH)
+            throw new IllegalArgumentException("Key is longer than " + MAX_KEY_LENGTH + " bytes");
+        for (var current : bytes) {
+            if ((current >= 0 && current <= ' ') || current == 0x7f)
+                throw new IllegalArgumentException("Key contains spaces or control characters");
+        }
+    }
+
+    /**
+     * Closes all idle connections. Connections in use are closed when they are returned.
+     */
+    void close() {
+        _closed = true;
+        for (var connections : _idle.values()) {
+            for (var connection = connections.poll(); connection != null; connection = connections.poll())
+                connection.close();
+        }
+        _idle.clear();
+        _idleCount.set(0);
+    }
+
+    /**
+     * Gets the number of idle connections kept open.
+     *
+     * @return the number of connections.
+     */
+    int getIdleConnectionCount() {
+        return _idleCount.get();
+    }
+
+    private Reply execute(InetSocketAddress server, String command, byte[] data, long timeout)
+            throws TimeoutException, InterruptedException, MemcachedException {
+        return executeMany(server, List.of(command), data, timeout).get(0);
+    }
+
+    private List<Reply> executeMany(InetSocketAddress server, List<String> commands, byte[] data, long timeout)
+            throws TimeoutException, InterruptedException, MemcachedException {
+        if (_closed)
+            throw new MemcachedException("Meta protocol client is closed");
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        var soTimeout = (int) Math.max(1, Math.min(timeout, Integer.MAX_VALUE));
+        Connection connection = null;
+        try {
+            connection = this.borrow(server, soTimeout);
+            connection.socket.setSoTimeout(soTimeout);
+
+            for (var command : commands) {
+                connection.output.write(command.getBytes(StandardCharsets.UTF_8));
+                connection.output.write(CRLF);
+                if (data != null) {
+                    connection.output.write(data);
+                    connection.output.write(CRLF);
+                }
+            }
+            connection.output.flush();
+
+            var replies = new ArrayList<Reply>(commands.size());
+            for (var index = 0; index < commands.size(); index++)
+                replies.add(readReply(connection.input));
+            this.giveBack(server, connection);
+            return replies;
+        } catch (SocketTimeoutException ex) {
+            if (connection != null)
+                connection.close();
+            throw new TimeoutException("Timed out after " + timeout + " ms waiting for " + server);
+        } catch (IOException ex) {
+            if (connection != null)
+                connection.close();
+            throw new MemcachedException("Meta command to " + server + " failed: " + ex.getMessage(), ex);
+        } catch (MemcachedException ex) {
+            // Server errors leave the connection in an unknown state
+            connection.close();
+            throw ex;
+        }
+    }
+
+    private Connection borrow(InetSocketAddress server, int timeout) throws IOException {
+        var connections = _idle.get(server);
+        var connection = connections != null ? connections.poll() : null;
+        if (connection != null) {
+            _idleCount.decrementAndGet();
+            return connection;
+        }
+
+        var socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(server, timeout);
+            return new Connection(socket);
+        } catch (IOException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+
+    private void giveBack(InetSocketAddress server, Connection connection) {
+        var connections = _idle.computeIfAbsent(server, (key) -> new ConcurrentLinkedDeque<>());
+        if (_closed || connections.size() >= _poolSize) {
+            connection.close();
+            return;
+        }
+        connections.push(connection);
+        _idleCount.incrementAndGet();
+    }
+
+    private static Reply readReply(InputStream input) throws IOException, MemcachedException {
+        var line = readLine(input);
+        var tokens = line.split(" ");
+        var status = tokens[0];
+
+        byte[] value = null;
+        var first = 1;
+        switch (status) {
+            case "VA":
+                if (tokens.length < 2)
+                    throw new MemcachedException("Bad meta reply: " + line);
+                int size;
+                try {
+                    size = Integer.parseInt(tokens[1]);
+                } catch (NumberFormatException ex) {
+                    throw new MemcachedException("Bad meta reply: " + line);
+                }
+                value = input.readNBytes(size);
+                if (value.length < size || input.read() != '\r' || input.read() != '\n')
+                    throw new IOException("Connection closed while reading a value");
+                first = 2;
+                break;
+            case "HD":
+            case "EN":
+            case "NS":
+            case "EX":
+            case "NF":
+            case "MN":
+                break;
+            default:
+                throw new MemcachedException("Meta command failed: " + line);
+        }
+
+        var flags = 0;
+        long cas = 0;
+        long ttl = -1;
+        var win = false;
+        var stale = false;
+        var winSent = false;
+        try {
+            for (var index = first; index < tokens.length; index++) {
+                var token = tokens[index];
+                if (token.isEmpty())
+                    continue;
+                switch (token.charAt(0)) {
+                    case 'f':
+                        flags = Integer.parseUnsignedInt(token.substring(1));
+                        break;
+                    case 'c':
+                        cas = Long.parseUnsignedLong(token.substring(1));
+                        break;
+                    case 't':
+                        ttl = Long.parseLong(token.substring(1));
+                        break;
+                    case 'W':
+                        win = true;
+                        break;
+                    case 'X':
+                        stale = true;
+                        break;
+                    case 'Z':
+                        winSent = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException ex) {
+            throw new MemcachedException("Bad meta reply: " + line);
+        }
+
+        return new Reply(status, value, flags, cas, ttl, win, stale, winSent);
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        var line = new ByteArrayOutputStream();
+        while (true) {
+            var current = input.read();
+            if (current < 0)
+                throw new IOException("Connection closed");
+            if (current == '\r') {
+                if (input.read() != '\n')
+                    throw new IOException("Bad line ending");
+                return line.toString(StandardCharsets.US_ASCII);
+            }
+            line.write(current);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.pipservices3.memcached.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-process cache that keeps recently used values in front of memcached.
+ * <p>
+ * Entries expire after a short timeout and the least recently used entries are evicted
+ * when the number of entries or their estimated total weight exceeds the limits.
+ * Reads do not take locks: they look up a concurrent map and record the access
+ * in a buffer that is replayed into the LRU order by writes or by a reader that gets the lock
+ * without waiting. When the buffer is full, accesses are dropped, so the order is approximate under load.
+ */
+class NearCache {
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_DRAIN_THRESHOLD = 32;
+
+    private static class Entry {
+        private final String key;
+        private final Object value;
+        private final long weight;
+        private final long expiresAt;
+
+        private Entry(String key, Object value, long weight, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> _entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> _reads = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _readCount = new AtomicInteger();
+    private final ReentrantLock _lock = new ReentrantLock();
+    // Guarded by _lock
+    private final LinkedHashMap<String, Entry> _order = new LinkedHashMap<>(16, 0.75f, true);
+    private long _weight = 0;
+
+    private final int _maxSize;
+    private final long _maxWeight;
+    private final long _timeout;
+
+    /**
+     * Creates a new instance of the near cache.
+     *
+     * @param maxSize   a maximum number of entries.
+     * @param maxWeight a maximum total weight of entries in bytes or 0 for no limit.
+     * @param timeout   a maximum time in milliseconds entries are kept.
+     */
+    NearCache(int maxSize, long maxWeight, long timeout) {
+        _maxSize = Math.max(1, maxSize);
+        _maxWeight = maxWeight;
+        _timeout = timeout;
+    }
+
+    /**
+     * Gets a value from the cache.
+     *
+     * @param key a unique value key.
+     * @return a cached value or <code>null</code> if it is missing or expired.
+     */
+    Object get(String key) {
+        var entry = _entries.get(key);
+        if (entry == null)
+            return null;
+
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            _lock.lock();
+            try {
+                if (_entries.remove(key, entry))
+                    removeOrdered(entry);
+            } finally {
+                _lock.unlock();
+            }
+            return null;
+        }
+
+        recordRead(entry);
+        return entry.value;
+    }
+
+    /**
+     * Puts a value into the cache.
+     *
+     * @param key     a unique value key.
+     * @param value   a value to cache. Null values are not cached.
+     * @param timeout an expiration timeout of the value in memcached in milliseconds
+     *                or 0 when it is unknown. The entry never outlives it.
+     */
+    void put(String key, Object value, long timeout) {
+        _lock.lock();
+        try {
+            drainReads();
+            removeEntry(key);
+            if (value == null)
+                return;
+
+            var ttl = timeout > 0 ? Math.min(_timeout, timeout) : _timeout;
+            var entry = new Entry(key, value, estimateWeight(value), System.currentTimeMillis() + ttl);
+            _entries.put(key, entry);
+            _order.put(key, entry);
+            _weight += entry.weight;
+
+            var iterator = _order.values().iterator();
+            while (iterator.hasNext() && (_order.size() > _maxSize || (_maxWeight > 0 && _weight > _maxWeight))) {
+                var evicted = iterator.next();
+                iterator.remove();
+                _entries.remove(evicted.key, evicted);
+                _weight -= evicted.weight;
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a value from the cache.
+     *
+     * @param key a unique value key.
+     */
+    void remove(String key) {
+        _lock.lock();
+        try {
+            removeEntry(key);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes values from the cache.
+     *
+     * @param keys unique value keys.
+     */
+    void removeAll(Collection<String> keys) {
+        _lock.lock();
+        try {
+            for (var key : keys)
+                removeEntry(key);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all values from the cache.
+     */
+    void clear() {
+        _lock.lock();
+        try {
+            _entries.clear();
+            _order.clear();
+            _reads.clear();
+            _readCount.set(0);
+            _weight = 0;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of cached entries including the expired ones not evicted yet.
+     *
+     * @return the number of entries.
+     */
+    int size() {
+        return _entries.size();
+    }
+
+    private void recordRead(Entry entry) {
+        var count = _readCount.incrementAndGet();
+        if (count > READ_BUFFER_SIZE) {
+            _readCount.decrementAndGet();
+        } else {
+            _reads.offer(entry);
+        }
+
+        if (count >= READ_DRAIN_THRESHOLD && _lock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                _lock.unlock();
+            }
+        }
+    }
+
+    private void drainReads() {
+        for (var entry = _reads.poll(); entry != null; entry = _reads.poll()) {
+            _readCount.decrementAndGet();
+            // Access-ordered get moves the key to the most recently used end
+            _order.get(entry.key);
+        }
+    }
+
+    private void removeEntry(String key) {
+        var entry = _entries.remove(key);
+        if (entry != null)
+            removeOrdered(entry);
+    }
+
+    private void removeOrdered(Entry entry) {
+        if (_order.remove(entry.key, entry))
+            _weight -= entry.weight;
+    }
+
+    private static long estimateWeight(Object value) {
+        if (value instanceof String)
+            return 40 + 2L * ((String) value).length();
+        if (value instanceof byte[])
+            return 16 + ((byte[]) value).length;
+        if (value instanceof Collection)
+            return 64 + 32L * ((Collection<?>) value).size();
+        if (value instanceof Map)
+            return 64 + 64L * ((Map<?, ?>) value).size();
+        return 64;
+    }
+}
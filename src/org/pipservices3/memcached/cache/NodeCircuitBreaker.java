@@ -0,0 +1,146 @@
+package org.pipservices3.memcached.cache;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-node circuit breaker that stops sending requests to failing memcached servers.
+ * <p>
+ * A node is opened after a number of consecutive failures and gets no requests
+ * until the retry timeout passes. After that a single probe request is let through:
+ * its success closes the node and its failure opens it again.
+ */
+class NodeCircuitBreaker {
+    private static class NodeState {
+        private int failures = 0;
+        private long openedUntil = 0;
+        private boolean probing = false;
+    }
+
+    private final ConcurrentHashMap<InetSocketAddress, NodeState> _nodes = new ConcurrentHashMap<>();
+    private final int _failures;
+    private final long _retryTimeout;
+
+    /**
+     * Creates a new instance of the circuit breaker.
+     *
+     * @param failures     a number of consecutive failures that open a node.
+     * @param retryTimeout a time in milliseconds an open node gets no requests.
+     */
+    NodeCircuitBreaker(int failures, long retryTimeout) {
+        _failures = Math.max(1, failures);
+        _retryTimeout = retryTimeout;
+    }
+
+    /**
+     * Checks if a request can be sent to a node.
+     *
+     * @param node a node address.
+     * @return <code>true</code> if the node is closed or can be probed and <code>false</code> otherwise.
+     */
+    boolean allowRequest(InetSocketAddress node) {
+        var state = _nodes.get(node);
+        if (state == null)
+            return true;
+
+        synchronized (state) {
+            if (state.openedUntil == 0)
+                return true;
+            if (System.currentTimeMillis() < state.openedUntil || state.probing)
+                return false;
+
+            state.probing = true;
+            return true;
+        }
+    }
+
+    /**
+     * Records a successful request to a node.
+     *
+     * @param node a node address.
+     * @return <code>true</code> if the node was open and got closed.
+     */
+    boolean recordSuccess(InetSocketAddress node) {
+        var state = _nodes.get(node);
+        if (state == null)
+            return false;
+
+        synchronized (state) {
+            var wasOpen = state.openedUntil != 0;
+            state.failures = 0;
+            state.openedUntil = 0;
+            state.probing = false;
+            return wasOpen;
+        }
+    }
+
+    /**
+     * Releases a probe request that ended without telling if the node is healthy,
+     * for example when it was interrupted or failed to encode a value.
+     * The next request after that becomes a new probe.
+     *
+     * @param node a node address.
+     */
+    void releaseProbe(InetSocketAddress node) {
+        var state = _nodes.get(node);
+        if (state == null)
+            return;
+
+        synchronized (state) {
+            state.probing = false;
+        }
+    }
+
+    /**
+     * Records a failed request to a node.
+     *
+     * @param node a node address.
+     * @return <code>true</code> if the node got opened by this failure.
+     */
+    boolean recordFailure(InetSocketAddress node) {
+        var state = _nodes.computeIfAbsent(node, (key) -> new NodeState());
+
+        synchronized (state) {
+            state.failures++;
+            if (!state.probing && (state.openedUntil != 0 || state.failures < _failures))
+                return false;
+
+            state.openedUntil = System.currentTimeMillis() + _retryTimeout;
+            state.probing = false;
+            return true;
+        }
+    }
+
+    /**
+     * Checks if a node is open and its retry timeout has not passed yet.
+     *
+     * @param node a node address.
+     * @return <code>true</code> if the node is open and <code>false</code> otherwise.
+     */
+    boolean isOpen(InetSocketAddress node) {
+        var state = _nodes.get(node);
+        if (state == null)
+            return false;
+
+        synchronized (state) {
+            return state.openedUntil != 0 && System.currentTimeMillis() < state.openedUntil;
+        }
+    }
+
+    /**
+     * Gets the earliest time an open node can be probed again.
+     *
+     * @return the time in milliseconds or {@link Long#MAX_VALUE} if no nodes are open.
+     */
+    long getNextRetryTime() {
+        var result = Long.MAX_VALUE;
+        var now = System.currentTimeMillis();
+        for (var state : _nodes.values()) {
+            synchronized (state) {
+                if (state.openedUntil > now)
+                    result = Math.min(result, state.openedUntil);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,128 @@
+package org.pipservices3.memcached.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Serves asynchronous retrieves by collecting pending keys and loading them with batched multi-gets.
+ * <p>
+ * At most <code>maxWorkers</code> executor threads are busy at any time no matter
+ * how many requests are in flight: requests that arrive while workers are busy
+ * are queued and picked up together by the next multi-get.
+ */
+class RetrieveBatcher {
+    private static class Request {
+        private final String key;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private Request(String key) {
+            this.key = key;
+        }
+    }
+
+    private final Queue<Request> _queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _activeWorkers = new AtomicInteger();
+    private final Executor _executor;
+    private final int _maxWorkers;
+    private final int _batchSize;
+    private final Function<Collection<String>, Map<String, Object>> _loader;
+
+    /**
+     * Creates a new instance of the batcher.
+     *
+     * @param executor   an executor to run multi-gets on.
+     * @param maxWorkers a maximum number of multi-gets running at the same time.
+     * @param batchSize  a maximum number of keys in a single multi-get.
+     * @param loader     a function that loads values by their keys.
+     */
+    RetrieveBatcher(Executor executor, int maxWorkers, int batchSize,
+                    Function<Collection<String>, Map<String, Object>> loader) {
+        _executor = executor;
+        _maxWorkers = Math.max(1, maxWorkers);
+        _batchSize = Math.max(1, batchSize);
+        _loader = loader;
+    }
+
+    /**
+     * Queues a key to be retrieved.
+     *
+     * @param key a unique value key.
+     * @return a future completed with the cached value or <code>null</code> if nothing was found.
+     */
+    CompletableFuture<Object> submit(String key) {
+        var request = new Request(key);
+        _queue.add(request);
+        schedule();
+        return request.future;
+    }
+
+    private void schedule() {
+        while (!_queue.isEmpty()) {
+            var active = _activeWorkers.get();
+            if (active >= _maxWorkers)
+                return;
+
+            if (_activeWorkers.compareAndSet(active, active + 1)) {
+                try {
+                    _executor.execute(this::drain);
+                } catch (RejectedExecutionException ex) {
+                    _activeWorkers.decrementAndGet();
+                    failPending(ex);
+                }
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            List<Request> batch;
+            while (!(batch = pollBatch()).isEmpty())
+                process(batch);
+        } finally {
+            _activeWorkers.decrementAndGet();
+        }
+
+        // Pick up requests queued after the last poll
+        schedule();
+    }
+
+    private List<Request> pollBatch() {
+        var batch = new ArrayList<Request>();
+        Request request;
+        while (batch.size() < _batchSize && (request = _queue.poll()) != null)
+            batch.add(request);
+        return batch;
+    }
+
+    private void process(List<Request> batch) {
+        var keys = new LinkedHashSet<String>();
+        for (var request : batch)
+            keys.add(request.key);
+
+        try {
+            var values = _loader.apply(keys);
+            for (var request : batch)
+                request.future.complete(values.get(request.key));
+        } catch (Throwable ex) {
+            for (var request : batch)
+                request.future.completeExceptionally(ex);
+        }
+    }
+
+    private void failPending(Throwable ex) {
+        Request request;
+        while ((request = _queue.poll()) != null)
+            request.future.completeExceptionally(ex);
+    }
+}
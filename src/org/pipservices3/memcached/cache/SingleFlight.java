@@ -0,0 +1,67 @@
+package org.pipservices3.memcached.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent calls with the same key.
+ * <p>
+ * The first caller executes the call while callers arriving before it completes
+ * wait and share its result or its exception.
+ *
+ * @param <T> the type of call results.
+ */
+class SingleFlight<T> {
+    private final ConcurrentHashMap<String, CompletableFuture<T>> _calls = new ConcurrentHashMap<>();
+
+    /**
+     * Executes a call unless the same call is already in flight.
+     *
+     * @param key  a key that identifies the call.
+     * @param call a call to execute.
+     * @return the result of the shared call.
+     */
+    T execute(String key, Supplier<T> call) {
+        var future = new CompletableFuture<T>();
+        var inFlight = _calls.putIfAbsent(key, future);
+        if (inFlight != null)
+            return join(inFlight);
+
+        try {
+            var result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            _calls.remove(key, future);
+        }
+    }
+
+    /**
+     * Detaches a call in flight, so later calls with the same key execute again.
+     * Callers that already wait for the detached call still get its result.
+     * It is used after writes, so calls started after them never see older values.
+     *
+     * @param key a key that identifies the call.
+     */
+    void forget(String key) {
+        _calls.remove(key);
+    }
+
+    private T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            var cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package org.pipservices3.memcached.codec;
+
+import org.pipservices3.commons.convert.JsonConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codec that saves values in compact binary form using a subset of CBOR (RFC 8949).
+ * <p>
+ * Supported types are null, booleans, integer and floating point numbers, strings,
+ * byte arrays, collections, arrays and maps. Other objects are converted
+ * into maps through their JSON representation. Integers are restored
+ * as Integer or Long, floating point numbers as Double. BigInteger values are saved
+ * as bignums (tags 2 and 3) and BigDecimal values as decimal fractions (tag 4),
+ * so both are restored exactly with their original types.
+ */
+public class BinaryValueCodec implements IValueCodec {
+    public static final int FLAG = 0x0200;
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+
+    private static final int SIMPLE_FALSE = 0xf4;
+    private static final int SIMPLE_TRUE = 0xf5;
+    private static final int SIMPLE_NULL = 0xf6;
+    private static final int SIMPLE_UNDEFINED = 0xf7;
+    private static final int FLOAT_32 = 0xfa;
+    private static final int FLOAT_64 = 0xfb;
+
+    private static final int TAG_POSITIVE_BIGNUM = 2;
+    private static final int TAG_NEGATIVE_BIGNUM = 3;
+    private static final int TAG_DECIMAL_FRACTION = 4;
+
+    @Override
+    public int getFlag() {
+        return FLAG;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        var output = new ByteArrayOutputStream();
+        write(output, value);
+        return output.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] data) throws IOException {
+        var reader = new Reader(data);
+        var value = reader.read();
+        if (reader.position != data.length)
+            throw new IOException("Unexpected trailing bytes in binary value");
+        return value;
+    }
+
+    private void write(ByteArrayOutputStream output, Object value) throws IOException {
+        if (value == null) {
+            output.write(SIMPLE_NULL);
+        } else if (value instanceof Boolean) {
+            output.write((Boolean) value ? SIMPLE_TRUE : SIMPLE_FALSE);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            var number = ((Number) value).longValue();
+            if (number >= 0)
+                writeHeader(output, MAJOR_UNSIGNED, number);
+            else
+                writeHeader(output, MAJOR_NEGATIVE, -1 - number);
+        } else if (value instanceof BigInteger) {
+            writeBignum(output, (BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            // Decimal fraction is an array of the base 10 exponent and the mantissa
+            var decimal = (BigDecimal) value;
+            var exponent = -(long) decimal.scale();
+            writeHeader(output, MAJOR_TAG, TAG_DECIMAL_FRACTION);
+            writeHeader(output, MAJOR_ARRAY, 2);
+            write(output, exponent);
+            var mantissa = decimal.unscaledValue();
+            if (mantissa.bitLength() < 64)
+                write(output, mantissa.longValue());
+            else
+                writeBignum(output, mantissa);
+        } else if (value instanceof Number) {
+            var bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            output.write(FLOAT_64);
+            for (var shift = 56; shift >= 0; shift -= 8)
+                output.write((int) (bits >>> shift));
+        } else if (value instanceof String || value instanceof Character
+                || value instanceof Enum || value instanceof TemporalAccessor) {
+            var bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            writeHeader(output, MAJOR_TEXT, bytes.length);
+            output.write(bytes);
+        } else if (value instanceof byte[]) {
+            var bytes = (byte[]) value;
+            writeHeader(output, MAJOR_BYTES, bytes.length);
+            output.write(bytes);
+        } else if (value instanceof Collection) {
+            var items = (Collection<?>) value;
+            writeHeader(output, MAJOR_ARRAY, items.size());
+            for (var item : items)
+                write(output, item);
+        } else if (value instanceof Object[]) {
+            var items = (Object[]) value;
+            writeHeader(output, MAJOR_ARRAY, items.length);
+            for (var item : items)
+                write(output, item);
+        } else if (value instanceof Map) {
+            var map = (Map<?, ?>) value;
+            writeHeader(output, MAJOR_MAP, map.size());
+            for (var entry : map.entrySet()) {
+                write(output, entry.getKey());
+                write(output, entry.getValue());
+            }
+        } else {
+            write(output, JsonConverter.toMap(JsonConverter.toJson(value)));
+        }
+    }
+
+    private void writeBignum(ByteArrayOutputStream output, BigInteger number) throws IOException {
+        var tag = TAG_POSITIVE_BIGNUM;
+        if (number.signum() < 0) {
+            tag = TAG_NEGATIVE_BIGNUM;
+            number = number.negate().subtract(BigInteger.ONE);
+        }
+
+        // Bignum content is the unsigned big-endian magnitude without a sign byte
+        var bytes = number.toByteArray();
+        var offset = bytes.length > 1 && bytes[0] == 0 ? 1 : 0;
+        writeHeader(output, MAJOR_TAG, tag);
+        writeHeader(output, MAJOR_BYTES, bytes.length - offset);
+        output.write(bytes, offset, bytes.length - offset);
+    }
+
+    private void writeHeader(ByteArrayOutputStream output, int major, long argument) {
+        var type = major << 5;
+        if (argument < 24) {
+            output.write(type | (int) argument);
+        } else if (argument < 0x100) {
+            output.write(type | 24);
+            output.write((int) argument);
+        } else if (argument < 0x10000) {
+            output.write(type | 25);
+            output.write((int) (argument >>> 8));
+            output.write((int) argument);
+        } else if (argument < 0x100000000L) {
+            output.write(type | 26);
+            for (var shift = 24; shift >= 0; shift -= 8)
+                output.write((int) (argument >>> shift));
+        } else {
+            output.write(type | 27);
+            for (var shift = 56; shift >= 0; shift -= 8)
+                output.write((int) (argument >>> shift));
+        }
+    }
+
+    private static class Reader {
+        private final byte[] data;
+        private int position = 0;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private int readByte() throws IOException {
+            if (position >= data.length)
+                throw new IOException("Unexpected end of binary value");
+            return data[position++] & 0xff;
+        }
+
+        private long readUnsigned(int size) throws IOException {
+            long result = 0;
+            for (var i = 0; i < size; i++)
+                result = (result << 8) | readByte();
+            return result;
+        }
+
+        private long readArgument(int info) throws IOException {
+            if (info < 24)
+                return info;
+            switch (info) {
+                case 24:
+                    return readUnsigned(1);
+                case 25:
+                    return readUnsigned(2);
+                case 26:
+                    return readUnsigned(4);
+                case 27:
+                    return readUnsigned(8);
+                default:
+                    throw new IOException("Unsupported binary value header " + info);
+            }
+        }
+
+        private int readLength(int info) throws IOException {
+            var length = readArgument(info);
+            if (length < 0 || length > data.length - position)
+                throw new IOException("Invalid length in binary value");
+            return (int) length;
+        }
+
+        private Object read() throws IOException {
+            var initial = readByte();
+            var major = initial >>> 5;
+            var info = initial & 0x1f;
+
+            switch (major) {
+                case MAJOR_UNSIGNED: {
+                    var number = readArgument(info);
+                    if (number < 0)
+                        return new BigInteger(Long.toUnsignedString(number));
+                    return toInteger(number);
+                }
+                case MAJOR_NEGATIVE: {
+                    var number = readArgument(info);
+                    if (number < 0)
+                        return BigInteger.ONE.negate().subtract(new BigInteger(Long.toUnsignedString(number)));
+                    return toInteger(-1 - number);
+                }
+                case MAJOR_BYTES: {
+                    var length = readLength(info);
+                    var bytes = new byte[length];
+                    System.arraycopy(data, position, bytes, 0, length);
+                    position += length;
+                    return bytes;
+                }
+                case MAJOR_TEXT: {
+                    var length = readLength(info);
+                    var text = new String(data, position, length, StandardCharsets.UTF_8);
+                    position += length;
+                    return text;
+                }
+                case MAJOR_ARRAY: {
+                    var size = readLength(info);
+                    var list = new ArrayList<Object>(size);
+                    for (var i = 0; i < size; i++)
+                        list.add(read());
+                    return list;
+                }
+                case MAJOR_MAP: {
+                    var size = readLength(info);
+                    var map = new LinkedHashMap<Object, Object>();
+                    for (var i = 0; i < size; i++)
+                        map.put(read(), read());
+                    return map;
+                }
+                case MAJOR_TAG:
+                    return readTagged(readArgument(info));
+                case MAJOR_SIMPLE:
+                    switch (initial) {
+                        case SIMPLE_FALSE:
+                            return false;
+                        case SIMPLE_TRUE:
+                            return true;
+                        case SIMPLE_NULL:
+                        case SIMPLE_UNDEFINED:
+                            return null;
+                        case FLOAT_32:
+                            return (double) Float.intBitsToFloat((int) readUnsigned(4));
+                        case FLOAT_64:
+                            return Double.longBitsToDouble(readUnsigned(8));
+                        default:
+                            throw new IOException("Unsupported binary value type " + initial);
+                    }
+                default:
+                    throw new IOException("Unsupported binary value type " + initial);
+            }
+        }
+
+        private Object readTagged(long tag) throws IOException {
+            if (tag == TAG_POSITIVE_BIGNUM || tag == TAG_NEGATIVE_BIGNUM) {
+                var content = read();
+                if (!(content instanceof byte[]))
+                    throw new IOException("Invalid bignum in binary value");
+                var number = new BigInteger(1, (byte[]) content);
+                return tag == TAG_POSITIVE_BIGNUM ? number : number.negate().subtract(BigInteger.ONE);
+            }
+
+            if (tag == TAG_DECIMAL_FRACTION) {
+                var content = read();
+                if (!(content instanceof List) || ((List<?>) content).size() != 2)
+                    throw new IOException("Invalid decimal fraction in binary value");
+                var exponent = ((List<?>) content).get(0);
+                var mantissa = ((List<?>) content).get(1);
+                if (!(exponent instanceof Integer || exponent instanceof Long)
+                        || !(mantissa instanceof Integer || mantissa instanceof Long || mantissa instanceof BigInteger))
+                    throw new IOException("Invalid decimal fraction in binary value");
+
+                var scale = -((Number) exponent).longValue();
+                if (scale < Integer.MIN_VALUE || scale > Integer.MAX_VALUE)
+                    throw new IOException("Invalid decimal fraction in binary value");
+                var unscaled = mantissa instanceof BigInteger
+                        ? (BigInteger) mantissa : BigInteger.valueOf(((Number) mantissa).longValue());
+                return new BigDecimal(unscaled, (int) scale);
+            }
+
+            throw new IOException("Unsupported binary value tag " + tag);
+        }
+
+        private static Object toInteger(long number) {
+            if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE)
+                return (int) number;
+            return number;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.pipservices3.memcached.codec;
+
+/**
+ * Cached value with a soft expiration time saved inside the value.
+ * <p>
+ * After the soft expiration the value is considered stale but is still kept
+ * in memcached until its hard expiration, so readers can use it while
+ * a fresh value is recomputed in the background.
+ *
+ * @see MemcachedTranscoder
+ */
+public final class CachedValue {
+    private final Object _value;
+    private final long _softExpiration;
+
+    /**
+     * Creates a new instance of the cached value.
+     *
+     * @param value          a cached value.
+     * @param softExpiration a time in milliseconds since epoch when the value becomes stale.
+     */
+    public CachedValue(Object value, long softExpiration) {
+        _value = value;
+        _softExpiration = softExpiration;
+    }
+
+    /**
+     * Gets the cached value.
+     *
+     * @return the cached value.
+     */
+    public Object getValue() {
+        return _value;
+    }
+
+    /**
+     * Gets the time when the value becomes stale.
+     *
+     * @return the soft expiration time in milliseconds since epoch.
+     */
+    public long getSoftExpiration() {
+        return _softExpiration;
+    }
+
+    /**
+     * Checks if the value passed its soft expiration.
+     *
+     * @return <code>true</code> if the value is stale and <code>false</code> otherwise.
+     */
+    public boolean isStale() {
+        return System.currentTimeMillis() >= _softExpiration;
+    }
+}
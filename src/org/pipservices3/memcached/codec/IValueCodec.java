@@ -0,0 +1,41 @@
+package org.pipservices3.memcached.codec;
+
+import java.io.IOException;
+
+/**
+ * Interface for codecs that convert cached values to and from bytes.
+ * <p>
+ * Each codec has its own format flag, which is saved in memcached item flags
+ * together with the encoded value. It lets {@link MemcachedTranscoder} pick
+ * the right codec on read and return values of their original type.
+ *
+ * @see MemcachedTranscoder
+ */
+public interface IValueCodec {
+    /**
+     * Gets the format flag that marks values encoded by this codec.
+     * The flag must be a value in the <code>0x0100-0xff00</code> range
+     * (bits 8-15 of memcached item flags) unique among codecs.
+     *
+     * @return the format flag.
+     */
+    int getFlag();
+
+    /**
+     * Encodes a value into bytes.
+     *
+     * @param value a value to encode.
+     * @return the encoded bytes.
+     * @throws IOException when the value cannot be encoded.
+     */
+    byte[] encode(Object value) throws IOException;
+
+    /**
+     * Decodes a value from bytes.
+     *
+     * @param data the encoded bytes.
+     * @return the decoded value.
+     * @throws IOException when the bytes cannot be decoded.
+     */
+    Object decode(byte[] data) throws IOException;
+}
@@ -0,0 +1,29 @@
+package org.pipservices3.memcached.codec;
+
+import org.pipservices3.commons.convert.JsonConverter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec that saves values as JSON text.
+ * Maps, lists, numbers and booleans are restored as generic JSON types.
+ */
+public class JsonValueCodec implements IValueCodec {
+    public static final int FLAG = 0x0100;
+
+    @Override
+    public int getFlag() {
+        return FLAG;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return JsonConverter.toJson(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Object decode(byte[] data) throws IOException {
+        return JsonConverter.fromJson(Object.class, new String(data, StandardCharsets.UTF_8));
+    }
+}
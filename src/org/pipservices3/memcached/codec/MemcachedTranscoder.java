@@ -0,0 +1,363 @@
+package org.pipservices3.memcached.codec;
+
+import net.rubyeye.xmemcached.transcoders.CachedData;
+import net.rubyeye.xmemcached.transcoders.CompressionMode;
+import net.rubyeye.xmemcached.transcoders.Transcoder;
+import org.pipservices3.components.count.ICounters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Transcoder that converts cached values using pluggable {@link IValueCodec} codecs.
+ * <p>
+ * Strings are always saved as plain UTF-8 text, byte arrays are saved as they are,
+ * and all other values are encoded by the configured codec. The format is saved
+ * in memcached item flags, so values are decoded by the codec that wrote them
+ * and returned with their original type.
+ * <p>
+ * Built-in codecs are selected by name:
+ * <ul>
+ * <li>json - {@link JsonValueCodec} (default)
+ * <li>binary - {@link BinaryValueCodec}
+ * <li>raw - {@link RawValueCodec}
+ * </ul>
+ * Custom codecs can be set by the fully qualified name of a class
+ * that implements {@link IValueCodec} and has a public default constructor.
+ * <p>
+ * Encoded values larger than the compression threshold can be compressed
+ * with Deflate ({@link CompressionMode#ZIP}) or GZip ({@link CompressionMode#GZIP}).
+ * Compressed values are marked in item flags and decompressed transparently on read.
+ * <p>
+ * {@link CachedValue} wrappers are saved as the soft expiration time
+ * followed by the encoded inner value and decoded back into wrappers.
+ * <p>
+ * When counters are set, the transcoder records "memcached.encode.time" and
+ * "memcached.decode.time" timings and "memcached.value_size" statistics of encoded values.
+ *
+ * @see IValueCodec
+ */
+public class MemcachedTranscoder implements Transcoder<Object> {
+    /**
+     * Mask of item flags that hold the value format.
+     */
+    public static final int FORMAT_MASK = 0xff00;
+    /**
+     * Format flag of plain UTF-8 strings.
+     */
+    public static final int STRING_FLAG = 0;
+    /**
+     * Flag of values compressed with Deflate.
+     */
+    public static final int DEFLATE_FLAG = 0x0002;
+    /**
+     * Flag of values compressed with GZip.
+     */
+    public static final int GZIP_FLAG = 0x0004;
+    /**
+     * Flag of empty strings. It tells them apart from empty items without flags,
+     * such as placeholders created by the memcached meta protocol.
+     */
+    public static final int EMPTY_STRING_FLAG = 0x0008;
+    /**
+     * Flag of values wrapped into {@link CachedValue} with soft expiration.
+     */
+    public static final int SOFT_EXPIRATION_FLAG = 0x0010;
+
+    private static final int SOFT_EXPIRATION_HEADER_SIZE = 12;
+
+    private final Map<Integer, IValueCodec> _codecs = new ConcurrentHashMap<>();
+    private final IValueCodec _codec;
+    private final IValueCodec _rawCodec = new RawValueCodec();
+
+    private boolean _primitiveAsString = true;
+    private boolean _packZeros = false;
+    private CompressionMode _compressionMode = null;
+    private int _compressionThreshold = 16384;
+    private boolean _emptyItemsAsMissing = false;
+    private ICounters _counters = null;
+
+    /**
+     * Creates a new instance of the transcoder with JSON codec.
+     */
+    public MemcachedTranscoder() {
+        this(new JsonValueCodec());
+    }
+
+    /**
+     * Creates a new instance of the transcoder.
+     *
+     * @param codec a codec to encode values that are not strings or byte arrays.
+     */
+    public MemcachedTranscoder(IValueCodec codec) {
+        _codec = codec;
+
+        registerCodec(new JsonValueCodec());
+        registerCodec(new BinaryValueCodec());
+        registerCodec(_rawCodec);
+        registerCodec(codec);
+    }
+
+    /**
+     * Creates a codec by its name.
+     *
+     * @param name a name of a built-in codec or a fully qualified name of a codec class.
+     * @return a created codec or <code>null</code> if the codec is not found.
+     */
+    public static IValueCodec createCodec(String name) {
+        if (name == null || name.isEmpty() || "json".equalsIgnoreCase(name))
+            return new JsonValueCodec();
+        if ("binary".equalsIgnoreCase(name))
+            return new BinaryValueCodec();
+        if ("raw".equalsIgnoreCase(name))
+            return new RawValueCodec();
+
+        try {
+            var type = Class.forName(name);
+            if (IValueCodec.class.isAssignableFrom(type))
+                return (IValueCodec) type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            // Unknown codec
+        }
+        return null;
+    }
+
+    /**
+     * Parses a compression mode by its name.
+     *
+     * @param name a compression name: deflate (or zip) or gzip.
+     * @return a compression mode or <code>null</code> if the name is not supported.
+     */
+    public static CompressionMode parseCompressionMode(String name) {
+        if ("deflate".equalsIgnoreCase(name) || "zip".equalsIgnoreCase(name))
+            return CompressionMode.ZIP;
+        if ("gzip".equalsIgnoreCase(name))
+            return CompressionMode.GZIP;
+        return null;
+    }
+
+    /**
+     * Registers an additional codec that is used to decode values with its format flag.
+     *
+     * @param codec a codec to register.
+     */
+    public void registerCodec(IValueCodec codec) {
+        _codecs.put(codec.getFlag() & FORMAT_MASK, codec);
+    }
+
+    /**
+     * Gets the codec used to encode values.
+     *
+     * @return the value codec.
+     */
+    public IValueCodec getCodec() {
+        return _codec;
+    }
+
+    /**
+     * Sets counters to record serialization time and value sizes.
+     *
+     * @param counters counters to record measurements or <code>null</code> to disable them.
+     */
+    public void setCounters(ICounters counters) {
+        _counters = counters;
+    }
+
+    /**
+     * Sets if empty items without flags are decoded as <code>null</code>.
+     * The meta protocol creates such items as placeholders of values being recomputed,
+     * while empty strings are saved with {@link #EMPTY_STRING_FLAG}.
+     *
+     * @param emptyItemsAsMissing true to decode empty items without flags as <code>null</code>.
+     */
+    public void setEmptyItemsAsMissing(boolean emptyItemsAsMissing) {
+        _emptyItemsAsMissing = emptyItemsAsMissing;
+    }
+
+    @Override
+    public CachedData encode(Object value) {
+        var counters = _counters;
+        if (counters == null)
+            return encodeValue(value);
+
+        var timing = counters.beginTiming("memcached.encode.time");
+        try {
+            var result = encodeValue(value);
+            counters.stats("memcached.value_size", result.getData().length);
+            return result;
+        } finally {
+            timing.endTiming();
+        }
+    }
+
+    @Override
+    public Object decode(CachedData data) {
+        var counters = _counters;
+        if (counters == null)
+            return decodeValue(data);
+
+        var timing = counters.beginTiming("memcached.decode.time");
+        try {
+            return decodeValue(data);
+        } finally {
+            timing.endTiming();
+        }
+    }
+
+    private CachedData encodeValue(Object value) {
+        if (value instanceof CachedValue) {
+            var cachedValue = (CachedValue) value;
+            var inner = encodeValue(cachedValue.getValue());
+            var innerBytes = inner.getData();
+
+            var buffer = ByteBuffer.allocate(SOFT_EXPIRATION_HEADER_SIZE + innerBytes.length);
+            buffer.putLong(cachedValue.getSoftExpiration());
+            buffer.putInt(inner.getFlag());
+            buffer.put(innerBytes);
+            return new CachedData(SOFT_EXPIRATION_FLAG, buffer.array());
+        }
+
+        try {
+            int flags;
+            byte[] bytes;
+
+            if (value instanceof String || value == null) {
+                bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+                flags = bytes.length > 0 ? STRING_FLAG : STRING_FLAG | EMPTY_STRING_FLAG;
+            } else if (value instanceof ZonedDateTime) {
+                flags = STRING_FLAG;
+                bytes = ((ZonedDateTime) value).withZoneSameInstant(ZoneId.of("UTC"))
+                        .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME).getBytes(StandardCharsets.UTF_8);
+            } else {
+                var codec = value instanceof byte[] ? _rawCodec : _codec;
+                flags = codec.getFlag() & FORMAT_MASK;
+                bytes = codec.encode(value);
+            }
+
+            var mode = _compressionMode;
+            if (mode != null && bytes.length >= _compressionThreshold) {
+                var compressed = compress(bytes, mode);
+                if (compressed.length < bytes.length) {
+                    flags |= mode == CompressionMode.GZIP ? GZIP_FLAG : DEFLATE_FLAG;
+                    bytes = compressed;
+                }
+            }
+
+            return new CachedData(flags, bytes);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Failed to encode cache value", ex);
+        }
+    }
+
+    private Object decodeValue(CachedData data) {
+        var flags = data.getFlag();
+        if (flags == 0 && _emptyItemsAsMissing && data.getData().length == 0)
+            return null;
+
+        if ((flags & SOFT_EXPIRATION_FLAG) != 0) {
+            var bytes = data.getData();
+            if (bytes.length < SOFT_EXPIRATION_HEADER_SIZE)
+                throw new IllegalArgumentException("Failed to decode cache value: soft expiration header is missing");
+
+            var buffer = ByteBuffer.wrap(bytes);
+            var softExpiration = buffer.getLong();
+            var innerFlags = buffer.getInt();
+            var innerBytes = new byte[buffer.remaining()];
+            buffer.get(innerBytes);
+
+            return new CachedValue(decodeValue(new CachedData(innerFlags, innerBytes)), softExpiration);
+        }
+
+        var format = flags & FORMAT_MASK;
+
+        try {
+            var bytes = data.getData();
+            if ((flags & GZIP_FLAG) != 0)
+                bytes = decompress(bytes, CompressionMode.GZIP);
+            else if ((flags & DEFLATE_FLAG) != 0)
+                bytes = decompress(bytes, CompressionMode.ZIP);
+
+            if (format == STRING_FLAG)
+                return new String(bytes, StandardCharsets.UTF_8);
+
+            var codec = _codecs.get(format);
+            if (codec == null)
+                return bytes;
+
+            return codec.decode(bytes);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Failed to decode cache value", ex);
+        }
+    }
+
+    private static byte[] compress(byte[] data, CompressionMode mode) throws IOException {
+        var output = new ByteArrayOutputStream(data.length / 2);
+        try (OutputStream stream = mode == CompressionMode.GZIP
+                ? new GZIPOutputStream(output) : new DeflaterOutputStream(output)) {
+            stream.write(data);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] data, CompressionMode mode) throws IOException {
+        var input = new ByteArrayInputStream(data);
+        try (InputStream stream = mode == CompressionMode.GZIP
+                ? new GZIPInputStream(input) : new InflaterInputStream(input)) {
+            return stream.readAllBytes();
+        }
+    }
+
+    @Override
+    public void setPrimitiveAsString(boolean primitiveAsString) {
+        _primitiveAsString = primitiveAsString;
+    }
+
+    @Override
+    public void setPackZeros(boolean packZeros) {
+        _packZeros = packZeros;
+    }
+
+    /**
+     * Sets the minimum size of encoded values that are compressed.
+     *
+     * @param threshold a size threshold in bytes.
+     */
+    @Override
+    public void setCompressionThreshold(int threshold) {
+        _compressionThreshold = threshold;
+    }
+
+    @Override
+    public boolean isPrimitiveAsString() {
+        return _primitiveAsString;
+    }
+
+    @Override
+    public boolean isPackZeros() {
+        return _packZeros;
+    }
+
+    /**
+     * Sets the compression algorithm for large values.
+     *
+     * @param compressionMode a compression mode or <code>null</code> to disable compression.
+     */
+    @Override
+    public void setCompressionMode(CompressionMode compressionMode) {
+        _compressionMode = compressionMode;
+    }
+}
@@ -0,0 +1,29 @@
+package org.pipservices3.memcached.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec that saves byte arrays as they are.
+ * Values of other types are saved as their UTF-8 string representation.
+ * Decoded values are always returned as byte arrays.
+ */
+public class RawValueCodec implements IValueCodec {
+    public static final int FLAG = 0x0300;
+
+    @Override
+    public int getFlag() {
+        return FLAG;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        if (value instanceof byte[])
+            return (byte[]) value;
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Object decode(byte[] data) {
+        return data;
+    }
+}
@@ -0,0 +1,157 @@
+package org.pipservices3.memcached.connect;
+
+import net.rubyeye.xmemcached.CommandFactory;
+import net.rubyeye.xmemcached.MemcachedClient;
+import net.rubyeye.xmemcached.MemcachedClientBuilder;
+import net.rubyeye.xmemcached.MemcachedSessionLocator;
+import net.rubyeye.xmemcached.command.BinaryCommandFactory;
+import net.rubyeye.xmemcached.command.TextCommandFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Registry of memcached clients shared by components connected to the same servers.
+ * <p>
+ * Clients are keyed by their servers and client options, so components that point
+ * to the same cluster share one pool of connections and I/O threads.
+ * Each acquire increments the reference count of a client, and the client
+ * is shut down when the last component releases it.
+ *
+ * @see org.pipservices3.memcached.cache.MemcachedCache
+ * @see org.pipservices3.memcached.lock.MemcachedLock
+ */
+public class MemcachedClientRegistry {
+    private static class Entry {
+        private final String key;
+        private final MemcachedClient client;
+        private final MemcachedSessionLocator locator;
+        private int references = 0;
+
+        private Entry(String key, MemcachedClient client, MemcachedSessionLocator locator) {
+            this.key = key;
+            this.client = client;
+            this.locator = locator;
+        }
+    }
+
+    private static final Map<String, Entry> _entries = new HashMap<>();
+    private static final Map<MemcachedClient, Entry> _clients = new IdentityHashMap<>();
+
+    private MemcachedClientRegistry() {
+    }
+
+    /**
+     * Creates a factory of commands for a memcached protocol.
+     * The meta protocol sends regular commands as text, so it gets the text factory.
+     *
+     * @param protocol a protocol name: text, binary or meta.
+     * @return a command factory or <code>null</code> if the protocol is not supported.
+     */
+    public static CommandFactory createCommandFactory(String protocol) {
+        if ("text".equalsIgnoreCase(protocol) || "meta".equalsIgnoreCase(protocol))
+            return new TextCommandFactory();
+        if ("binary".equalsIgnoreCase(protocol))
+            return new BinaryCommandFactory();
+        return null;
+    }
+
+    /**
+     * Creates a key of a shared client.
+     *
+     * @param servers      weights of servers by their addresses in host:port format, in the order they are used.
+     * @param protocol     a protocol of the client: text, binary or meta that shares text clients.
+     * @param distribution a key distribution between servers.
+     * @param poolSize     a number of connections to each server.
+     * @param timeout      a default operation timeout in milliseconds.
+     * @return a key that is equal for clients with the same servers and options.
+     */
+    public static String createKey(Map<String, Integer> servers, String protocol, String distribution,
+                                   int poolSize, long timeout) {
+        var key = new StringBuilder();
+        for (var server : servers.entrySet()) {
+            if (key.length() > 0)
+                key.append(',');
+            key.append(server.getKey()).append('*').append(server.getValue());
+        }
+        var wireProtocol = "meta".equalsIgnoreCase(protocol) ? "text" : protocol.toLowerCase();
+        key.append(';').append(wireProtocol)
+                .append(';').append(distribution.toLowerCase())
+                .append(';').append(poolSize)
+                .append(';').append(timeout);
+        return key.toString();
+    }
+
+    /**
+     * Gets a shared client by its key or builds a new one, and increments its reference count.
+     *
+     * @param key     a key of the client created by {@link #createKey(Map, String, String, int, long)}.
+     * @param builder a builder of a new client used when there is no client with the key.
+     * @return a shared client that shall be released by {@link #release(MemcachedClient)}.
+     * @throws IOException when the client cannot be built.
+     */
+    public static synchronized MemcachedClient acquire(String key, MemcachedClientBuilder builder) throws IOException {
+        var entry = _entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key, builder.build(), builder.getSessionLocator());
+            _entries.put(key, entry);
+            _clients.put(entry.client, entry);
+        }
+
+        entry.references++;
+        return entry.client;
+    }
+
+    /**
+     * Decrements the reference count of a shared client and shuts it down when it is no longer used.
+     *
+     * @param client a client acquired from the registry.
+     * @throws IOException when the client cannot be shut down.
+     */
+    public static synchronized void release(MemcachedClient client) throws IOException {
+        var entry = _clients.get(client);
+        if (entry == null)
+            return;
+
+        entry.references--;
+        if (entry.references > 0)
+            return;
+
+        _entries.remove(entry.key);
+        _clients.remove(client);
+        client.shutdown();
+    }
+
+    /**
+     * Gets the session locator used by a shared client to distribute keys.
+     *
+     * @param client a client acquired from the registry.
+     * @return the session locator or <code>null</code> if the client is not in the registry.
+     */
+    public static synchronized MemcachedSessionLocator getSessionLocator(MemcachedClient client) {
+        var entry = _clients.get(client);
+        return entry != null ? entry.locator : null;
+    }
+
+    /**
+     * Gets the number of components that use a shared client.
+     *
+     * @param client a client acquired from the registry.
+     * @return the reference count or 0 if the client is not in the registry.
+     */
+    public static synchronized int getReferenceCount(MemcachedClient client) {
+        var entry = _clients.get(client);
+        return entry != null ? entry.references : 0;
+    }
+
+    /**
+     * Gets the number of open shared clients.
+     *
+     * @return the number of clients.
+     */
+    public static synchronized int getClientCount() {
+        return _entries.size();
+    }
+}
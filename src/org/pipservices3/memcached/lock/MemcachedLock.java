@@ -1,7 +1,9 @@
 package org.pipservices3.memcached.lock;
 
-import net.rubyeye.xmemcached.XMemcachedClient;
+import net.rubyeye.xmemcached.MemcachedClient;
+import net.rubyeye.xmemcached.XMemcachedClientBuilder;
 import net.rubyeye.xmemcached.exception.MemcachedException;
+import net.rubyeye.xmemcached.impl.ArrayMemcachedSessionLocator;
 import org.pipservices3.commons.config.ConfigParams;
 import org.pipservices3.commons.config.IConfigurable;
 import org.pipservices3.commons.errors.ApplicationException;
@@ -12,26 +14,61 @@ import org.pipservices3.commons.refer.IReferences;
 import org.pipservices3.commons.run.IOpenable;
 import org.pipservices3.components.connect.ConnectionResolver;
 import org.pipservices3.components.lock.Lock;
+import org.pipservices3.memcached.connect.MemcachedClientRegistry;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.concurrent.TimeoutException;
 
+/**
+ * Distributed lock that is implemented based on Memcached caching service.
+ * <p>
+ * ### Configuration parameters ###
+ * <ul>
+ * <li>connection(s):
+ *   <ul>
+ *   <li>discovery_key:         (optional) a key to retrieve the connection from {@link org.pipservices3.components.connect.IDiscovery}
+ *   <li>host:                  host name or IP address
+ *   <li>port:                  port number
+ *   <li>uri:                   resource URI or connection string with all parameters in it
+ *   <li>weight:                (optional) relative share of keys placed on the server (default: 1)
+ *   </ul>
+ * <li>options:
+ *   <ul>
+ *   <li>retry_timeout:         timeout in milliseconds to retry lock acquisition (default: 100)
+ *   <li>protocol:              memcached protocol: text or binary, meta is not supported (default: text)
+ *   <li>pool_size:             number of connections opened to each server (default: 5)
+ *   <li>timeout:               time in milliseconds for a single operation (default: 5000)
+ *   <li>shared_client:         true to share the client with caches and locks connected to the same servers with the same options (default: true)
+ *   </ul>
+ * </ul>
+ * <p>
+ * ### References ###
+ * <ul>
+ * <li>*:discovery:*:*:1.0        (optional) {@link org.pipservices3.components.connect.IDiscovery} services to resolve connection
+ * </ul>
+ */
 public class MemcachedLock extends Lock implements IConfigurable, IReferenceable, IOpenable {
     private final ConnectionResolver _connectionResolver = new ConnectionResolver();
 
 //    private int _maxKeySize = 250;
 //    private int _maxExpiration = 2592000;
 //    private int _maxValue = 1048576;
-//    private int _poolSize = 5;
+    private String _protocol = "text";
+    private int _poolSize = 5;
 //    private int _reconnect = 10000;
-//    private int _timeout = 5000;
+    private long _timeout = 5000;
+    private boolean _sharedClient = true;
 //    private int _retries = 5;
 //    private int _failures = 5;
 //    private int _retry = 30000;
 //    private boolean _remove = false;
 //    private int _idle = 5000;
 
-    private XMemcachedClient _client = null;
+    private MemcachedClient _client = null;
+    private boolean _clientShared = false;
 
     @Override
     public void configure(ConfigParams config) {
@@ -39,13 +76,16 @@ public class MemcachedLock extends Lock implements IConfigurable, IReferenceable
 
         this._connectionResolver.configure(config);
 
+        this._protocol = config.getAsStringWithDefault("options.protocol", this._protocol);
+        this._poolSize = Math.max(1, config.getAsIntegerWithDefault("options.pool_size", this._poolSize));
+        this._timeout = config.getAsLongWithDefault("options.timeout", this._timeout);
+        this._sharedClient = config.getAsBooleanWithDefault("options.shared_client", this._sharedClient);
+
 //        todo this options is not supported
 //        this._maxKeySize = config.getAsIntegerWithDefault("options.max_key_size", this._maxKeySize);
 //        this._maxExpiration = config.getAsLongWithDefault("options.max_expiration", this._maxExpiration);
 //        this._maxValue = config.getAsLongWithDefault("options.max_value", this._maxValue);
-//        this._poolSize = config.getAsIntegerWithDefault("options.pool_size", this._poolSize);
 //        this._reconnect = config.getAsIntegerWithDefault("options.reconnect", this._reconnect);
-//        this._timeout = config.getAsIntegerWithDefault("options.timeout", this._timeout);
 //        this._retries = config.getAsIntegerWithDefault("options.retries", this._retries);
 //        this._failures = config.getAsIntegerWithDefault("options.failures", this._failures);
 //        this._retry = config.getAsIntegerWithDefault("options.retry", this._retry);
@@ -75,6 +115,7 @@ public class MemcachedLock extends Lock implements IConfigurable, IReferenceable
 
     /**
      * Opens the component.
+     * Locks and caches connected to the same servers with the same options share a single client.
      *
      * @param correlationId (optional) transaction id to trace execution through call chain.
      */
@@ -89,14 +130,49 @@ public class MemcachedLock extends Lock implements IConfigurable, IReferenceable
             );
         }
 
-        try {
-            _client = new XMemcachedClient();
+        // Locks use only regular commands, so the meta protocol of caches is not accepted
+        var commandFactory = "meta".equalsIgnoreCase(this._protocol)
+                ? null : MemcachedClientRegistry.createCommandFactory(this._protocol);
+        if (commandFactory == null) {
+            throw new ConfigException(
+                    correlationId,
+                    "BAD_PROTOCOL",
+                    "Protocol " + this._protocol + " is not supported"
+            );
+        }
 
-            for (var connection : connections) {
-                var host = connection.getHost();
-                var port = connection.getAsIntegerWithDefault("port", 11211);
+        var servers = new LinkedHashMap<String, Integer>();
+        for (var connection : connections) {
+            var host = connection.getHost();
+            var port = connection.getAsIntegerWithDefault("port", 11211);
+            var weight = Math.max(1, connection.getAsIntegerWithDefault("weight", 1));
 
-                _client.addServer(host, port);
+            servers.put(host + ":" + port, weight);
+        }
+
+        var addresses = new ArrayList<InetSocketAddress>();
+        var weights = new int[servers.size()];
+        for (var server : servers.entrySet()) {
+            var index = server.getKey().lastIndexOf(':');
+            weights[addresses.size()] = server.getValue();
+            addresses.add(new InetSocketAddress(server.getKey().substring(0, index),
+                    Integer.parseInt(server.getKey().substring(index + 1))));
+        }
+
+        try {
+            var builder = new XMemcachedClientBuilder(addresses, weights);
+            builder.setCommandFactory(commandFactory);
+            builder.setConnectionPoolSize(this._poolSize);
+            builder.setOpTimeout(this._timeout);
+            builder.setSessionLocator(new ArrayMemcachedSessionLocator());
+
+            _clientShared = this._sharedClient;
+            if (_clientShared) {
+                var key = MemcachedClientRegistry.createKey(servers, this._protocol, "modulo",
+                        this._poolSize, this._timeout);
+                _client = MemcachedClientRegistry.acquire(key, builder);
+            } else {
+                _client = builder.build();
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -111,7 +187,10 @@ public class MemcachedLock extends Lock implements IConfigurable, IReferenceable
     @Override
     public void close(String correlationId) {
         try {
-            _client.shutdown();
+            if (_clientShared)
+                MemcachedClientRegistry.release(_client);
+            else
+                _client.shutdown();
             _client = null;
         } catch (IOException e) {
             throw new RuntimeException(e);
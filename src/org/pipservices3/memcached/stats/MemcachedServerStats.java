@@ -0,0 +1,263 @@
+package org.pipservices3.memcached.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Snapshot of memcached server statistics collected from "stats", "stats slabs" and "stats items" commands.
+ *
+ * @see MemcachedStatsCollector
+ * @see MemcachedSlabStats
+ */
+public class MemcachedServerStats {
+    private final String _server;
+    private final long _time;
+    private final Map<String, String> _stats;
+    private final List<MemcachedSlabStats> _slabs;
+
+    /**
+     * Creates a new instance of the server snapshot.
+     *
+     * @param server a server address as "host:port".
+     * @param time   a time in milliseconds when the statistics were collected.
+     * @param stats  general statistics returned by "stats".
+     * @param slabs  statistics of slab classes.
+     */
+    public MemcachedServerStats(String server, long time, Map<String, String> stats, List<MemcachedSlabStats> slabs) {
+        _server = server;
+        _time = time;
+        _stats = stats != null ? Collections.unmodifiableMap(stats) : Map.of();
+        _slabs = slabs != null ? Collections.unmodifiableList(slabs) : List.of();
+    }
+
+    /**
+     * Parses a server snapshot from memcached statistics.
+     *
+     * @param server a server address as "host:port".
+     * @param stats  statistics returned by "stats".
+     * @param slabs  statistics returned by "stats slabs" or <code>null</code>.
+     * @param items  statistics returned by "stats items" or <code>null</code>.
+     * @return a parsed server snapshot.
+     */
+    public static MemcachedServerStats parse(String server, Map<String, String> stats,
+                                             Map<String, String> slabs, Map<String, String> items) {
+        var slabStats = new TreeMap<Integer, MemcachedSlabStats>();
+        MemcachedSlabStats.parse(slabs, items, slabStats);
+        return new MemcachedServerStats(server, System.currentTimeMillis(), stats, new ArrayList<>(slabStats.values()));
+    }
+
+    private long getAsLong(String name) {
+        var value = _stats.get(name);
+        if (value == null)
+            return 0;
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the server address.
+     *
+     * @return the server address as "host:port".
+     */
+    public String getServer() {
+        return _server;
+    }
+
+    /**
+     * Gets the time when the statistics were collected.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getTime() {
+        return _time;
+    }
+
+    /**
+     * Gets all general statistics as they were returned by the server.
+     *
+     * @return statistics by their names.
+     */
+    public Map<String, String> getStats() {
+        return _stats;
+    }
+
+    /**
+     * Gets statistics of slab classes ordered by their ids.
+     *
+     * @return a list of slab snapshots.
+     */
+    public List<MemcachedSlabStats> getSlabs() {
+        return _slabs;
+    }
+
+    /**
+     * Gets the server version.
+     *
+     * @return the version or <code>null</code> if it is not known.
+     */
+    public String getVersion() {
+        return _stats.get("version");
+    }
+
+    /**
+     * Gets the time since the server started.
+     *
+     * @return the uptime in seconds.
+     */
+    public long getUptime() {
+        return getAsLong("uptime");
+    }
+
+    /**
+     * Gets the number of open connections.
+     *
+     * @return the number of connections.
+     */
+    public long getCurrConnections() {
+        return getAsLong("curr_connections");
+    }
+
+    /**
+     * Gets the number of connections opened since the server started.
+     *
+     * @return the number of connections.
+     */
+    public long getTotalConnections() {
+        return getAsLong("total_connections");
+    }
+
+    /**
+     * Gets the number of items stored in the server.
+     *
+     * @return the number of items.
+     */
+    public long getCurrItems() {
+        return getAsLong("curr_items");
+    }
+
+    /**
+     * Gets the number of items stored since the server started.
+     *
+     * @return the number of items.
+     */
+    public long getTotalItems() {
+        return getAsLong("total_items");
+    }
+
+    /**
+     * Gets the number of bytes used to store items.
+     *
+     * @return the used memory in bytes.
+     */
+    public long getBytes() {
+        return getAsLong("bytes");
+    }
+
+    /**
+     * Gets the number of bytes the server can use to store items.
+     *
+     * @return the memory limit in bytes.
+     */
+    public long getLimitMaxBytes() {
+        return getAsLong("limit_maxbytes");
+    }
+
+    /**
+     * Gets the number of read requests.
+     *
+     * @return the number of get commands.
+     */
+    public long getCmdGet() {
+        return getAsLong("cmd_get");
+    }
+
+    /**
+     * Gets the number of write requests.
+     *
+     * @return the number of set commands.
+     */
+    public long getCmdSet() {
+        return getAsLong("cmd_set");
+    }
+
+    /**
+     * Gets the number of keys that were found.
+     *
+     * @return the number of hits.
+     */
+    public long getGetHits() {
+        return getAsLong("get_hits");
+    }
+
+    /**
+     * Gets the number of keys that were not found.
+     *
+     * @return the number of misses.
+     */
+    public long getGetMisses() {
+        return getAsLong("get_misses");
+    }
+
+    /**
+     * Gets the number of valid items removed to free memory for new items.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions() {
+        return getAsLong("evictions");
+    }
+
+    /**
+     * Gets the number of times an expired item memory was reused for a new item.
+     *
+     * @return the number of reclaimed items.
+     */
+    public long getReclaimed() {
+        return getAsLong("reclaimed");
+    }
+
+    /**
+     * Gets the number of bytes read from the network.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesRead() {
+        return getAsLong("bytes_read");
+    }
+
+    /**
+     * Gets the number of bytes sent to the network.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesWritten() {
+        return getAsLong("bytes_written");
+    }
+
+    /**
+     * Gets the share of read requests that found their keys since the server started.
+     *
+     * @return the hit ratio from 0 to 1.
+     */
+    public double getHitRatio() {
+        var total = getGetHits() + getGetMisses();
+        return total > 0 ? (double) getGetHits() / total : 0;
+    }
+
+    /**
+     * Gets the share of the memory limit used to store items.
+     *
+     * @return the memory usage from 0 to 1.
+     */
+    public double getMemoryUsage() {
+        var limit = getLimitMaxBytes();
+        return limit > 0 ? (double) getBytes() / limit : 0;
+    }
+}
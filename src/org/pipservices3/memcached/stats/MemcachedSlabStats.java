@@ -0,0 +1,260 @@
+package org.pipservices3.memcached.stats;
+
+import java.util.Map;
+
+/**
+ * Snapshot of a memcached slab class collected from "stats slabs" and "stats items" commands.
+ * <p>
+ * Slab classes that keep evicting items while other classes have free chunks
+ * point to slab calcification: memory is assigned to classes that no longer need it.
+ *
+ * @see MemcachedServerStats
+ */
+public class MemcachedSlabStats {
+    private final int _id;
+    private long _chunkSize;
+    private long _chunksPerPage;
+    private long _totalPages;
+    private long _totalChunks;
+    private long _usedChunks;
+    private long _freeChunks;
+    private long _memRequested;
+    private long _items;
+    private long _age;
+    private long _evicted;
+    private long _evictedUnfetched;
+    private long _expiredUnfetched;
+    private long _outOfMemory;
+
+    /**
+     * Creates a new instance of the slab snapshot.
+     *
+     * @param id a slab class id.
+     */
+    public MemcachedSlabStats(int id) {
+        _id = id;
+    }
+
+    /**
+     * Sets a slab statistic by its name without the slab class prefix.
+     *
+     * @param name  a name of the statistic as returned by "stats slabs" or "stats items".
+     * @param value a value of the statistic.
+     */
+    void set(String name, long value) {
+        switch (name) {
+            case "chunk_size":
+                _chunkSize = value;
+                break;
+            case "chunks_per_page":
+                _chunksPerPage = value;
+                break;
+            case "total_pages":
+                _totalPages = value;
+                break;
+            case "total_chunks":
+                _totalChunks = value;
+                break;
+            case "used_chunks":
+                _usedChunks = value;
+                break;
+            case "free_chunks":
+                _freeChunks = value;
+                break;
+            case "mem_requested":
+                _memRequested = value;
+                break;
+            case "number":
+                _items = value;
+                break;
+            case "age":
+                _age = value;
+                break;
+            case "evicted":
+                _evicted = value;
+                break;
+            case "evicted_unfetched":
+                _evictedUnfetched = value;
+                break;
+            case "expired_unfetched":
+                _expiredUnfetched = value;
+                break;
+            case "outofmemory":
+                _outOfMemory = value;
+                break;
+            default:
+                // Other statistics are not collected
+                break;
+        }
+    }
+
+    /**
+     * Parses slab snapshots from "stats slabs" and "stats items" results.
+     * Slab statistics are named "&lt;id&gt;:&lt;name&gt;" and item statistics "items:&lt;id&gt;:&lt;name&gt;".
+     *
+     * @param slabs statistics returned by "stats slabs" or <code>null</code>.
+     * @param items statistics returned by "stats items" or <code>null</code>.
+     * @param result a map to put parsed snapshots by their slab class ids.
+     */
+    static void parse(Map<String, String> slabs, Map<String, String> items, Map<Integer, MemcachedSlabStats> result) {
+        if (slabs != null) {
+            for (var stat : slabs.entrySet())
+                parse(stat.getKey(), stat.getValue(), result);
+        }
+        if (items != null) {
+            for (var stat : items.entrySet()) {
+                if (stat.getKey().startsWith("items:"))
+                    parse(stat.getKey().substring(6), stat.getValue(), result);
+            }
+        }
+    }
+
+    private static void parse(String key, String value, Map<Integer, MemcachedSlabStats> result) {
+        var index = key.indexOf(':');
+        if (index <= 0)
+            return;
+
+        try {
+            var id = Integer.parseInt(key.substring(0, index));
+            var slab = result.computeIfAbsent(id, MemcachedSlabStats::new);
+            slab.set(key.substring(index + 1), Long.parseLong(value.trim()));
+        } catch (NumberFormatException ex) {
+            // Skip statistics that are not numeric
+        }
+    }
+
+    /**
+     * Gets the slab class id.
+     *
+     * @return the slab class id.
+     */
+    public int getId() {
+        return _id;
+    }
+
+    /**
+     * Gets the size of chunks in the slab class.
+     *
+     * @return the chunk size in bytes.
+     */
+    public long getChunkSize() {
+        return _chunkSize;
+    }
+
+    /**
+     * Gets the number of chunks in a single page.
+     *
+     * @return the number of chunks per page.
+     */
+    public long getChunksPerPage() {
+        return _chunksPerPage;
+    }
+
+    /**
+     * Gets the number of pages assigned to the slab class.
+     *
+     * @return the number of pages.
+     */
+    public long getTotalPages() {
+        return _totalPages;
+    }
+
+    /**
+     * Gets the number of chunks allocated for the slab class.
+     *
+     * @return the number of chunks.
+     */
+    public long getTotalChunks() {
+        return _totalChunks;
+    }
+
+    /**
+     * Gets the number of chunks that hold items.
+     *
+     * @return the number of used chunks.
+     */
+    public long getUsedChunks() {
+        return _usedChunks;
+    }
+
+    /**
+     * Gets the number of chunks that are not used yet or were freed.
+     *
+     * @return the number of free chunks.
+     */
+    public long getFreeChunks() {
+        return _freeChunks;
+    }
+
+    /**
+     * Gets the number of bytes requested by items stored in the slab class.
+     *
+     * @return the requested memory in bytes.
+     */
+    public long getMemRequested() {
+        return _memRequested;
+    }
+
+    /**
+     * Gets the number of items in the slab class.
+     *
+     * @return the number of items.
+     */
+    public long getItems() {
+        return _items;
+    }
+
+    /**
+     * Gets the age of the oldest item in the slab class.
+     *
+     * @return the age in seconds.
+     */
+    public long getAge() {
+        return _age;
+    }
+
+    /**
+     * Gets the number of items evicted from the slab class to free memory.
+     *
+     * @return the number of evicted items.
+     */
+    public long getEvicted() {
+        return _evicted;
+    }
+
+    /**
+     * Gets the number of items evicted without being fetched since they were stored.
+     *
+     * @return the number of evicted unfetched items.
+     */
+    public long getEvictedUnfetched() {
+        return _evictedUnfetched;
+    }
+
+    /**
+     * Gets the number of items expired without being fetched since they were stored.
+     *
+     * @return the number of expired unfetched items.
+     */
+    public long getExpiredUnfetched() {
+        return _expiredUnfetched;
+    }
+
+    /**
+     * Gets the number of times the slab class could not allocate memory for an item.
+     *
+     * @return the number of out of memory errors.
+     */
+    public long getOutOfMemory() {
+        return _outOfMemory;
+    }
+
+    /**
+     * Gets the share of allocated chunks that hold items.
+     *
+     * @return the fill ratio from 0 to 1.
+     */
+    public double getFillRatio() {
+        return _totalChunks > 0 ? (double) _usedChunks / _totalChunks : 0;
+    }
+}
@@ -0,0 +1,283 @@
+package org.pipservices3.memcached.stats;
+
+import net.rubyeye.xmemcached.MemcachedClient;
+import net.rubyeye.xmemcached.XMemcachedClientBuilder;
+import net.rubyeye.xmemcached.exception.MemcachedException;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.config.IConfigurable;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.commons.errors.ConfigException;
+import org.pipservices3.commons.errors.InvalidStateException;
+import org.pipservices3.commons.refer.IReferenceable;
+import org.pipservices3.commons.refer.IReferences;
+import org.pipservices3.commons.refer.ReferenceException;
+import org.pipservices3.commons.run.IOpenable;
+import org.pipservices3.components.connect.ConnectionResolver;
+import org.pipservices3.components.count.CompositeCounters;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collects statistics of memcached servers with "stats", "stats slabs" and "stats items" commands.
+ * <p>
+ * Statistics are polled periodically, parsed into {@link MemcachedServerStats} snapshots
+ * and published as gauges of referenced counters. Growing evictions with high memory usage
+ * show eviction pressure, and evictions in slab classes while other classes have free chunks
+ * show slab calcification.
+ * <p>
+ * ### Configuration parameters ###
+ * <ul>
+ * <li>connection(s):
+ *   <ul>
+ *   <li>discovery_key:         (optional) a key to retrieve the connection from {@link org.pipservices3.components.connect.IDiscovery}
+ *   <li>host:                  host name or IP address
+ *   <li>port:                  port number
+ *   <li>uri:                   resource URI or connection string with all parameters in it
+ *   </ul>
+ * <li>options:
+ *   <ul>
+ *   <li>interval:              interval in milliseconds between statistics collections, 0 to collect only on demand (default: 60000)
+ *   <li>timeout:               time in milliseconds to wait for statistics of a server (default: 5000)
+ *   <li>slabs:                 true to collect statistics of slab classes (default: true)
+ *   </ul>
+ * </ul>
+ * <p>
+ * ### References ###
+ * <ul>
+ * <li>*:discovery:*:*:1.0        (optional) {@link org.pipservices3.components.connect.IDiscovery} services to resolve connection
+ * <li>*:counters:*:*:1.0         (optional) {@link org.pipservices3.components.count.ICounters} components to pass collected measurements
+ * </ul>
+ * <p>
+ * ### Counters ###
+ * <ul>
+ * <li>memcached.&lt;host:port&gt;.curr_connections, curr_items, bytes, evictions, reclaimed: last values of server statistics
+ * <li>memcached.&lt;host:port&gt;.memory_usage, hit_ratio:    last ratios from 0 to 1
+ * <li>memcached.&lt;host:port&gt;.new_evictions:               number of evictions since the previous collection
+ * <li>memcached.&lt;host:port&gt;.slab.&lt;id&gt;.used_chunks, total_pages, fill_ratio, evicted, age: last values of slab classes
+ * <li>memcached.stats.collect_time:                     time of the last collection
+ * </ul>
+ *
+ * @see MemcachedServerStats
+ * @see MemcachedSlabStats
+ */
+public class MemcachedStatsCollector implements IConfigurable, IReferenceable, IOpenable {
+    private final ConnectionResolver _connectionResolver = new ConnectionResolver();
+    private final CompositeCounters _counters = new CompositeCounters();
+
+    private long _interval = 60000;
+    private long _timeout = 5000;
+    private boolean _slabs = true;
+
+    private MemcachedClient _client = null;
+    private ScheduledExecutorService _collector = null;
+    private volatile Map<String, MemcachedServerStats> _snapshots = new HashMap<>();
+
+    /**
+     * Configures component by passing configuration parameters.
+     *
+     * @param config configuration parameters to be set.
+     */
+    @Override
+    public void configure(ConfigParams config) {
+        this._connectionResolver.configure(config);
+
+        this._interval = config.getAsLongWithDefault("options.interval", this._interval);
+        this._timeout = config.getAsLongWithDefault("options.timeout", this._timeout);
+        this._slabs = config.getAsBooleanWithDefault("options.slabs", this._slabs);
+    }
+
+    /**
+     * Sets references to dependent components.
+     *
+     * @param references references to locate the component dependencies.
+     */
+    @Override
+    public void setReferences(IReferences references) throws ReferenceException {
+        this._connectionResolver.setReferences(references);
+        this._counters.setReferences(references);
+    }
+
+    /**
+     * Checks if the component is opened.
+     *
+     * @return true if the component has been opened and false otherwise.
+     */
+    @Override
+    public boolean isOpen() {
+        return _client != null;
+    }
+
+    /**
+     * Opens the component and starts periodic collection of statistics.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     */
+    @Override
+    public void open(String correlationId) throws ApplicationException {
+        var connections = this._connectionResolver.resolveAll(correlationId);
+        if (connections.size() == 0) {
+            throw new ConfigException(
+                    correlationId,
+                    "NO_CONNECTION",
+                    "Connection is not configured"
+            );
+        }
+
+        var addresses = new ArrayList<InetSocketAddress>();
+        for (var connection : connections) {
+            var host = connection.getHost();
+            var port = connection.getAsIntegerWithDefault("port", 11211);
+            addresses.add(new InetSocketAddress(host, port));
+        }
+
+        try {
+            var builder = new XMemcachedClientBuilder(addresses);
+            builder.setOpTimeout(this._timeout);
+            _client = builder.build();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (this._interval > 0) {
+            _collector = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                var thread = new Thread(runnable, "memcached-stats");
+                thread.setDaemon(true);
+                return thread;
+            });
+            _collector.scheduleWithFixedDelay(() -> {
+                try {
+                    this.collect(correlationId);
+                } catch (Exception ex) {
+                    // Keep the last snapshots until the next collection
+                }
+            }, 0, this._interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Closes component and frees used resources.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     */
+    @Override
+    public void close(String correlationId) {
+        if (_collector != null) {
+            _collector.shutdown();
+            _collector = null;
+        }
+
+        if (_client == null)
+            return;
+
+        try {
+            _client.shutdown();
+            _client = null;
+            _snapshots = new HashMap<>();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void checkOpened(String correlationId) {
+        if (!this.isOpen()) {
+            throw new RuntimeException(
+                    new InvalidStateException(
+                            correlationId,
+                            "NOT_OPENED",
+                            "Connection is not opened"
+                    )
+            );
+        }
+    }
+
+    /**
+     * Collects statistics of all servers and publishes them to counters.
+     *
+     * @param correlationId (optional) transaction id to trace execution through call chain.
+     * @return a list of collected server snapshots.
+     */
+    public List<MemcachedServerStats> collect(String correlationId) {
+        this.checkOpened(correlationId);
+
+        Map<InetSocketAddress, Map<String, String>> stats;
+        Map<InetSocketAddress, Map<String, String>> slabs = Map.of();
+        Map<InetSocketAddress, Map<String, String>> items = Map.of();
+        try {
+            stats = _client.getStats(this._timeout);
+            if (this._slabs) {
+                slabs = _client.getStatsByItem("slabs", this._timeout);
+                items = _client.getStatsByItem("items", this._timeout);
+            }
+        } catch (TimeoutException | InterruptedException | MemcachedException e) {
+            throw new RuntimeException(e);
+        }
+
+        var previous = _snapshots;
+        var snapshots = new HashMap<String, MemcachedServerStats>();
+        for (var entry : stats.entrySet()) {
+            var address = entry.getKey();
+            var server = address.getHostString() + ":" + address.getPort();
+            var snapshot = MemcachedServerStats.parse(server, entry.getValue(), slabs.get(address), items.get(address));
+            snapshots.put(server, snapshot);
+
+            this.publish(snapshot, previous.get(server));
+        }
+        _snapshots = snapshots;
+        _counters.timestampNow("memcached.stats.collect_time");
+
+        return new ArrayList<>(snapshots.values());
+    }
+
+    private void publish(MemcachedServerStats snapshot, MemcachedServerStats previous) {
+        var prefix = "memcached." + snapshot.getServer() + ".";
+
+        _counters.last(prefix + "curr_connections", snapshot.getCurrConnections());
+        _counters.last(prefix + "curr_items", snapshot.getCurrItems());
+        _counters.last(prefix + "bytes", snapshot.getBytes());
+        _counters.last(prefix + "evictions", snapshot.getEvictions());
+        _counters.last(prefix + "reclaimed", snapshot.getReclaimed());
+        _counters.last(prefix + "memory_usage", (float) snapshot.getMemoryUsage());
+        _counters.last(prefix + "hit_ratio", (float) snapshot.getHitRatio());
+
+        // Server restarts reset statistics, so negative differences are skipped
+        if (previous != null && snapshot.getEvictions() >= previous.getEvictions())
+            _counters.increment(prefix + "new_evictions", (int) (snapshot.getEvictions() - previous.getEvictions()));
+
+        for (var slab : snapshot.getSlabs()) {
+            var slabPrefix = prefix + "slab." + slab.getId() + ".";
+            _counters.last(slabPrefix + "used_chunks", slab.getUsedChunks());
+            _counters.last(slabPrefix + "total_pages", slab.getTotalPages());
+            _counters.last(slabPrefix + "fill_ratio", (float) slab.getFillRatio());
+            _counters.last(slabPrefix + "evicted", slab.getEvicted());
+            _counters.last(slabPrefix + "age", slab.getAge());
+        }
+    }
+
+    /**
+     * Gets the last collected snapshot of a server.
+     *
+     * @param server a server address as "host:port".
+     * @return the server snapshot or <code>null</code> if statistics were not collected yet.
+     */
+    public MemcachedServerStats getSnapshot(String server) {
+        return _snapshots.get(server);
+    }
+
+    /**
+     * Gets the last collected snapshots of all servers.
+     *
+     * @return a list of server snapshots.
+     */
+    public List<MemcachedServerStats> getSnapshots() {
+        return new ArrayList<>(_snapshots.values());
+    }
+}
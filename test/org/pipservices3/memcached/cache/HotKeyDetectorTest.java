@@ -0,0 +1,98 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.Test;
+import org.pipservices3.components.count.CompositeCounters;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HotKeyDetectorTest {
+    @Test
+    public void testDetectHotKeys() {
+        var detector = new HotKeyDetector(10, 1, 50, 60000, null);
+
+        for (var i = 0; i < 1000; i++) {
+            detector.record("hot1");
+            detector.record("key" + i);
+            if (i % 2 == 0)
+                detector.record("hot2");
+        }
+
+        // Keys counted in replaced slots never become hot
+        assertTrue(detector.isHot("hot1"));
+        assertTrue(detector.isHot("hot2"));
+        assertFalse(detector.isHot("key999"));
+        assertFalse(detector.isHot("key1"));
+    }
+
+    @Test
+    public void testTopKeysOfLastWindow() throws InterruptedException {
+        var detector = new HotKeyDetector(10, 1, 50, 200, null);
+
+        for (var i = 0; i < 100; i++) {
+            detector.record("hot1");
+            if (i % 2 == 0)
+                detector.record("hot2");
+            if (i % 10 == 0)
+                detector.record("key1");
+        }
+        assertTrue(detector.getTopKeys().isEmpty());
+
+        Thread.sleep(250);
+
+        var topKeys = detector.getTopKeys();
+        assertEquals(List.of("hot1", "hot2", "key1"), new ArrayList<>(topKeys.keySet()).subList(0, 3));
+        assertEquals(100, (long) topKeys.get("hot1"));
+        assertEquals(50, (long) topKeys.get("hot2"));
+
+        // Hot keys stay hot for the next window
+        assertTrue(detector.isHot("hot1"));
+        assertFalse(detector.isHot("key1"));
+
+        // Keys cool down after a window without retrieves
+        Thread.sleep(500);
+        assertTrue(detector.getTopKeys().isEmpty());
+        assertFalse(detector.isHot("hot1"));
+    }
+
+    @Test
+    public void testRankCounters() throws InterruptedException {
+        var counts = new LinkedHashMap<String, Float>();
+        var counters = new CompositeCounters() {
+            @Override
+            public void last(String name, float value) {
+                counts.put(name, value);
+            }
+        };
+        var detector = new HotKeyDetector(3, 1, 50, 200, counters);
+
+        for (var i = 0; i < 100; i++) {
+            detector.record("user@example.com");
+            if (i % 2 == 0)
+                detector.record("hot2");
+        }
+        Thread.sleep(250);
+        detector.record("key1");
+
+        // Counters are published by rank and never contain keys
+        assertEquals(List.of("memcached.hot_keys.top1", "memcached.hot_keys.top2", "memcached.hot_keys.top3"),
+                new ArrayList<>(counts.keySet()));
+        assertEquals(List.of(100f, 50f, 0f), new ArrayList<>(counts.values()));
+    }
+
+    @Test
+    public void testSampling() {
+        var detector = new HotKeyDetector(10, 0.1, 500, 60000, null);
+
+        for (var i = 0; i < 10000; i++)
+            detector.record("hot1");
+        for (var i = 0; i < 100; i++)
+            detector.record("key1");
+
+        assertTrue(detector.isHot("hot1"));
+        assertFalse(detector.isHot("key1"));
+    }
+}
@@ -0,0 +1,92 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.commons.errors.ConfigException;
+import org.pipservices3.memcached.embedded.MemcachedTestServer;
+import org.pipservices3.memcached.fixtures.CacheFixture;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MemcachedCacheBinaryTest {
+    MemcachedCache _cache;
+    CacheFixture _fixture;
+
+    @Before
+    public void setup() throws ApplicationException {
+        _cache = new MemcachedCache();
+        _cache.configure(ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort(),
+                "options.protocol", "binary"
+        ));
+
+        _fixture = new CacheFixture(_cache);
+
+        _cache.open(null);
+    }
+
+    @After
+    public void teardown() {
+        _cache.close(null);
+    }
+
+    @Test
+    public void testStoreAndRetrieve() throws InterruptedException, IOException {
+        _fixture.testStoreAndRetrieve();
+    }
+
+    @Test
+    public void testRemove() {
+        _fixture.testRemove();
+    }
+
+    @Test
+    public void testQuietStoreAndRemoveMany() throws InterruptedException {
+        _cache.storeMany(null, Map.of("binary1", "value1", "binary2", "value2"), 5000);
+
+        Thread.sleep(500);
+
+        var values = _cache.retrieveMany(null, List.of("binary1", "binary2", "binary3"));
+        assertEquals(Map.of("binary1", "value1", "binary2", "value2"), values);
+
+        _cache.removeMany(null, List.of("binary1", "binary2"));
+
+        Thread.sleep(500);
+
+        assertTrue(_cache.retrieveMany(null, List.of("binary1", "binary2")).isEmpty());
+    }
+
+    @Test
+    public void testGetOrLoad() {
+        _cache.remove(null, "binary_load1");
+
+        assertEquals("loaded", _cache.getOrLoad(null, "binary_load1", () -> "loaded", 5000));
+        assertEquals("loaded", _cache.getOrLoad(null, "binary_load1", () -> "reloaded", 5000));
+    }
+
+    @Test
+    public void testUnsupportedProtocol() {
+        var cache = new MemcachedCache();
+        cache.configure(ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort(),
+                "options.protocol", "unknown"
+        ));
+
+        try {
+            cache.open(null);
+            fail("Expected config error");
+        } catch (ApplicationException ex) {
+            assertTrue(ex instanceof ConfigException);
+            assertEquals("BAD_PROTOCOL", ex.getCode());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.memcached.codec.JsonValueCodec;
+import org.pipservices3.memcached.codec.MemcachedTranscoder;
+import org.pipservices3.memcached.embedded.MemcachedTestServer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MemcachedCacheCompressionTest {
+    private MemcachedCache createCache(String compression) throws ApplicationException {
+        var host = MemcachedTestServer.getHost();
+        var port = MemcachedTestServer.getPort();
+
+        var cache = new MemcachedCache();
+        cache.configure(ConfigParams.fromTuples(
+                "connection.host", host,
+                "connection.port", port,
+                "options.compression", compression,
+                "options.compression_threshold", 1024
+        ));
+        cache.open(null);
+        return cache;
+    }
+
+    private List<Map<String, Object>> createDocument() {
+        var document = new ArrayList<Map<String, Object>>();
+        for (var i = 0; i < 1000; i++) {
+            var item = new HashMap<String, Object>();
+            item.put("id", i);
+            item.put("name", "item " + i);
+            item.put("description", "a description of the cached item number " + i);
+            item.put("tags", List.of("red", "green", "blue"));
+            document.add(item);
+        }
+        return document;
+    }
+
+    @Test
+    public void testCompression() throws ApplicationException {
+        var document = createDocument();
+        var raw = new MemcachedTranscoder(new JsonValueCodec()).encode(document);
+        assertEquals(0, raw.getFlag() & (MemcachedTranscoder.DEFLATE_FLAG | MemcachedTranscoder.GZIP_FLAG));
+
+        for (var compression : new String[]{"deflate", "gzip"}) {
+            var transcoder = new MemcachedTranscoder(new JsonValueCodec());
+            var mode = MemcachedTranscoder.parseCompressionMode(compression);
+            transcoder.setCompressionMode(mode);
+            transcoder.setCompressionThreshold(1024);
+
+            var data = transcoder.encode(document);
+            var flag = "gzip".equals(compression) ? MemcachedTranscoder.GZIP_FLAG : MemcachedTranscoder.DEFLATE_FLAG;
+            assertEquals(flag, data.getFlag() & (MemcachedTranscoder.DEFLATE_FLAG | MemcachedTranscoder.GZIP_FLAG));
+            assertTrue(data.getData().length < raw.getData().length);
+            assertEquals(document, transcoder.decode(data));
+
+            var cache = createCache(compression);
+            try {
+                cache.store(null, "compressed_key", document, 10000);
+                assertEquals(document, cache.retrieve(null, "compressed_key"));
+
+                // Values below the threshold are stored as is
+                cache.store(null, "small_key", "small", 10000);
+                assertEquals("small", cache.retrieve(null, "small_key"));
+            } finally {
+                cache.close(null);
+            }
+        }
+    }
+}
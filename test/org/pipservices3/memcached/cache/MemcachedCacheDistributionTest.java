@@ -0,0 +1,149 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.components.connect.ConnectionParams;
+import org.pipservices3.memcached.embedded.EmbeddedMemcachedServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MemcachedCacheDistributionTest {
+    private static final int KEY_COUNT = 3000;
+
+    List<EmbeddedMemcachedServer> _servers = new ArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        for (var index = 0; index < 3; index++) {
+            var server = new EmbeddedMemcachedServer();
+            server.start();
+            _servers.add(server);
+        }
+    }
+
+    @After
+    public void teardown() {
+        for (var server : _servers)
+            server.stop();
+    }
+
+    private MemcachedCache createCache(String distribution, int serverCount, int... weights) throws ApplicationException {
+        var config = ConfigParams.fromTuples(
+                "options.distribution", distribution,
+                "options.coalesce_reads", false,
+                "options.shared_client", false
+        );
+        for (var index = 0; index < serverCount; index++) {
+            config.put("connections." + index + ".host", _servers.get(index).getHost());
+            config.put("connections." + index + ".port", String.valueOf(_servers.get(index).getPort()));
+            if (weights.length > index)
+                config.put("connections." + index + ".weight", String.valueOf(weights[index]));
+        }
+
+        var cache = new MemcachedCache();
+        cache.configure(config);
+        cache.open(null);
+        return cache;
+    }
+
+    private int countRemainingKeys(String distribution) throws ApplicationException {
+        var cache = createCache(distribution, 2);
+        for (var index = 0; index < KEY_COUNT; index++)
+            cache.store(null, "key" + index, "value" + index, 60000);
+        cache.close(null);
+
+        // Add the third server and check how many keys are still found
+        cache = createCache(distribution, 3);
+        var found = 0;
+        for (var index = 0; index < KEY_COUNT; index++) {
+            if (cache.retrieve(null, "key" + index) != null)
+                found++;
+        }
+        cache.close(null);
+        return found;
+    }
+
+    @Test
+    public void testKetamaKeepsMostKeysOnRebalance() throws ApplicationException {
+        var found = countRemainingKeys("ketama");
+
+        // About 2/3 of keys stay in place with consistent hashing
+        assertTrue("Found " + found + " keys", found > KEY_COUNT / 2);
+    }
+
+    @Test
+    public void testModuloRemapsMostKeysOnRebalance() throws ApplicationException {
+        var found = countRemainingKeys("modulo");
+
+        assertTrue("Found " + found + " keys", found < KEY_COUNT / 2);
+    }
+
+    @Test
+    public void testWeightedDistribution() throws ApplicationException {
+        var cache = createCache("ketama", 2, 1, 3);
+        for (var index = 0; index < KEY_COUNT; index++)
+            cache.store(null, "key" + index, "value" + index, 60000);
+        cache.close(null);
+
+        var light = _servers.get(0).getItemCount();
+        var heavy = _servers.get(1).getItemCount();
+        assertEquals(KEY_COUNT, light + heavy);
+        assertTrue("Servers have " + light + " and " + heavy + " keys", heavy > 2 * light);
+    }
+
+    @Test
+    public void testUpdateServers() throws ApplicationException, InterruptedException {
+        var cache = createCache("ketama", 2);
+        for (var index = 0; index < KEY_COUNT; index++)
+            cache.store(null, "key" + index, "value" + index, 60000);
+
+        var connections = new ArrayList<ConnectionParams>();
+        for (var server : _servers)
+            connections.add(ConnectionParams.fromTuples("host", server.getHost(), "port", server.getPort()));
+
+        // Add the third server to the running client
+        cache.updateServers(null, connections);
+        assertEquals(3, cache.getServers().size());
+        Thread.sleep(500);
+
+        var found = 0;
+        for (var index = 0; index < KEY_COUNT; index++) {
+            if (cache.retrieve(null, "key" + index) != null)
+                found++;
+        }
+        assertTrue("Found " + found + " keys", found > KEY_COUNT / 2);
+
+        cache.store(null, "new_key", "new_value", 60000);
+        assertEquals("new_value", cache.retrieve(null, "new_key"));
+
+        // Remove the first server
+        cache.updateServers(null, connections.subList(1, 3));
+        assertEquals(2, cache.getServers().size());
+        Thread.sleep(500);
+
+        // The removed server gets no new keys
+        var removedCount = _servers.get(0).getItemCount();
+        for (var index = 0; index < 100; index++)
+            cache.store(null, "other_key" + index, "value" + index, 60000);
+        assertEquals(removedCount, _servers.get(0).getItemCount());
+
+        cache.close(null);
+    }
+
+    @Test
+    public void testBadDistribution() {
+        try {
+            createCache("random", 1);
+            fail("Expected configuration error");
+        } catch (ApplicationException ex) {
+            assertEquals("BAD_DISTRIBUTION", ex.getCode());
+        }
+    }
+}
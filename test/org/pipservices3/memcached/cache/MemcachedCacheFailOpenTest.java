@@ -0,0 +1,86 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.memcached.embedded.EmbeddedMemcachedServer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MemcachedCacheFailOpenTest {
+    EmbeddedMemcachedServer _server;
+    MemcachedCache _cache;
+
+    @Before
+    public void setup() throws IOException, ApplicationException {
+        _server = new EmbeddedMemcachedServer();
+        _server.start();
+
+        _cache = new MemcachedCache();
+        _cache.configure(ConfigParams.fromTuples(
+                "connection.host", _server.getHost(),
+                "connection.port", _server.getPort(),
+                "options.timeout", 100,
+                "options.retries", 0,
+                "options.failures", 0,
+                "options.coalesce_reads", false,
+                "options.fail_open", true,
+                "options.fail_open_failures", 2,
+                "options.fail_open_window", 500
+        ));
+        _cache.open(null);
+    }
+
+    @After
+    public void teardown() {
+        _server.setResponseDelay(0);
+        _cache.close(null);
+        _server.stop();
+    }
+
+    @Test
+    public void testErrorsBecomeMisses() throws InterruptedException {
+        _cache.store(null, "key1", "value1", 5000);
+        _server.setResponseDelay(1000);
+
+        assertNull(_cache.retrieve(null, "key1"));
+        _cache.store(null, "key2", "value2", 5000);
+        assertEquals(2, _cache.getSuppressedErrorCount());
+
+        // The unhealthy cluster is skipped without network calls
+        var start = System.currentTimeMillis();
+        assertNull(_cache.retrieve(null, "key1"));
+        assertEquals(0, _cache.retrieveMany(null, List.of("key1", "key2")).size());
+        assertTrue(System.currentTimeMillis() - start < 50);
+        assertEquals(4, _cache.getSuppressedErrorCount());
+
+        // The cluster is probed again after the window
+        _server.setResponseDelay(0);
+        Thread.sleep(1500);
+
+        assertEquals("value1", _cache.retrieve(null, "key1"));
+    }
+
+    @Test
+    public void testUpdateIsDropped() {
+        _cache.store(null, "key1", "value1", 5000);
+        _server.setResponseDelay(1000);
+
+        // Unreachable server is not mistaken for a lost race
+        var calls = new AtomicInteger();
+        assertNull(_cache.update(null, "key1", (value) -> {
+            calls.incrementAndGet();
+            return "value2";
+        }, 5000));
+        assertEquals(0, calls.get());
+        assertEquals(1, _cache.getSuppressedErrorCount());
+
+        _server.setResponseDelay(0);
+    }
+}
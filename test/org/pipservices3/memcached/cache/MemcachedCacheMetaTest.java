@@ -0,0 +1,149 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.commons.errors.InvalidStateException;
+import org.pipservices3.memcached.embedded.MemcachedTestServer;
+import org.pipservices3.memcached.fixtures.CacheFixture;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MemcachedCacheMetaTest {
+    MemcachedCache _cache;
+    CacheFixture _fixture;
+
+    @Before
+    public void setup() throws ApplicationException {
+        _cache = new MemcachedCache();
+        _cache.configure(ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort(),
+                "options.protocol", "meta"
+        ));
+
+        _fixture = new CacheFixture(_cache);
+
+        _cache.open(null);
+    }
+
+    @After
+    public void teardown() {
+        _cache.close(null);
+    }
+
+    @Test
+    public void testStoreAndRetrieve() throws InterruptedException, IOException {
+        _fixture.testStoreAndRetrieve();
+    }
+
+    @Test
+    public void testGetOrLoadLoadsOnce() {
+        _cache.remove(null, "meta_load1");
+
+        var loads = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Object>>();
+        for (var index = 0; index < 10; index++) {
+            futures.add(CompletableFuture.supplyAsync(() -> _cache.getOrLoad(null, "meta_load1", () -> {
+                loads.incrementAndGet();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "loaded";
+            }, 5000)));
+        }
+
+        for (var future : futures)
+            assertEquals("loaded", future.join());
+        assertEquals(1, loads.get());
+        assertEquals("loaded", _cache.retrieve(null, "meta_load1"));
+    }
+
+    @Test
+    public void testPlaceholderIsMiss() {
+        _cache.remove(null, "meta_load2");
+
+        // The loader sees no value while the placeholder is kept by the server
+        var value = _cache.getOrLoad(null, "meta_load2", () -> _cache.retrieve(null, "meta_load2") == null ? "missing" : "found", 5000);
+        assertEquals("missing", value);
+
+        // Null values are not cached and placeholders are removed
+        _cache.remove(null, "meta_load3");
+        assertNull(_cache.getOrLoad(null, "meta_load3", () -> null, 5000));
+        assertEquals("loaded", _cache.getOrLoad(null, "meta_load3", () -> "loaded", 5000));
+    }
+
+    @Test
+    public void testEmptyStringIsNotPlaceholder() {
+        _cache.store(null, "meta_empty1", "", 5000);
+        assertEquals("", _cache.retrieve(null, "meta_empty1"));
+        assertEquals("", _cache.retrieveMany(null, List.of("meta_empty1")).get("meta_empty1"));
+        assertEquals("", _cache.getOrLoad(null, "meta_empty1", () -> "loaded", 5000));
+        assertEquals("updated", _cache.update(null, "meta_empty1", (value) -> value + "updated", 5000));
+    }
+
+    @Test
+    public void testPeekTimeToLive() {
+        _cache.store(null, "meta_ttl1", "value1", 60000);
+
+        var ttl = _cache.peekTimeToLive(null, "meta_ttl1");
+        assertNotNull(ttl);
+        assertTrue(ttl > 50000 && ttl <= 60000);
+
+        _cache.store(null, "meta_ttl2", "value2", 0);
+        assertEquals(-1L, (long) _cache.peekTimeToLive(null, "meta_ttl2"));
+
+        _cache.remove(null, "meta_ttl3");
+        assertNull(_cache.peekTimeToLive(null, "meta_ttl3"));
+    }
+
+    @Test
+    public void testInvalidateServesStaleValue() throws InterruptedException {
+        _cache.remove(null, "meta_stale1");
+        _cache.getOrLoad(null, "meta_stale1", () -> "value1", 60000);
+
+        _cache.invalidate(null, "meta_stale1");
+
+        // The first reader gets the stale value and refreshes it in the background
+        assertEquals("value1", _cache.getOrLoad(null, "meta_stale1", () -> "value2", 60000));
+
+        Thread.sleep(500);
+
+        assertEquals("value2", _cache.getOrLoad(null, "meta_stale1", () -> "value3", 60000));
+    }
+
+    @Test
+    public void testMetaOperationsRequireMetaProtocol() throws ApplicationException {
+        var cache = new MemcachedCache();
+        cache.configure(ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort()
+        ));
+        cache.open(null);
+
+        try {
+            cache.store(null, "meta_text1", "value1", 5000);
+            cache.invalidate(null, "meta_text1");
+            assertNull(cache.retrieve(null, "meta_text1"));
+
+            cache.peekTimeToLive(null, "meta_text1");
+            fail("Expected state error");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof InvalidStateException);
+        } finally {
+            cache.close(null);
+        }
+
+        assertTrue(_cache.retrieveMany(null, List.of("meta_missing1")).isEmpty());
+    }
+}
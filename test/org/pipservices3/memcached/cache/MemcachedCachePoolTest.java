@@ -0,0 +1,97 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.memcached.embedded.EmbeddedMemcachedServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemcachedCachePoolTest {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 200;
+
+    EmbeddedMemcachedServer _server;
+
+    @Before
+    public void setup() throws IOException {
+        _server = new EmbeddedMemcachedServer();
+        _server.start();
+    }
+
+    @After
+    public void teardown() {
+        _server.stop();
+    }
+
+    private MemcachedCache createCache(int poolSize) throws ApplicationException {
+        var cache = new MemcachedCache();
+        cache.configure(ConfigParams.fromTuples(
+                "connection.host", _server.getHost(),
+                "connection.port", _server.getPort(),
+                "options.pool_size", poolSize,
+                "options.shared_client", false
+        ));
+        cache.open(null);
+        return cache;
+    }
+
+    private void checkPool(int poolSize) throws ApplicationException, InterruptedException {
+        var cache = createCache(poolSize);
+        try {
+            cache.store(null, "pool_key", "pool_value", 10000);
+
+            var misses = new AtomicLong();
+            var errors = new AtomicLong();
+
+            var threads = new ArrayList<Thread>();
+            for (var i = 0; i < THREADS; i++) {
+                var thread = new Thread(() -> {
+                    for (var j = 0; j < OPERATIONS; j++) {
+                        try {
+                            if (!"pool_value".equals(cache.retrieve(null, "pool_key")))
+                                misses.incrementAndGet();
+                        } catch (RuntimeException ex) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+
+            for (var thread : threads)
+                thread.join();
+
+            assertEquals(0, errors.get());
+            assertEquals(0, misses.get());
+
+            // Concurrent callers share exactly pool_size connections to the server
+            assertEquals(poolSize, _server.getConnectionCount());
+        } finally {
+            cache.close(null);
+        }
+
+        // Connections are closed asynchronously
+        var deadline = System.currentTimeMillis() + 5000;
+        while (_server.getConnectionCount() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(0, _server.getConnectionCount());
+    }
+
+    @Test
+    public void testSingleConnection() throws ApplicationException, InterruptedException {
+        checkPool(1);
+    }
+
+    @Test
+    public void testConnectionPool() throws ApplicationException, InterruptedException {
+        checkPool(4);
+    }
+}
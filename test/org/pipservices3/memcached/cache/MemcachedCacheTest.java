@@ -5,9 +5,26 @@ import org.junit.Before;
 import org.junit.Test;
 import org.pipservices3.commons.config.ConfigParams;
 import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.commons.errors.BadRequestException;
+import org.pipservices3.commons.errors.ConflictException;
+import org.pipservices3.commons.refer.Descriptor;
+import org.pipservices3.commons.refer.References;
+import org.pipservices3.components.count.CompositeCounters;
+import org.pipservices3.components.count.CounterTiming;
+import org.pipservices3.memcached.embedded.MemcachedTestServer;
 import org.pipservices3.memcached.fixtures.CacheFixture;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
 
 public class MemcachedCacheTest {
     MemcachedCache _cache;
@@ -15,8 +32,8 @@ public class MemcachedCacheTest {
 
     @Before
     public void setup() throws ApplicationException {
-        var host = System.getenv("MEMCACHED_SERVICE_HOST") != null ? System.getenv("MEMCACHED_SERVICE_HOST") : "localhost";
-        var port = System.getenv("MEMCACHED_SERVICE_PORT") != null ? Integer.parseInt(System.getenv("MEMCACHED_SERVICE_PORT")) : 11211;
+        var host = MemcachedTestServer.getHost();
+        var port = MemcachedTestServer.getPort();
 
         _cache = new MemcachedCache();
 
@@ -50,4 +67,346 @@ public class MemcachedCacheTest {
     public void testRemove() {
         _fixture.testRemove();
     }
+
+    @Test
+    public void testStoreRetrieveAndRemoveMany() throws InterruptedException {
+        _cache.storeMany(null, Map.of("many1", "value1", "many2", "value2", "many3", "value3"), 5000);
+
+        Thread.sleep(500);
+
+        var values = _cache.retrieveMany(null, List.of("many1", "many2", "many3", "many4"));
+        assertEquals(3, values.size());
+        assertEquals("value1", values.get("many1"));
+        assertEquals("value2", values.get("many2"));
+        assertEquals("value3", values.get("many3"));
+        assertFalse(values.containsKey("many4"));
+
+        _cache.removeMany(null, List.of("many1", "many2"));
+
+        Thread.sleep(500);
+
+        values = _cache.retrieveMany(null, List.of("many1", "many2", "many3"));
+        assertEquals(1, values.size());
+        assertEquals("value3", values.get("many3"));
+    }
+
+    @Test
+    public void testAsyncOperations() throws InterruptedException {
+        _cache.storeAsync(null, "async1", "value1", 5000).join();
+        _cache.storeAsync(null, "async2", "value2", 5000).join();
+
+        Thread.sleep(500);
+
+        var futures = new ArrayList<CompletableFuture<Object>>();
+        for (var i = 0; i < 1000; i++)
+            futures.add(_cache.retrieveAsync(null, i % 2 == 0 ? "async1" : "async2"));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        for (var i = 0; i < futures.size(); i++)
+            assertEquals(i % 2 == 0 ? "value1" : "value2", futures.get(i).join());
+
+        _cache.removeAsync(null, "async1").join();
+
+        Thread.sleep(500);
+
+        assertNull(_cache.retrieveAsync(null, "async1").join());
+    }
+
+    @Test
+    public void testRetrieveAfterStoreWithConcurrentReaders() throws InterruptedException {
+        _cache.store(null, "rw1", "0", 5000);
+
+        // Readers keep coalesced retrieves of the key in flight while it is written
+        var running = new AtomicBoolean(true);
+        var readers = new ArrayList<Thread>();
+        for (var i = 0; i < 4; i++) {
+            var reader = new Thread(() -> {
+                while (running.get())
+                    _cache.retrieve(null, "rw1");
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        try {
+            for (var i = 1; i <= 200; i++) {
+                _cache.store(null, "rw1", String.valueOf(i), 5000);
+                assertEquals(String.valueOf(i), _cache.retrieve(null, "rw1"));
+            }
+
+            _cache.remove(null, "rw1");
+            assertNull(_cache.retrieve(null, "rw1"));
+        } finally {
+            running.set(false);
+            for (var reader : readers)
+                reader.join();
+        }
+    }
+
+    @Test
+    public void testGetOrLoad() throws ApplicationException, InterruptedException {
+        _cache.remove(null, "load1");
+
+        var otherCache = new MemcachedCache();
+        otherCache.configure(ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort()
+        ));
+        otherCache.open(null);
+
+        try {
+            var loads = new AtomicInteger();
+            var results = new Object[10];
+            var threads = new ArrayList<Thread>();
+            for (var i = 0; i < results.length; i++) {
+                var index = i;
+                var cache = i % 2 == 0 ? _cache : otherCache;
+                var thread = new Thread(() -> results[index] = cache.getOrLoad(null, "load1", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    return "loaded";
+                }, 5000));
+                threads.add(thread);
+                thread.start();
+            }
+
+            for (var thread : threads)
+                thread.join();
+
+            assertEquals(1, loads.get());
+            for (var result : results)
+                assertEquals("loaded", result);
+
+            assertEquals("loaded", _cache.getOrLoad(null, "load1", () -> "reloaded", 5000));
+        } finally {
+            otherCache.close(null);
+        }
+    }
+
+    @Test
+    public void testGetOrLoadStaleWhileRevalidate() throws InterruptedException {
+        _cache.remove(null, "stale1");
+
+        var value = _cache.getOrLoad(null, "stale1", () -> "value1", 1000, 5000);
+        assertEquals("value1", value);
+
+        Thread.sleep(1500);
+
+        // Stale value is returned immediately while it is refreshed in background
+        var loads = new AtomicInteger();
+        value = _cache.getOrLoad(null, "stale1", () -> {
+            loads.incrementAndGet();
+            return "value2";
+        }, 1000, 5000);
+        assertEquals("value1", value);
+
+        Thread.sleep(500);
+
+        assertEquals(1, loads.get());
+        assertEquals("value2", _cache.getOrLoad(null, "stale1", () -> "value3", 1000, 5000));
+        assertEquals("value2", _cache.retrieve(null, "stale1"));
+    }
+
+    @Test
+    public void testCounters() throws ApplicationException {
+        var counts = new ConcurrentHashMap<String, Integer>();
+        var counters = new CompositeCounters() {
+            @Override
+            public CounterTiming beginTiming(String name) {
+                counts.merge(name, 1, Integer::sum);
+                return super.beginTiming(name);
+            }
+
+            @Override
+            public void increment(String name, int value) {
+                counts.merge(name, value, Integer::sum);
+            }
+
+            @Override
+            public void incrementOne(String name) {
+                this.increment(name, 1);
+            }
+        };
+
+        var cache = new MemcachedCache();
+        cache.configure(ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort()
+        ));
+        cache.setReferences(References.fromTuples(
+                new Descriptor("pip-services", "counters", "test", "default", "1.0"), counters
+        ));
+        cache.open(null);
+
+        try {
+            cache.store(null, "counter1", "value1", 5000);
+            assertEquals("value1", cache.retrieve(null, "counter1"));
+            cache.remove(null, "counter1");
+            assertNull(cache.retrieve(null, "counter1"));
+
+            assertEquals(1, (int) counts.get("memcached.store.call_time"));
+            assertEquals(2, (int) counts.get("memcached.retrieve.call_time"));
+            assertEquals(1, (int) counts.get("memcached.retrieve.hits"));
+            assertEquals(1, (int) counts.get("memcached.retrieve.misses"));
+            assertEquals(1, (int) counts.get("memcached.encode.time"));
+
+            // Single-key operations are measured by server
+            assertTrue(counts.keySet().stream().anyMatch(name -> name.endsWith(":" + MemcachedTestServer.getPort() + ".call_time")));
+        } finally {
+            cache.close(null);
+        }
+    }
+
+    @Test
+    public void testHotKeys() throws ApplicationException {
+        var config = ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort(),
+                "hot_keys.enabled", true,
+                "hot_keys.sample_rate", 1,
+                "hot_keys.threshold", 10,
+                "hot_keys.window", 60000,
+                "hot_keys.promote", true,
+                "hot_keys.timeout", 60000
+        );
+        var cache = new MemcachedCache();
+        cache.configure(config);
+        cache.open(null);
+
+        try {
+            _cache.store(null, "hot1", "value1", 5000);
+            for (var i = 0; i < 20; i++)
+                assertEquals("value1", cache.retrieve(null, "hot1"));
+
+            // Hot key is served from the local copy
+            _cache.store(null, "hot1", "value2", 5000);
+            assertEquals("value1", cache.retrieve(null, "hot1"));
+
+            // Local writes drop the local copy
+            cache.store(null, "hot1", "value3", 5000);
+            assertEquals("value3", cache.retrieve(null, "hot1"));
+        } finally {
+            cache.close(null);
+        }
+    }
+
+    @Test
+    public void testUpdate() {
+        _cache.remove(null, "update1");
+
+        // Concurrent increments do not lose updates
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (var thread = 0; thread < 5; thread++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (var i = 0; i < 20; i++) {
+                    _cache.update(null, "update1", (value) -> {
+                        var count = value != null ? Integer.parseInt((String) value) : 0;
+                        return String.valueOf(count + 1);
+                    }, 5000);
+                }
+            }));
+        }
+        for (var future : futures)
+            future.join();
+
+        assertEquals("100", _cache.retrieve(null, "update1"));
+
+        // Null result removes the value
+        assertNull(_cache.update(null, "update1", (value) -> null, 5000));
+        assertNull(_cache.retrieve(null, "update1"));
+    }
+
+    @Test
+    public void testUpdateConflict() throws ApplicationException {
+        var cache = new MemcachedCache();
+        cache.configure(ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort(),
+                "options.cas_retries", 2
+        ));
+        cache.open(null);
+
+        try {
+            cache.store(null, "update2", "value1", 5000);
+
+            // Another writer changes the value on every attempt
+            var attempts = new AtomicInteger();
+            cache.update(null, "update2", (value) -> {
+                _cache.store(null, "update2", "other" + attempts.incrementAndGet(), 5000);
+                return "value2";
+            }, 5000);
+            fail("Expected conflict error");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof ConflictException);
+            assertEquals("other3", _cache.retrieve(null, "update2"));
+        } finally {
+            cache.close(null);
+        }
+    }
+
+    @Test
+    public void testIncrementAndDecrement() {
+        _cache.remove(null, "counter1");
+        assertNull(_cache.getCounter(null, "counter1"));
+
+        // Missing counters are created with the initial value
+        assertEquals(10, _cache.increment(null, "counter1", 5, 10, 5000));
+        assertEquals(15, _cache.increment(null, "counter1", 5, 10, 5000));
+        assertEquals(12, _cache.decrement(null, "counter1", 3, 0, 5000));
+        assertEquals(0, _cache.decrement(null, "counter1", 20, 0, 5000));
+        assertEquals(0L, (long) _cache.getCounter(null, "counter1"));
+
+        _cache.store(null, "counter2", "text", 5000);
+        try {
+            _cache.getCounter(null, "counter2");
+            fail("Expected bad request error");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof BadRequestException);
+        }
+    }
+
+    @Test
+    public void testIncrementMany() {
+        for (var key : List.of("counter3", "counter4", "counter5", "counter6"))
+            _cache.remove(null, key);
+        _cache.increment(null, "counter4", 1, 100, 5000);
+
+        // Missing counters are created with the initial value like increment does
+        var result = _cache.incrementMany(null, Map.of("counter3", 5L, "counter4", -30L, "counter5", -1L), 10, 5000);
+        assertEquals(Map.of("counter3", 10L, "counter4", 70L, "counter5", 10L), result.getValues());
+        assertTrue(result.isComplete());
+        assertTrue(result.getFailedServers().isEmpty());
+        assertEquals(10L, _cache.increment(null, "counter6", 5, 10, 5000));
+
+        result = _cache.incrementMany(null, Map.of("counter3", 5L, "counter6", 5L), 10, 5000);
+        assertEquals(15L, (long) result.getValues().get("counter3"));
+        assertEquals(15L, (long) result.getValues().get("counter6"));
+        assertEquals(15L, (long) _cache.getCounter(null, "counter3"));
+    }
+
+    @Test
+    public void testIncrementManyRejectsBadInput() {
+        _cache.remove(null, "counter6");
+
+        var nullDelta = new HashMap<String, Long>();
+        nullDelta.put("counter6", 1L);
+        nullDelta.put("counter7", null);
+
+        for (var deltas : List.of(Map.of("counter6", 1L, "bad key", 1L), Map.of("counter6", 1L, "bad\r\nmd counter6", 1L),
+                Map.of("counter6", 1L, "x".repeat(251), 1L), nullDelta)) {
+            try {
+                _cache.incrementMany(null, deltas, 0, 5000);
+                fail("Expected bad request");
+            } catch (RuntimeException ex) {
+                assertTrue(ex.getCause() instanceof BadRequestException);
+            }
+        }
+
+        // Nothing is sent when any of the counters is invalid
+        assertNull(_cache.getCounter(null, "counter6"));
+    }
 }
@@ -0,0 +1,122 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.commons.errors.ConnectionException;
+import org.pipservices3.memcached.embedded.EmbeddedMemcachedServer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class MemcachedCacheTimeoutTest {
+    EmbeddedMemcachedServer _server;
+    MemcachedCache _cache;
+
+    @Before
+    public void setup() throws IOException, ApplicationException {
+        _server = new EmbeddedMemcachedServer();
+        _server.start();
+
+        _cache = new MemcachedCache();
+        _cache.configure(ConfigParams.fromTuples(
+                "connection.host", _server.getHost(),
+                "connection.port", _server.getPort(),
+                "options.read_timeout", 100,
+                "options.write_timeout", 200,
+                "options.retries", 3,
+                "options.retry_backoff", 10,
+                "options.deadline", 300,
+                "options.failures", 0,
+                "options.coalesce_reads", false
+        ));
+        _cache.open(null);
+    }
+
+    @After
+    public void teardown() {
+        _server.setResponseDelay(0);
+        _cache.close(null);
+        _server.stop();
+    }
+
+    @Test
+    public void testOperationsWithinTimeouts() {
+        _cache.store(null, "key1", "value1", 5000);
+        assertEquals("value1", _cache.retrieve(null, "key1"));
+
+        _cache.remove(null, "key1");
+        assertNull(_cache.retrieve(null, "key1"));
+    }
+
+    @Test
+    public void testReadIsLimitedByDeadline() {
+        _cache.store(null, "key1", "value1", 5000);
+        _server.setResponseDelay(2000);
+
+        var start = System.currentTimeMillis();
+        try {
+            _cache.retrieve(null, "key1");
+            fail("Expected timeout");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+
+        // Retries never exceed the deadline
+        var elapsed = System.currentTimeMillis() - start;
+        assertTrue("Retrieve took " + elapsed + " ms", elapsed < 1000);
+    }
+
+    @Test
+    public void testFailingServerFailsFast() throws ApplicationException, InterruptedException {
+        var cache = new MemcachedCache();
+        cache.configure(ConfigParams.fromTuples(
+                "connection.host", _server.getHost(),
+                "connection.port", _server.getPort(),
+                "options.timeout", 100,
+                "options.retries", 0,
+                "options.failures", 1,
+                "options.retry", 300,
+                "options.coalesce_reads", false,
+                "options.shared_client", false
+        ));
+        cache.open(null);
+        try {
+            cache.store(null, "key1", "value1", 5000);
+            _server.setResponseDelay(1000);
+
+            try {
+                cache.retrieve(null, "key1");
+                fail("Expected timeout");
+            } catch (RuntimeException ex) {
+                assertTrue(ex.getCause() instanceof TimeoutException);
+            }
+
+            // Writes to the failing server are not silently dropped
+            try {
+                cache.store(null, "key1", "value2", 5000);
+                fail("Expected unavailable server");
+            } catch (RuntimeException ex) {
+                assertTrue(ex.getCause() instanceof ConnectionException);
+                assertEquals("NODE_UNAVAILABLE", ((ConnectionException) ex.getCause()).getCode());
+            }
+
+            // A probe that fails before reaching the server does not keep the server closed
+            _server.setResponseDelay(0);
+            Thread.sleep(400);
+            try {
+                cache.retrieve(null, "bad key");
+                fail("Expected invalid key");
+            } catch (RuntimeException ex) {
+                assertFalse(ex.getCause() instanceof ConnectionException);
+            }
+            assertEquals("value1", cache.retrieve(null, "key1"));
+        } finally {
+            cache.close(null);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.commons.errors.BadRequestException;
+import org.pipservices3.memcached.embedded.MemcachedTestServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class MemcachedCounterAccumulatorTest {
+    MemcachedCache _cache;
+    MemcachedCounterAccumulator _accumulator;
+
+    @Before
+    public void setup() throws ApplicationException {
+        var config = ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort(),
+                "options.flush_interval", 0,
+                "options.flush_threshold", 0
+        );
+
+        _cache = new MemcachedCache();
+        _cache.configure(config);
+        _cache.open(null);
+        for (var key : List.of("acc1", "acc2", "acc3", "acc4", "acc5", "acc6", "acc7"))
+            _cache.remove(null, key);
+
+        _accumulator = new MemcachedCounterAccumulator();
+        _accumulator.configure(config);
+        _accumulator.open(null);
+    }
+
+    @After
+    public void teardown() {
+        _accumulator.close(null);
+        _cache.close(null);
+    }
+
+    @Test
+    public void testAccumulateAndFlush() {
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (var thread = 0; thread < 4; thread++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (var i = 0; i < 1000; i++) {
+                    _accumulator.increment("acc1");
+                    _accumulator.increment("acc2", 2);
+                }
+            }));
+        }
+        for (var future : futures)
+            future.join();
+
+        // Nothing is sent until the flush
+        assertEquals(4000, _accumulator.getPendingDelta("acc1"));
+        assertNull(_cache.getCounter(null, "acc1"));
+        assertEquals(4000, _accumulator.getCounter(null, "acc1"));
+
+        var values = _accumulator.flush(null);
+        assertEquals(4000L, (long) values.get("acc1"));
+        assertEquals(8000L, (long) values.get("acc2"));
+        assertEquals(0, _accumulator.getPendingDelta("acc1"));
+
+        _accumulator.increment("acc1", -1000);
+        _accumulator.flush(null);
+        assertEquals(3000L, (long) _cache.getCounter(null, "acc1"));
+    }
+
+    @Test
+    public void testInvalidKeysDoNotBlockFlushes() {
+        _accumulator.increment("acc6", 3);
+        for (var key : List.of("bad key", "bad\r\nma acc6", "x".repeat(251), "")) {
+            try {
+                _accumulator.increment(key, 1);
+                fail("Expected bad request");
+            } catch (RuntimeException ex) {
+                assertTrue(ex.getCause() instanceof BadRequestException);
+            }
+        }
+        _accumulator.increment("acc7", 4);
+
+        // Good counters arrive on every flush
+        var values = _accumulator.flush(null);
+        assertEquals(Map.of("acc6", 3L, "acc7", 4L), values);
+
+        _accumulator.increment("acc6", 2);
+        values = _accumulator.flush(null);
+        assertEquals(Map.of("acc6", 5L), values);
+        assertEquals(0, _accumulator.getPendingDelta("acc6"));
+    }
+
+    @Test
+    public void testEmptyCellsAreRemoved() {
+        _accumulator.increment("acc4", 5);
+        _accumulator.increment("acc5", 5);
+        _accumulator.increment("acc5", -5);
+        assertEquals(2, _accumulator.getCellCount());
+
+        // Counters with nothing pending do not keep memory after the flush
+        _accumulator.flush(null);
+        assertEquals(0, _accumulator.getCellCount());
+        assertEquals(5L, (long) _cache.getCounter(null, "acc4"));
+
+        // Increments racing with flushes are never lost
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (var thread = 0; thread < 4; thread++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (var i = 0; i < 5000; i++)
+                    _accumulator.increment("acc4");
+            }));
+        }
+        while (!futures.stream().allMatch(CompletableFuture::isDone))
+            _accumulator.flush(null);
+        _accumulator.flush(null);
+
+        assertEquals(20005L, (long) _cache.getCounter(null, "acc4"));
+        assertEquals(0, _accumulator.getCellCount());
+    }
+
+    @Test
+    public void testFlushByThresholdAndOnClose() throws ApplicationException, InterruptedException {
+        var accumulator = new MemcachedCounterAccumulator();
+        accumulator.configure(ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort(),
+                "options.flush_interval", 0,
+                "options.flush_threshold", 10
+        ));
+        accumulator.open(null);
+
+        try {
+            for (var i = 0; i < 10; i++)
+                accumulator.increment("acc3");
+
+            Thread.sleep(500);
+
+            assertEquals(10L, (long) _cache.getCounter(null, "acc3"));
+
+            accumulator.increment("acc3", 5);
+        } finally {
+            accumulator.close(null);
+        }
+
+        assertEquals(15L, (long) _cache.getCounter(null, "acc3"));
+    }
+}
@@ -0,0 +1,125 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.memcached.embedded.MemcachedTestServer;
+import org.pipservices3.memcached.fixtures.CacheFixture;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MemcachedNearCacheTest {
+    MemcachedNearCache _cache;
+    CacheFixture _fixture;
+
+    @Before
+    public void setup() throws ApplicationException {
+        var host = MemcachedTestServer.getHost();
+        var port = MemcachedTestServer.getPort();
+
+        _cache = new MemcachedNearCache();
+
+        var config = ConfigParams.fromTuples(
+                "connection.host", host,
+                "connection.port", port,
+                "near_cache.max_size", 2,
+                "near_cache.timeout", 10000
+        );
+        _cache.configure(config);
+
+        _fixture = new CacheFixture(_cache);
+
+        _cache.open(null);
+    }
+
+    @After
+    public void teardown() {
+        _cache.close(null);
+    }
+
+    @Test
+    public void testStoreAndRetrieve() throws InterruptedException, IOException {
+        _fixture.testStoreAndRetrieve();
+    }
+
+    @Test
+    public void testRetrieveExpired() throws InterruptedException {
+        _fixture.testRetrieveExpired();
+    }
+
+    @Test
+    public void testRemove() {
+        _fixture.testRemove();
+    }
+
+    @Test
+    public void testNearEviction() {
+        var nearCache = new NearCache(2, 0, 10000);
+        nearCache.put("key1", "value1", 0);
+        nearCache.put("key2", "value2", 0);
+        assertEquals("value1", nearCache.get("key1"));
+
+        // key2 is the least recently used entry
+        nearCache.put("key3", "value3", 0);
+        assertEquals(2, nearCache.size());
+        assertNull(nearCache.get("key2"));
+        assertEquals("value1", nearCache.get("key1"));
+        assertEquals("value3", nearCache.get("key3"));
+
+        var weightedCache = new NearCache(100, 100, 10000);
+        weightedCache.put("key1", "1234567890", 0);
+        weightedCache.put("key2", "1234567890", 0);
+        assertEquals(1, weightedCache.size());
+        assertEquals("1234567890", weightedCache.get("key2"));
+    }
+
+    @Test
+    public void testConcurrentNearAccess() throws InterruptedException {
+        var nearCache = new NearCache(50, 0, 10000);
+        var errors = new AtomicInteger();
+
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < 8; i++) {
+            var seed = i;
+            var thread = new Thread(() -> {
+                try {
+                    for (var j = 0; j < 10000; j++) {
+                        var key = "key" + ((seed * 31 + j) % 100);
+                        if (j % 4 == 0) {
+                            nearCache.put(key, key, 0);
+                        } else {
+                            var value = nearCache.get(key);
+                            if (value != null && !key.equals(value))
+                                errors.incrementAndGet();
+                        }
+                    }
+                } catch (RuntimeException ex) {
+                    errors.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (var thread : threads)
+            thread.join();
+
+        assertEquals(0, errors.get());
+        assertTrue(nearCache.size() <= 50);
+    }
+
+    @Test
+    public void testNearExpiration() throws InterruptedException {
+        var nearCache = new NearCache(10, 0, 10000);
+        nearCache.put("key1", "value1", 100);
+
+        assertEquals("value1", nearCache.get("key1"));
+        Thread.sleep(200);
+        assertNull(nearCache.get("key1"));
+    }
+}
@@ -0,0 +1,129 @@
+package org.pipservices3.memcached.cache;
+
+import net.rubyeye.xmemcached.exception.MemcachedException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.memcached.embedded.EmbeddedMemcachedServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class MetaProtocolClientTest {
+    EmbeddedMemcachedServer _server;
+    InetSocketAddress _address;
+    MetaProtocolClient _client;
+
+    @Before
+    public void setup() throws IOException {
+        _server = new EmbeddedMemcachedServer();
+        _server.start();
+        _address = new InetSocketAddress(_server.getHost(), _server.getPort());
+        _client = new MetaProtocolClient(2);
+    }
+
+    @After
+    public void teardown() {
+        _client.close();
+        _server.stop();
+    }
+
+    @Test
+    public void testSetGetAndDelete() throws TimeoutException, InterruptedException, MemcachedException {
+        var data = "value1".getBytes(StandardCharsets.US_ASCII);
+        assertEquals("HD", _client.set(_address, "meta1", data, "T60 F7", 5000).status);
+        assertEquals("NS", _client.set(_address, "meta1", data, "ME", 5000).status);
+
+        var reply = _client.get(_address, "meta1", "v f t c", 5000);
+        assertTrue(reply.isSuccess());
+        assertArrayEquals(data, reply.value);
+        assertEquals(7, reply.flags);
+        assertEquals(60, reply.ttl);
+        assertTrue(reply.cas > 0);
+
+        assertEquals("HD", _client.delete(_address, "meta1", "", 5000).status);
+        assertEquals("EN", _client.get(_address, "meta1", "v", 5000).status);
+        assertEquals("NF", _client.delete(_address, "meta1", "", 5000).status);
+
+        // Connections are reused between commands
+        assertEquals(1, _client.getIdleConnectionCount());
+    }
+
+    @Test
+    public void testRecomputeMarks() throws TimeoutException, InterruptedException, MemcachedException {
+        var reply = _client.get(_address, "meta2", "v N30", 5000);
+        assertTrue(reply.win);
+        assertEquals(0, reply.value.length);
+
+        reply = _client.get(_address, "meta2", "v N30", 5000);
+        assertFalse(reply.win);
+        assertTrue(reply.winSent);
+
+        _client.set(_address, "meta2", "value2".getBytes(StandardCharsets.US_ASCII), "T60", 5000);
+        _client.delete(_address, "meta2", "I", 5000);
+
+        reply = _client.get(_address, "meta2", "v", 5000);
+        assertTrue(reply.win);
+        assertTrue(reply.stale);
+        assertEquals("value2", new String(reply.value, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testPipelinedArithmetic() throws TimeoutException, InterruptedException, MemcachedException {
+        var replies = _client.arithmetic(_address, List.of("count1", "count1", "count2"),
+                List.of("N60 J5 D5 MI v", "D2 MD v", "D1"), 5000);
+
+        assertEquals(3, replies.size());
+        assertEquals("5", new String(replies.get(0).value, StandardCharsets.US_ASCII));
+        assertEquals("3", new String(replies.get(1).value, StandardCharsets.US_ASCII));
+        assertEquals("NF", replies.get(2).status);
+    }
+
+    @Test
+    public void testInvalidKeys() throws TimeoutException, InterruptedException, MemcachedException {
+        for (var key : List.of("bad\r\nmn", "bad key", "bad\u0000key", "x".repeat(251), "")) {
+            try {
+                _client.get(_address, key, "v", 5000);
+                fail("Expected invalid key error");
+            } catch (IllegalArgumentException ex) {
+                // Expected error
+            }
+        }
+
+        try {
+            _client.arithmetic(_address, List.of("count1", "count2\r\nmd count1"), List.of("D1", "D1"), 5000);
+            fail("Expected invalid key error");
+        } catch (IllegalArgumentException ex) {
+            // Expected error
+        }
+
+        // Nothing was sent with the injected command
+        _client.set(_address, "x".repeat(250), "value".getBytes(StandardCharsets.US_ASCII), "T60", 5000);
+        assertEquals("EN", _client.get(_address, "count1", "v", 5000).status);
+        assertTrue(_client.get(_address, "x".repeat(250), "v", 5000).isSuccess());
+    }
+
+    @Test
+    public void testServerErrors() throws TimeoutException, InterruptedException, MemcachedException {
+        _client.set(_address, "meta3", "abc".getBytes(StandardCharsets.US_ASCII), "T60", 5000);
+        try {
+            _client.arithmetic(_address, List.of("meta3"), List.of("D1"), 5000);
+            fail("Expected server error");
+        } catch (MemcachedException ex) {
+            // Expected error
+        }
+
+        _client.close();
+        try {
+            _client.get(_address, "meta3", "v", 5000);
+            fail("Expected closed client error");
+        } catch (MemcachedException ex) {
+            // Expected error
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.pipservices3.memcached.cache;
+
+import com.google.code.yanf4j.core.Session;
+import net.rubyeye.xmemcached.MemcachedSessionLocator;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NodeCircuitBreakerTest {
+    private final InetSocketAddress _node1 = new InetSocketAddress("localhost", 11211);
+    private final InetSocketAddress _node2 = new InetSocketAddress("localhost", 11212);
+
+    @Test
+    public void testNodeOpensAfterConsecutiveFailures() {
+        var breaker = new NodeCircuitBreaker(3, 10000);
+
+        assertFalse(breaker.recordFailure(_node1));
+        assertFalse(breaker.recordFailure(_node1));
+        assertTrue(breaker.allowRequest(_node1));
+
+        // A success resets the failures
+        breaker.recordSuccess(_node1);
+        assertFalse(breaker.recordFailure(_node1));
+        assertFalse(breaker.recordFailure(_node1));
+        assertTrue(breaker.recordFailure(_node1));
+
+        assertTrue(breaker.isOpen(_node1));
+        assertFalse(breaker.allowRequest(_node1));
+        assertTrue(breaker.allowRequest(_node2));
+    }
+
+    @Test
+    public void testOpenNodeIsProbedAfterRetryTimeout() throws InterruptedException {
+        var breaker = new NodeCircuitBreaker(1, 200);
+
+        assertTrue(breaker.recordFailure(_node1));
+        assertFalse(breaker.allowRequest(_node1));
+
+        Thread.sleep(300);
+
+        // Only one probe is let through
+        assertFalse(breaker.isOpen(_node1));
+        assertTrue(breaker.allowRequest(_node1));
+        assertFalse(breaker.allowRequest(_node1));
+
+        // Failed probe opens the node again
+        assertTrue(breaker.recordFailure(_node1));
+        assertFalse(breaker.allowRequest(_node1));
+
+        Thread.sleep(300);
+
+        // Successful probe closes the node
+        assertTrue(breaker.allowRequest(_node1));
+        assertTrue(breaker.recordSuccess(_node1));
+        assertTrue(breaker.allowRequest(_node1));
+        assertTrue(breaker.allowRequest(_node1));
+    }
+
+    @Test
+    public void testReleasedProbeIsRetried() throws InterruptedException {
+        var breaker = new NodeCircuitBreaker(1, 200);
+
+        assertTrue(breaker.recordFailure(_node1));
+        Thread.sleep(300);
+
+        assertTrue(breaker.allowRequest(_node1));
+        assertFalse(breaker.allowRequest(_node1));
+
+        // A probe without outcome lets the next request probe the node
+        breaker.releaseProbe(_node1);
+        assertTrue(breaker.allowRequest(_node1));
+        assertTrue(breaker.recordSuccess(_node1));
+    }
+
+    @Test
+    public void testFailoverLocatorEjectsOpenNodes() throws InterruptedException {
+        var breaker = new NodeCircuitBreaker(1, 200);
+        var updates = new ArrayList<List<InetSocketAddress>>();
+
+        var inner = new MemcachedSessionLocator() {
+            @Override
+            public Session getSessionByKey(String key) {
+                return null;
+            }
+
+            @Override
+            public void updateSessions(Collection<Session> list) {
+                var addresses = new ArrayList<InetSocketAddress>();
+                for (var session : list)
+                    addresses.add(session.getRemoteSocketAddress());
+                updates.add(addresses);
+            }
+
+            @Override
+            public void setFailureMode(boolean failureMode) {
+            }
+        };
+
+        var locator = new FailoverSessionLocator(inner, breaker);
+        locator.updateSessions(List.of(createSession(_node1), createSession(_node2)));
+        assertEquals(List.of(_node1, _node2), updates.get(updates.size() - 1));
+
+        breaker.recordFailure(_node1);
+        locator.rebuild();
+        assertEquals(List.of(_node2), updates.get(updates.size() - 1));
+
+        // The node returns to the distribution after the retry timeout
+        Thread.sleep(300);
+        locator.getSessionByKey("key1");
+        assertEquals(List.of(_node1, _node2), updates.get(updates.size() - 1));
+    }
+
+    private static Session createSession(InetSocketAddress address) {
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> {
+                    if ("getRemoteSocketAddress".equals(method.getName()))
+                        return address;
+                    if ("isClosed".equals(method.getName()))
+                        return false;
+                    return null;
+                });
+    }
+}
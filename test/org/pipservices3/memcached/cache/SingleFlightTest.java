@@ -0,0 +1,100 @@
+package org.pipservices3.memcached.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+    @Test
+    public void testConcurrentCallsAreShared() throws InterruptedException {
+        var flight = new SingleFlight<Object>();
+        var calls = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var results = new Object[10];
+
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < results.length; i++) {
+            var index = i;
+            var thread = new Thread(() -> results[index] = flight.execute("key1", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return "value1";
+            }));
+            threads.add(thread);
+        }
+
+        threads.get(0).start();
+        started.await();
+        for (var i = 1; i < threads.size(); i++)
+            threads.get(i).start();
+
+        Thread.sleep(200);
+        release.countDown();
+        for (var thread : threads)
+            thread.join();
+
+        assertEquals(1, calls.get());
+        for (var result : results)
+            assertEquals("value1", result);
+
+        // Completed calls are not reused
+        assertEquals("value2", flight.execute("key1", () -> "value2"));
+    }
+
+    @Test
+    public void testErrorsAreShared() {
+        var flight = new SingleFlight<Object>();
+
+        try {
+            flight.execute("key1", () -> {
+                throw new IllegalStateException("failed");
+            });
+            fail("Expected exception");
+        } catch (IllegalStateException ex) {
+            assertEquals("failed", ex.getMessage());
+        }
+
+        assertEquals("value1", flight.execute("key1", () -> "value1"));
+    }
+
+    @Test
+    public void testForgottenCallsAreNotShared() throws InterruptedException {
+        var flight = new SingleFlight<Object>();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var results = new Object[1];
+
+        var thread = new Thread(() -> results[0] = flight.execute("key1", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return "value1";
+        }));
+        thread.start();
+        started.await();
+
+        // A call after forget executes again instead of joining the old one
+        flight.forget("key1");
+        assertEquals("value2", flight.execute("key1", () -> "value2"));
+
+        release.countDown();
+        thread.join();
+        assertEquals("value1", results[0]);
+
+        // The finished old call does not detach newer calls
+        assertEquals("value3", flight.execute("key1", () -> "value3"));
+    }
+}
@@ -0,0 +1,193 @@
+package org.pipservices3.memcached.codec;
+
+import net.rubyeye.xmemcached.transcoders.CachedData;
+import net.rubyeye.xmemcached.transcoders.CompressionMode;
+import org.junit.Test;
+import org.pipservices3.components.count.CompositeCounters;
+import org.pipservices3.components.count.CounterTiming;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MemcachedTranscoderTest {
+    private final Map<String, Object> VALUE = Map.of(
+            "name", "value",
+            "count", 123,
+            "large", 12345678901L,
+            "negative", -42,
+            "ratio", 0.5,
+            "active", true,
+            "items", List.of(1, 2, 3)
+    );
+
+    private void testRoundTrip(MemcachedTranscoder transcoder) {
+        var data = transcoder.encode(VALUE);
+        assertEquals(transcoder.getCodec().getFlag(), data.getFlag() & MemcachedTranscoder.FORMAT_MASK);
+
+        var result = transcoder.decode(data);
+        assertTrue(result instanceof Map);
+
+        var map = (Map<?, ?>) result;
+        assertEquals("value", map.get("name"));
+        assertEquals(123, map.get("count"));
+        assertEquals(12345678901L, map.get("large"));
+        assertEquals(-42, map.get("negative"));
+        assertEquals(0.5, map.get("ratio"));
+        assertEquals(true, map.get("active"));
+        assertEquals(List.of(1, 2, 3), map.get("items"));
+    }
+
+    @Test
+    public void testJsonCodec() {
+        testRoundTrip(new MemcachedTranscoder(new JsonValueCodec()));
+    }
+
+    @Test
+    public void testBinaryCodec() {
+        testRoundTrip(new MemcachedTranscoder(new BinaryValueCodec()));
+    }
+
+    @Test
+    public void testBigNumbers() throws IOException {
+        var codec = new BinaryValueCodec();
+
+        // Bignum example from RFC 8949: 18446744073709551616 = 2^64
+        var big = BigInteger.ONE.shiftLeft(64);
+        assertArrayEquals(new byte[]{(byte) 0xc2, 0x49, 1, 0, 0, 0, 0, 0, 0, 0, 0}, codec.encode(big));
+        assertEquals(big, codec.decode(codec.encode(big)));
+        assertEquals(big.negate(), codec.decode(codec.encode(big.negate())));
+        assertEquals(BigInteger.TEN, codec.decode(codec.encode(BigInteger.TEN)));
+
+        // Decimal fraction example from RFC 8949: 273.15 = [-2, 27315]
+        var decimal = new BigDecimal("273.15");
+        assertArrayEquals(new byte[]{(byte) 0xc4, (byte) 0x82, 0x21, 0x19, 0x6a, (byte) 0xb3}, codec.encode(decimal));
+        assertEquals(decimal, codec.decode(codec.encode(decimal)));
+
+        var precise = new BigDecimal("-12345678901234567890123.000000000000000000001");
+        assertEquals(precise, codec.decode(codec.encode(precise)));
+        assertEquals(List.of(big, decimal), codec.decode(codec.encode(List.of(big, decimal))));
+    }
+
+    @Test
+    public void testStringsAndBytes() {
+        var transcoder = new MemcachedTranscoder(new BinaryValueCodec());
+
+        var data = transcoder.encode("text");
+        assertEquals(MemcachedTranscoder.STRING_FLAG, data.getFlag());
+        assertEquals("text", transcoder.decode(data));
+
+        var bytes = new byte[]{1, 2, 3};
+        data = transcoder.encode(bytes);
+        assertEquals(RawValueCodec.FLAG, data.getFlag());
+        assertArrayEquals(bytes, (byte[]) transcoder.decode(data));
+    }
+
+    @Test
+    public void testEmptyStringsAndPlaceholders() {
+        var transcoder = new MemcachedTranscoder();
+        transcoder.setEmptyItemsAsMissing(true);
+
+        var data = transcoder.encode("");
+        assertEquals(MemcachedTranscoder.EMPTY_STRING_FLAG, data.getFlag());
+        assertEquals("", transcoder.decode(data));
+
+        // Empty items without flags are placeholders of the meta protocol
+        assertNull(transcoder.decode(new CachedData(0, new byte[0])));
+
+        transcoder.setEmptyItemsAsMissing(false);
+        assertEquals("", transcoder.decode(new CachedData(0, new byte[0])));
+    }
+
+    @Test
+    public void testDecodeByWriterCodec() {
+        var data = new MemcachedTranscoder(new BinaryValueCodec()).encode(List.of("a", "b"));
+
+        var result = new MemcachedTranscoder(new JsonValueCodec()).decode(data);
+        assertEquals(List.of("a", "b"), result);
+    }
+
+    @Test
+    public void testCreateCodec() {
+        assertTrue(MemcachedTranscoder.createCodec("json") instanceof JsonValueCodec);
+        assertTrue(MemcachedTranscoder.createCodec("binary") instanceof BinaryValueCodec);
+        assertTrue(MemcachedTranscoder.createCodec("raw") instanceof RawValueCodec);
+        assertTrue(MemcachedTranscoder.createCodec(BinaryValueCodec.class.getName()) instanceof BinaryValueCodec);
+        assertNull(MemcachedTranscoder.createCodec("unknown"));
+    }
+
+    @Test
+    public void testCompression() {
+        var transcoder = new MemcachedTranscoder(new BinaryValueCodec());
+        transcoder.setCompressionMode(CompressionMode.ZIP);
+        transcoder.setCompressionThreshold(1024);
+
+        var smallValue = "small";
+        var data = transcoder.encode(smallValue);
+        assertEquals(0, data.getFlag() & MemcachedTranscoder.DEFLATE_FLAG);
+        assertEquals(smallValue, transcoder.decode(data));
+
+        var largeValue = "large value ".repeat(1000);
+        data = transcoder.encode(largeValue);
+        assertTrue((data.getFlag() & MemcachedTranscoder.DEFLATE_FLAG) != 0);
+        assertTrue(data.getData().length < largeValue.length());
+        assertEquals(largeValue, transcoder.decode(data));
+
+        transcoder.setCompressionMode(CompressionMode.GZIP);
+        var largeList = List.of(largeValue, largeValue);
+        data = transcoder.encode(largeList);
+        assertTrue((data.getFlag() & MemcachedTranscoder.GZIP_FLAG) != 0);
+        assertEquals(largeList, transcoder.decode(data));
+
+        // Uncompressed transcoder still reads compressed values
+        assertEquals(largeList, new MemcachedTranscoder().decode(data));
+    }
+
+    @Test
+    public void testSoftExpiration() {
+        var transcoder = new MemcachedTranscoder(new BinaryValueCodec());
+
+        var data = transcoder.encode(new CachedValue(List.of(1, 2), 12345L));
+        assertTrue((data.getFlag() & MemcachedTranscoder.SOFT_EXPIRATION_FLAG) != 0);
+
+        var result = transcoder.decode(data);
+        assertTrue(result instanceof CachedValue);
+        assertEquals(12345L, ((CachedValue) result).getSoftExpiration());
+        assertEquals(List.of(1, 2), ((CachedValue) result).getValue());
+        assertTrue(((CachedValue) result).isStale());
+    }
+
+    @Test
+    public void testCounters() {
+        var names = new ArrayList<String>();
+        var sizes = new ArrayList<Float>();
+        var counters = new CompositeCounters() {
+            @Override
+            public CounterTiming beginTiming(String name) {
+                names.add(name);
+                return super.beginTiming(name);
+            }
+
+            @Override
+            public void stats(String name, float value) {
+                names.add(name);
+                sizes.add(value);
+            }
+        };
+
+        var transcoder = new MemcachedTranscoder();
+        transcoder.setCounters(counters);
+
+        var data = transcoder.encode(new CachedValue("value1", 1000));
+        assertEquals("value1", ((CachedValue) transcoder.decode(data)).getValue());
+
+        // Nested values are measured once
+        assertEquals(List.of("memcached.encode.time", "memcached.value_size", "memcached.decode.time"), names);
+        assertEquals(List.of((float) data.getData().length), sizes);
+    }
+}
@@ -0,0 +1,110 @@
+package org.pipservices3.memcached.connect;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.memcached.cache.MemcachedCache;
+import org.pipservices3.memcached.embedded.EmbeddedMemcachedServer;
+import org.pipservices3.memcached.lock.MemcachedLock;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MemcachedClientRegistryTest {
+    EmbeddedMemcachedServer _server;
+
+    @Before
+    public void setup() throws IOException {
+        _server = new EmbeddedMemcachedServer();
+        _server.start();
+    }
+
+    @After
+    public void teardown() {
+        _server.stop();
+    }
+
+    private ConfigParams createConfig(Object... tuples) {
+        var config = ConfigParams.fromTuples(
+                "connection.host", _server.getHost(),
+                "connection.port", _server.getPort(),
+                "options.pool_size", 2
+        );
+        for (var index = 0; index + 1 < tuples.length; index += 2)
+            config.put(String.valueOf(tuples[index]), String.valueOf(tuples[index + 1]));
+        return config;
+    }
+
+    @Test
+    public void testComponentsShareClient() throws ApplicationException, InterruptedException {
+        var clientCount = MemcachedClientRegistry.getClientCount();
+
+        var cache1 = new MemcachedCache();
+        cache1.configure(createConfig());
+        cache1.open(null);
+
+        var cache2 = new MemcachedCache();
+        cache2.configure(createConfig());
+        cache2.open(null);
+
+        var lock = new MemcachedLock();
+        lock.configure(createConfig());
+        lock.open(null);
+
+        try {
+            assertEquals(clientCount + 1, MemcachedClientRegistry.getClientCount());
+
+            cache1.store(null, "shared1", "value1", 5000);
+            assertEquals("value1", cache2.retrieve(null, "shared1"));
+            assertTrue(lock.tryAcquireLock(null, "shared_lock1", 5000));
+
+            // All components use connections of a single pool
+            Thread.sleep(200);
+            assertEquals(2, _server.getConnectionCount());
+
+            // The client stays open until the last component is closed
+            cache1.close(null);
+            assertEquals("value1", cache2.retrieve(null, "shared1"));
+            cache2.close(null);
+            lock.releaseLock(null, "shared_lock1");
+        } finally {
+            if (cache1.isOpen())
+                cache1.close(null);
+            if (cache2.isOpen())
+                cache2.close(null);
+            lock.close(null);
+        }
+
+        assertEquals(clientCount, MemcachedClientRegistry.getClientCount());
+    }
+
+    @Test
+    public void testDifferentOptionsUseDifferentClients() throws ApplicationException {
+        var clientCount = MemcachedClientRegistry.getClientCount();
+
+        var cache1 = new MemcachedCache();
+        cache1.configure(createConfig());
+        cache1.open(null);
+
+        var cache2 = new MemcachedCache();
+        cache2.configure(createConfig("options.distribution", "ketama"));
+        cache2.open(null);
+
+        var cache3 = new MemcachedCache();
+        cache3.configure(createConfig("options.shared_client", false));
+        cache3.open(null);
+
+        try {
+            assertEquals(clientCount + 2, MemcachedClientRegistry.getClientCount());
+        } finally {
+            cache1.close(null);
+            cache2.close(null);
+            cache3.close(null);
+        }
+
+        assertEquals(clientCount, MemcachedClientRegistry.getClientCount());
+    }
+}
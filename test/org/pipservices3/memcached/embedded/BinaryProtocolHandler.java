@@ -0,0 +1,309 @@
+package org.pipservices3.memcached.embedded;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Handler of memcached binary protocol.
+ * <p>
+ * Supported opcodes: get, getq, getk, getkq, set, add, replace, append, prepend (with quiet variants),
+ * delete, increment, decrement (with quiet variants), touch, gat, gatq, flush, noop, version, stat and quit.
+ */
+class BinaryProtocolHandler implements ProtocolHandler {
+    static final byte REQUEST_MAGIC = (byte) 0x80;
+    static final byte RESPONSE_MAGIC = (byte) 0x81;
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final int OP_GET = 0x00;
+    private static final int OP_SET = 0x01;
+    private static final int OP_ADD = 0x02;
+    private static final int OP_REPLACE = 0x03;
+    private static final int OP_DELETE = 0x04;
+    private static final int OP_INCREMENT = 0x05;
+    private static final int OP_DECREMENT = 0x06;
+    private static final int OP_QUIT = 0x07;
+    private static final int OP_FLUSH = 0x08;
+    private static final int OP_GETQ = 0x09;
+    private static final int OP_NOOP = 0x0a;
+    private static final int OP_VERSION = 0x0b;
+    private static final int OP_GETK = 0x0c;
+    private static final int OP_GETKQ = 0x0d;
+    private static final int OP_APPEND = 0x0e;
+    private static final int OP_PREPEND = 0x0f;
+    private static final int OP_STAT = 0x10;
+    private static final int OP_SETQ = 0x11;
+    private static final int OP_ADDQ = 0x12;
+    private static final int OP_REPLACEQ = 0x13;
+    private static final int OP_DELETEQ = 0x14;
+    private static final int OP_INCREMENTQ = 0x15;
+    private static final int OP_DECREMENTQ = 0x16;
+    private static final int OP_QUITQ = 0x17;
+    private static final int OP_FLUSHQ = 0x18;
+    private static final int OP_APPENDQ = 0x19;
+    private static final int OP_PREPENDQ = 0x1a;
+    private static final int OP_TOUCH = 0x1c;
+    private static final int OP_GAT = 0x1d;
+    private static final int OP_GATQ = 0x1e;
+
+    private static final short STATUS_OK = 0x00;
+    private static final short STATUS_KEY_NOT_FOUND = 0x01;
+    private static final short STATUS_KEY_EXISTS = 0x02;
+    private static final short STATUS_VALUE_TOO_LARGE = 0x03;
+    private static final short STATUS_INVALID_ARGUMENTS = 0x04;
+    private static final short STATUS_NOT_STORED = 0x05;
+    private static final short STATUS_NON_NUMERIC = 0x06;
+    private static final short STATUS_UNKNOWN_COMMAND = 0x81;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final class Request {
+        int opcode;
+        int opaque;
+        long cas;
+        byte[] extras;
+        String key;
+        byte[] keyBytes;
+        byte[] value;
+    }
+
+    private final EmbeddedMemcachedStore _store;
+    private final int _maxItemSize;
+
+    BinaryProtocolHandler(EmbeddedMemcachedStore store, int maxItemSize) {
+        _store = store;
+        _maxItemSize = maxItemSize;
+    }
+
+    @Override
+    public boolean process(ByteBuffer input, ByteArrayOutputStream output) {
+        while (input.remaining() >= HEADER_SIZE) {
+            var start = input.position();
+            if (input.get(start) != REQUEST_MAGIC) {
+                writeResponse(output, 0, STATUS_INVALID_ARGUMENTS, 0, 0, EMPTY, EMPTY, EMPTY);
+                return false;
+            }
+
+            var keyLength = input.getShort(start + 2) & 0xffff;
+            var extrasLength = input.get(start + 4) & 0xff;
+            var bodyLength = input.getInt(start + 8);
+            if (bodyLength < 0 || keyLength + extrasLength > bodyLength) {
+                writeResponse(output, 0, STATUS_INVALID_ARGUMENTS, 0, 0, EMPTY, EMPTY, EMPTY);
+                return false;
+            }
+            if (input.remaining() < HEADER_SIZE + bodyLength)
+                return true;
+
+            var request = new Request();
+            request.opcode = input.get(start + 1) & 0xff;
+            request.opaque = input.getInt(start + 12);
+            request.cas = input.getLong(start + 16);
+
+            input.position(start + HEADER_SIZE);
+            request.extras = new byte[extrasLength];
+            input.get(request.extras);
+            request.keyBytes = new byte[keyLength];
+            input.get(request.keyBytes);
+            request.key = new String(request.keyBytes, StandardCharsets.UTF_8);
+            request.value = new byte[bodyLength - keyLength - extrasLength];
+            input.get(request.value);
+
+            if (!processRequest(request, output))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean processRequest(Request request, ByteArrayOutputStream output) {
+        var opcode = request.opcode;
+        var extras = ByteBuffer.wrap(request.extras);
+
+        switch (opcode) {
+            case OP_GET:
+            case OP_GETQ:
+            case OP_GETK:
+            case OP_GETKQ:
+            case OP_GAT:
+            case OP_GATQ: {
+                var quiet = opcode == OP_GETQ || opcode == OP_GETKQ || opcode == OP_GATQ;
+                var withKey = opcode == OP_GETK || opcode == OP_GETKQ;
+                EmbeddedMemcachedStore.Item item;
+                if (opcode == OP_GAT || opcode == OP_GATQ) {
+                    if (request.extras.length < 4)
+                        return writeError(output, request, STATUS_INVALID_ARGUMENTS);
+                    item = _store.touch(request.key, Integer.toUnsignedLong(extras.getInt()));
+                } else {
+                    item = _store.get(request.key);
+                }
+
+                if (item == null) {
+                    if (!quiet)
+                        writeResponse(output, opcode, STATUS_KEY_NOT_FOUND, request.opaque, 0,
+                                EMPTY, withKey ? request.keyBytes : EMPTY, "Not found".getBytes(StandardCharsets.US_ASCII));
+                    return true;
+                }
+
+                var flags = ByteBuffer.allocate(4).putInt(item.flags).array();
+                writeResponse(output, opcode, STATUS_OK, request.opaque, item.cas,
+                        flags, withKey ? request.keyBytes : EMPTY, item.data);
+                return true;
+            }
+            case OP_SET:
+            case OP_SETQ:
+            case OP_ADD:
+            case OP_ADDQ:
+            case OP_REPLACE:
+            case OP_REPLACEQ: {
+                if (request.extras.length < 8)
+                    return writeError(output, request, STATUS_INVALID_ARGUMENTS);
+                if (request.value.length > _maxItemSize)
+                    return writeError(output, request, STATUS_VALUE_TOO_LARGE);
+
+                var flags = extras.getInt();
+                var exptime = Integer.toUnsignedLong(extras.getInt());
+                var mode = opcode == OP_SET || opcode == OP_SETQ ? EmbeddedMemcachedStore.Mode.SET
+                        : opcode == OP_ADD || opcode == OP_ADDQ ? EmbeddedMemcachedStore.Mode.ADD
+                        : EmbeddedMemcachedStore.Mode.REPLACE;
+                if (mode == EmbeddedMemcachedStore.Mode.SET && request.cas != 0)
+                    mode = EmbeddedMemcachedStore.Mode.CAS;
+
+                var result = _store.store(mode, request.key, flags, exptime, request.value, request.cas);
+                return writeStoreResult(output, request, result, opcode == OP_SETQ || opcode == OP_ADDQ || opcode == OP_REPLACEQ);
+            }
+            case OP_APPEND:
+            case OP_APPENDQ:
+            case OP_PREPEND:
+            case OP_PREPENDQ: {
+                var mode = opcode == OP_APPEND || opcode == OP_APPENDQ
+                        ? EmbeddedMemcachedStore.Mode.APPEND : EmbeddedMemcachedStore.Mode.PREPEND;
+                var result = _store.store(mode, request.key, 0, 0, request.value, request.cas);
+                return writeStoreResult(output, request, result, opcode == OP_APPENDQ || opcode == OP_PREPENDQ);
+            }
+            case OP_DELETE:
+            case OP_DELETEQ: {
+                var status = _store.delete(request.key, request.cas);
+                if (status == EmbeddedMemcachedStore.Status.STORED) {
+                    if (opcode == OP_DELETE)
+                        writeResponse(output, opcode, STATUS_OK, request.opaque, 0, EMPTY, EMPTY, EMPTY);
+                    return true;
+                }
+                return writeError(output, request,
+                        status == EmbeddedMemcachedStore.Status.EXISTS ? STATUS_KEY_EXISTS : STATUS_KEY_NOT_FOUND);
+            }
+            case OP_INCREMENT:
+            case OP_INCREMENTQ:
+            case OP_DECREMENT:
+            case OP_DECREMENTQ: {
+                if (request.extras.length < 20)
+                    return writeError(output, request, STATUS_INVALID_ARGUMENTS);
+
+                var delta = extras.getLong();
+                var initial = extras.getLong();
+                var exptime = Integer.toUnsignedLong(extras.getInt());
+                var decrement = opcode == OP_DECREMENT || opcode == OP_DECREMENTQ;
+                // Expiration 0xffffffff means the item shall not be created
+                var result = _store.incr(request.key, delta, decrement,
+                        exptime == 0xffffffffL ? null : initial, exptime == 0xffffffffL ? 0 : exptime);
+
+                if (result.status == EmbeddedMemcachedStore.Status.NOT_FOUND)
+                    return writeError(output, request, STATUS_KEY_NOT_FOUND);
+                if (result.status == EmbeddedMemcachedStore.Status.NON_NUMERIC)
+                    return writeError(output, request, STATUS_NON_NUMERIC);
+
+                if (opcode == OP_INCREMENT || opcode == OP_DECREMENT) {
+                    var value = Long.parseUnsignedLong(new String(result.item.data, StandardCharsets.US_ASCII));
+                    writeResponse(output, opcode, STATUS_OK, request.opaque, result.item.cas,
+                            EMPTY, EMPTY, ByteBuffer.allocate(8).putLong(value).array());
+                }
+                return true;
+            }
+            case OP_TOUCH: {
+                if (request.extras.length < 4)
+                    return writeError(output, request, STATUS_INVALID_ARGUMENTS);
+                var item = _store.touch(request.key, Integer.toUnsignedLong(extras.getInt()));
+                if (item == null)
+                    return writeError(output, request, STATUS_KEY_NOT_FOUND);
+                writeResponse(output, opcode, STATUS_OK, request.opaque, item.cas, EMPTY, EMPTY, EMPTY);
+                return true;
+            }
+            case OP_FLUSH:
+            case OP_FLUSHQ:
+                _store.flush();
+                if (opcode == OP_FLUSH)
+                    writeResponse(output, opcode, STATUS_OK, request.opaque, 0, EMPTY, EMPTY, EMPTY);
+                return true;
+            case OP_NOOP:
+                writeResponse(output, opcode, STATUS_OK, request.opaque, 0, EMPTY, EMPTY, EMPTY);
+                return true;
+            case OP_VERSION:
+                writeResponse(output, opcode, STATUS_OK, request.opaque, 0, EMPTY, EMPTY,
+                        EmbeddedMemcachedServer.VERSION.getBytes(StandardCharsets.US_ASCII));
+                return true;
+            case OP_STAT: {
+                var stats = _store.getStats(request.key);
+                if (stats == null) {
+                    writeResponse(output, opcode, STATUS_KEY_NOT_FOUND, request.opaque, 0, EMPTY, EMPTY, EMPTY);
+                    return true;
+                }
+                for (var stat : stats.entrySet()) {
+                    writeResponse(output, opcode, STATUS_OK, request.opaque, 0, EMPTY,
+                            stat.getKey().getBytes(StandardCharsets.US_ASCII),
+                            stat.getValue().getBytes(StandardCharsets.US_ASCII));
+                }
+                writeResponse(output, opcode, STATUS_OK, request.opaque, 0, EMPTY, EMPTY, EMPTY);
+                return true;
+            }
+            case OP_QUIT:
+                writeResponse(output, opcode, STATUS_OK, request.opaque, 0, EMPTY, EMPTY, EMPTY);
+                return false;
+            case OP_QUITQ:
+                return false;
+            default:
+                writeResponse(output, opcode, STATUS_UNKNOWN_COMMAND, request.opaque, 0, EMPTY, EMPTY,
+                        "Unknown command".getBytes(StandardCharsets.US_ASCII));
+                return true;
+        }
+    }
+
+    private boolean writeStoreResult(ByteArrayOutputStream output, Request request,
+                                     EmbeddedMemcachedStore.Result result, boolean quiet) {
+        switch (result.status) {
+            case STORED:
+                if (!quiet)
+                    writeResponse(output, request.opcode, STATUS_OK, request.opaque, result.item.cas, EMPTY, EMPTY, EMPTY);
+                return true;
+            case EXISTS:
+                return writeError(output, request, STATUS_KEY_EXISTS);
+            case NOT_FOUND:
+                return writeError(output, request, STATUS_KEY_NOT_FOUND);
+            default:
+                return writeError(output, request, STATUS_NOT_STORED);
+        }
+    }
+
+    private boolean writeError(ByteArrayOutputStream output, Request request, short status) {
+        // Errors are returned for quiet commands as well
+        writeResponse(output, request.opcode, status, request.opaque, 0, EMPTY, EMPTY, EMPTY);
+        return true;
+    }
+
+    private static void writeResponse(ByteArrayOutputStream output, int opcode, short status, int opaque,
+                                      long cas, byte[] extras, byte[] key, byte[] value) {
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(RESPONSE_MAGIC);
+        header.put((byte) opcode);
+        header.putShort((short) key.length);
+        header.put((byte) extras.length);
+        header.put((byte) 0);
+        header.putShort(status);
+        header.putInt(extras.length + key.length + value.length);
+        header.putInt(opaque);
+        header.putLong(cas);
+
+        output.write(header.array(), 0, HEADER_SIZE);
+        output.write(extras, 0, extras.length);
+        output.write(key, 0, key.length);
+        output.write(value, 0, value.length);
+    }
+}
@@ -0,0 +1,416 @@
+package org.pipservices3.memcached.embedded;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lightweight in-JVM memcached server for hermetic tests and benchmarks.
+ * <p>
+ * The server speaks memcached text and binary protocols. The protocol is detected
+ * by the first byte received on each connection. It keeps items in memory,
+ * supports expiration and cas, and never evicts items.
+ * <p>
+ * Connections are served by a small number of non-blocking I/O threads,
+ * so the server keeps up with the client under load.
+ * <p>
+ * ### Example ###
+ * <pre>
+ * {@code
+ * var server = new EmbeddedMemcachedServer();
+ * server.start();
+ *
+ * var cache = new MemcachedCache();
+ * cache.configure(ConfigParams.fromTuples(
+ *     "connection.host", server.getHost(),
+ *     "connection.port", server.getPort()
+ * ));
+ * cache.open("123");
+ * ...
+ * cache.close("123");
+ * server.stop();
+ * }
+ * </pre>
+ */
+public class EmbeddedMemcachedServer implements AutoCloseable {
+    /**
+     * Version reported by the server.
+     */
+    public static final String VERSION = "1.6.21-embedded";
+
+    private static final int DEFAULT_MAX_ITEM_SIZE = 1024 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    private final String _host;
+    private final int _requestedPort;
+    private final int _ioThreads;
+    private final int _maxItemSize;
+    private final EmbeddedMemcachedStore _store = new EmbeddedMemcachedStore();
+
+    private ServerSocketChannel _serverChannel;
+    private Thread _acceptThread;
+    private final List<Worker> _workers = new ArrayList<>();
+    private final AtomicInteger _nextWorker = new AtomicInteger();
+    private volatile boolean _running = false;
+    private volatile long _responseDelay = 0;
+
+    /**
+     * Creates a new instance of the server that listens on a random free port.
+     */
+    public EmbeddedMemcachedServer() {
+        this(0);
+    }
+
+    /**
+     * Creates a new instance of the server.
+     *
+     * @param port a port to listen on or 0 to pick a random free port.
+     */
+    public EmbeddedMemcachedServer(int port) {
+        this("127.0.0.1", port, Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors() / 2)),
+                DEFAULT_MAX_ITEM_SIZE);
+    }
+
+    /**
+     * Creates a new instance of the server.
+     *
+     * @param host        a host to listen on.
+     * @param port        a port to listen on or 0 to pick a random free port.
+     * @param ioThreads   a number of I/O threads that serve connections.
+     * @param maxItemSize a maximum size of stored items in bytes.
+     */
+    public EmbeddedMemcachedServer(String host, int port, int ioThreads, int maxItemSize) {
+        _host = host;
+        _requestedPort = port;
+        _ioThreads = Math.max(1, ioThreads);
+        _maxItemSize = maxItemSize;
+    }
+
+    /**
+     * Gets the host the server listens on.
+     *
+     * @return the host name or address.
+     */
+    public String getHost() {
+        return _host;
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the bound port or the requested port if the server is not started.
+     */
+    public int getPort() {
+        try {
+            if (_serverChannel != null)
+                return ((InetSocketAddress) _serverChannel.getLocalAddress()).getPort();
+        } catch (IOException ex) {
+            // Fall back to the requested port
+        }
+        return _requestedPort;
+    }
+
+    /**
+     * Checks if the server is running.
+     *
+     * @return <code>true</code> if the server is started and <code>false</code> otherwise.
+     */
+    public boolean isRunning() {
+        return _running;
+    }
+
+    /**
+     * Starts the server.
+     *
+     * @throws IOException when the server fails to bind the port.
+     */
+    public synchronized void start() throws IOException {
+        if (_running)
+            return;
+
+        _serverChannel = ServerSocketChannel.open();
+        _serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        _serverChannel.bind(new InetSocketAddress(_host, _requestedPort), 1024);
+        _running = true;
+
+        for (var index = 0; index < _ioThreads; index++) {
+            var worker = new Worker(Selector.open());
+            var thread = new Thread(worker, "embedded-memcached-io-" + index);
+            thread.setDaemon(true);
+            worker.thread = thread;
+            _workers.add(worker);
+            thread.start();
+        }
+
+        _acceptThread = new Thread(this::acceptLoop, "embedded-memcached-accept");
+        _acceptThread.setDaemon(true);
+        _acceptThread.start();
+    }
+
+    /**
+     * Stops the server and closes all client connections.
+     */
+    public synchronized void stop() {
+        if (!_running)
+            return;
+
+        _running = false;
+        try {
+            _serverChannel.close();
+        } catch (IOException ex) {
+            // Ignore
+        }
+
+        for (var worker : _workers)
+            worker.close();
+        try {
+            _acceptThread.join(1000);
+            for (var worker : _workers)
+                worker.thread.join(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        _workers.clear();
+        _serverChannel = null;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Sets a delay before commands are processed to simulate a slow server.
+     * The delay blocks the I/O thread, so it applies to all connections it serves.
+     *
+     * @param delay a delay in milliseconds or 0 to respond immediately.
+     */
+    public void setResponseDelay(long delay) {
+        _responseDelay = delay;
+    }
+
+    /**
+     * Removes all stored items.
+     */
+    public void flush() {
+        _store.flush();
+    }
+
+    /**
+     * Gets the number of stored items that are not expired.
+     *
+     * @return the number of items.
+     */
+    public long getItemCount() {
+        return _store.countItems();
+    }
+
+    /**
+     * Gets the number of currently open client connections.
+     *
+     * @return the number of connections.
+     */
+    public long getConnectionCount() {
+        return _store.currConnections.get();
+    }
+
+    private void acceptLoop() {
+        while (_running) {
+            try {
+                var channel = _serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                _store.currConnections.incrementAndGet();
+                _store.totalConnections.incrementAndGet();
+
+                var worker = _workers.get(Math.floorMod(_nextWorker.getAndIncrement(), _workers.size()));
+                worker.register(channel);
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                if (!_running)
+                    return;
+            }
+        }
+    }
+
+    private ProtocolHandler createHandler(byte firstByte) {
+        if (firstByte == BinaryProtocolHandler.REQUEST_MAGIC)
+            return new BinaryProtocolHandler(_store, _maxItemSize);
+        return new TextProtocolHandler(_store, _maxItemSize);
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private ByteBuffer input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        private final Queue<ByteBuffer> pending = new ArrayDeque<>();
+        private ProtocolHandler handler;
+        private boolean closing = false;
+        private boolean closed = false;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            if (!input.hasRemaining()) {
+                var larger = ByteBuffer.allocate(input.capacity() * 2);
+                input.flip();
+                larger.put(input);
+                input = larger;
+            }
+
+            var count = channel.read(input);
+            if (count < 0) {
+                close(key);
+                return;
+            }
+            if (count == 0)
+                return;
+            _store.bytesRead.addAndGet(count);
+
+            var delay = _responseDelay;
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            input.flip();
+            if (handler == null)
+                handler = createHandler(input.get(0));
+
+            var open = handler.process(input, output);
+            input.compact();
+
+            if (output.size() > 0) {
+                pending.add(ByteBuffer.wrap(output.toByteArray()));
+                output.reset();
+            }
+            if (!open)
+                closing = true;
+
+            write(key);
+        }
+
+        private void write(SelectionKey key) throws IOException {
+            while (!pending.isEmpty()) {
+                var buffer = pending.peek();
+                var count = channel.write(buffer);
+                _store.bytesWritten.addAndGet(count);
+                if (buffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                pending.poll();
+            }
+
+            if (closing) {
+                close(key);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void close(SelectionKey key) {
+            if (closed)
+                return;
+
+            closed = true;
+            if (key != null)
+                key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // Ignore
+            }
+            _store.currConnections.decrementAndGet();
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+        private Thread thread;
+
+        private Worker(Selector selector) {
+            this.selector = selector;
+        }
+
+        private void register(SocketChannel channel) {
+            registrations.add(channel);
+            selector.wakeup();
+        }
+
+        private void close() {
+            // Connections are closed by the worker thread when it stops
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (_running) {
+                    selector.select(1000);
+                    if (!_running)
+                        break;
+
+                    SocketChannel channel;
+                    while ((channel = registrations.poll()) != null) {
+                        try {
+                            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                        } catch (ClosedChannelException ex) {
+                            _store.currConnections.decrementAndGet();
+                        }
+                    }
+
+                    var keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        var key = keys.next();
+                        keys.remove();
+
+                        var connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable())
+                                connection.read(key);
+                            if (key.isValid() && key.isWritable())
+                                connection.write(key);
+                        } catch (IOException ex) {
+                            connection.close(key);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException ex) {
+                // Stop the worker
+            } finally {
+                for (var key : selector.keys()) {
+                    if (key.attachment() instanceof Connection)
+                        ((Connection) key.attachment()).close(key);
+                }
+                try {
+                    selector.close();
+                } catch (IOException ex) {
+                    // Ignore
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package org.pipservices3.memcached.embedded;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class EmbeddedMemcachedServerTest {
+    EmbeddedMemcachedServer _server;
+    Socket _socket;
+    DataInputStream _input;
+    OutputStream _output;
+
+    @Before
+    public void setup() throws IOException {
+        _server = new EmbeddedMemcachedServer();
+        _server.start();
+
+        _socket = new Socket(_server.getHost(), _server.getPort());
+        _socket.setSoTimeout(5000);
+        _input = new DataInputStream(_socket.getInputStream());
+        _output = _socket.getOutputStream();
+    }
+
+    @After
+    public void teardown() throws IOException {
+        _socket.close();
+        _server.stop();
+    }
+
+    @Test
+    public void testTextStorageCommands() throws IOException {
+        assertEquals("STORED", command("set key1 5 0 6\r\nvalue1"));
+        assertEquals("NOT_STORED", command("add key1 0 0 6\r\nvalue2"));
+        assertEquals("STORED", command("add key2 0 0 6\r\nvalue2"));
+        assertEquals("STORED", command("replace key2 0 0 6\r\nvalue3"));
+        assertEquals("NOT_STORED", command("replace key3 0 0 6\r\nvalue3"));
+        assertEquals("STORED", command("append key2 0 0 1\r\n!"));
+
+        send("get key1 key2 key3\r\n");
+        assertEquals("VALUE key1 5 6", readLine());
+        assertEquals("value1", readLine());
+        assertEquals("VALUE key2 0 7", readLine());
+        assertEquals("value3!", readLine());
+        assertEquals("END", readLine());
+
+        assertEquals("DELETED", command("delete key1"));
+        assertEquals("NOT_FOUND", command("delete key1"));
+
+        send("get key1\r\n");
+        assertEquals("END", readLine());
+    }
+
+    @Test
+    public void testTextCas() throws IOException {
+        assertEquals("STORED", command("set key1 0 0 6\r\nvalue1"));
+
+        send("gets key1\r\n");
+        var header = readLine().split(" ");
+        readLine();
+        readLine();
+        var cas = header[4];
+
+        assertEquals("STORED", command("cas key1 0 0 6 " + cas + "\r\nvalue2"));
+        assertEquals("EXISTS", command("cas key1 0 0 6 " + cas + "\r\nvalue3"));
+        assertEquals("NOT_FOUND", command("cas key2 0 0 6 " + cas + "\r\nvalue3"));
+    }
+
+    @Test
+    public void testTextIncrementAndTouch() throws IOException, InterruptedException {
+        assertEquals("NOT_FOUND", command("incr counter 1"));
+        assertEquals("STORED", command("set counter 0 0 2\r\n10"));
+        assertEquals("15", command("incr counter 5"));
+        assertEquals("0", command("decr counter 20"));
+
+        assertEquals("STORED", command("set text 0 0 3\r\nabc"));
+        assertEquals("CLIENT_ERROR cannot increment or decrement non-numeric value", command("incr text 1"));
+
+        assertEquals("TOUCHED", command("touch counter 1"));
+        assertEquals("NOT_FOUND", command("touch missing 1"));
+
+        Thread.sleep(1500);
+
+        send("get counter\r\n");
+        assertEquals("END", readLine());
+    }
+
+    @Test
+    public void testTextNoreplyAndPipelining() throws IOException {
+        send("set key1 0 0 1 noreply\r\nA\r\nset key2 0 0 1 noreply\r\nB\r\nget key1 key2\r\nversion\r\n");
+
+        assertEquals("VALUE key1 0 1", readLine());
+        assertEquals("A", readLine());
+        assertEquals("VALUE key2 0 1", readLine());
+        assertEquals("B", readLine());
+        assertEquals("END", readLine());
+        assertEquals("VERSION " + EmbeddedMemcachedServer.VERSION, readLine());
+
+        assertEquals("OK", command("flush_all"));
+        assertEquals(0, _server.getItemCount());
+        assertEquals("ERROR", command("unknown"));
+    }
+
+    @Test
+    public void testBinaryCommands() throws IOException {
+        var extras = ByteBuffer.allocate(8).putInt(7).putInt(0).array();
+        var response = binary(0x01, extras, "key1", "value1".getBytes(StandardCharsets.US_ASCII), 0);
+        assertEquals(0, response.status);
+        var cas = response.cas;
+        assertTrue(cas != 0);
+
+        response = binary(0x00, new byte[0], "key1", new byte[0], 0);
+        assertEquals(0, response.status);
+        assertEquals(7, ByteBuffer.wrap(response.extras).getInt());
+        assertEquals("value1", new String(response.value, StandardCharsets.US_ASCII));
+
+        response = binary(0x02, extras, "key1", "value2".getBytes(StandardCharsets.US_ASCII), 0);
+        assertEquals(5, response.status);
+
+        response = binary(0x01, extras, "key1", "value3".getBytes(StandardCharsets.US_ASCII), cas + 100);
+        assertEquals(2, response.status);
+
+        var counterExtras = ByteBuffer.allocate(20).putLong(5).putLong(10).putInt(0).array();
+        response = binary(0x05, counterExtras, "counter", new byte[0], 0);
+        assertEquals(0, response.status);
+        assertEquals(10, ByteBuffer.wrap(response.value).getLong());
+        response = binary(0x05, counterExtras, "counter", new byte[0], 0);
+        assertEquals(15, ByteBuffer.wrap(response.value).getLong());
+
+        response = binary(0x04, new byte[0], "key1", new byte[0], 0);
+        assertEquals(0, response.status);
+        response = binary(0x00, new byte[0], "key1", new byte[0], 0);
+        assertEquals(1, response.status);
+
+        response = binary(0x0b, new byte[0], "", new byte[0], 0);
+        assertEquals(EmbeddedMemcachedServer.VERSION, new String(response.value, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testBinaryQuietGet() throws IOException {
+        var extras = ByteBuffer.allocate(8).putInt(0).putInt(0).array();
+        assertEquals(0, binary(0x01, extras, "key1", "A".getBytes(StandardCharsets.US_ASCII), 0).status);
+
+        // Quiet gets respond only to hits and are terminated by noop
+        send(request(0x0d, new byte[0], "key1", new byte[0], 0));
+        send(request(0x0d, new byte[0], "missing", new byte[0], 0));
+        send(request(0x0a, new byte[0], "", new byte[0], 0));
+
+        var response = readBinary();
+        assertEquals(0x0d, response.opcode);
+        assertEquals("key1", new String(response.key, StandardCharsets.US_ASCII));
+        assertEquals("A", new String(response.value, StandardCharsets.US_ASCII));
+
+        response = readBinary();
+        assertEquals(0x0a, response.opcode);
+    }
+
+    private static class BinaryResponse {
+        int opcode;
+        int status;
+        long cas;
+        byte[] extras;
+        byte[] key;
+        byte[] value;
+    }
+
+    @Test
+    public void testTextStats() throws IOException {
+        assertEquals("STORED", command("set key1 0 0 6\r\nvalue1"));
+        assertEquals("STORED", command("set key2 0 0 2000\r\n" + "x".repeat(2000)));
+
+        var stats = stats("stats");
+        assertEquals("2", stats.get("curr_items"));
+        assertEquals("2", stats.get("total_items"));
+
+        // Small and large items are placed into different slab classes
+        var slabs = stats("stats slabs");
+        assertEquals("2", slabs.get("active_slabs"));
+        assertEquals("96", slabs.get("1:chunk_size"));
+        assertEquals("1", slabs.get("1:used_chunks"));
+
+        var items = stats("stats items");
+        assertEquals("1", items.get("items:1:number"));
+        assertEquals(2, items.keySet().stream().filter(key -> key.endsWith(":number")).count());
+
+        assertEquals("ERROR", command("stats unknown"));
+    }
+
+    @Test
+    public void testMetaCommands() throws IOException {
+        assertEquals("HD", command("ms key1 6 T60 F5\r\nvalue1"));
+        assertEquals("NS", command("ms key1 6 ME\r\nvalue2"));
+
+        assertEquals("VA 6 f5 t60", command("mg key1 v f t"));
+        assertEquals("value1", readLine());
+        assertEquals("EN", command("mg key2 v"));
+
+        // The first miss with vivify wins the recompute, the next ones see the win is sent
+        assertEquals("VA 0 W", command("mg key2 v N30"));
+        assertEquals("", readLine());
+        assertEquals("VA 0 Z", command("mg key2 v N30"));
+        assertEquals("", readLine());
+        assertEquals("HD", command("ms key2 6 T60\r\nvalue2"));
+        assertEquals("HD", command("mg key2"));
+
+        // Items close to expiration are recached by a single client
+        assertEquals("HD W", command("mg key1 R90"));
+        assertEquals("HD Z", command("mg key1 R90"));
+
+        // Invalidated items are served stale until they are stored again
+        assertEquals("HD", command("md key2 I"));
+        assertEquals("HD W X", command("mg key2"));
+        assertEquals("HD X Z", command("mg key2"));
+
+        assertEquals("HD Oopaque", command("md key2 Oopaque"));
+        assertEquals("NF", command("md key2"));
+        assertEquals("MN", command("mn"));
+    }
+
+    @Test
+    public void testMetaArithmetic() throws IOException {
+        assertEquals("NF", command("ma counter1"));
+
+        // Missing counters are created with the initial value
+        assertEquals("VA 2", command("ma counter1 N60 J10 D5 v"));
+        assertEquals("10", readLine());
+        assertEquals("VA 2", command("ma counter1 N60 J10 D5 v"));
+        assertEquals("15", readLine());
+        assertEquals("HD", command("ma counter1 MD D20"));
+        assertEquals("VA 1", command("ma counter1 v"));
+        assertEquals("1", readLine());
+    }
+
+    private Map<String, String> stats(String command) throws IOException {
+        send(command + "\r\n");
+        var stats = new HashMap<String, String>();
+        for (var line = readLine(); !"END".equals(line); line = readLine()) {
+            var tokens = line.split(" ");
+            stats.put(tokens[1], tokens[2]);
+        }
+        return stats;
+    }
+
+    private void send(String text) throws IOException {
+        send(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void send(byte[] data) throws IOException {
+        _output.write(data);
+        _output.flush();
+    }
+
+    private String command(String text) throws IOException {
+        send(text + "\r\n");
+        return readLine();
+    }
+
+    private String readLine() throws IOException {
+        var line = new StringBuilder();
+        int current;
+        while ((current = _input.read()) != '\r') {
+            if (current < 0)
+                throw new IOException("Connection closed");
+            line.append((char) current);
+        }
+        assertEquals('\n', _input.read());
+        return line.toString();
+    }
+
+    private static byte[] request(int opcode, byte[] extras, String key, byte[] value, long cas) {
+        var keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+        var buffer = ByteBuffer.allocate(24 + extras.length + keyBytes.length + value.length);
+        buffer.put((byte) 0x80).put((byte) opcode).putShort((short) keyBytes.length)
+                .put((byte) extras.length).put((byte) 0).putShort((short) 0)
+                .putInt(extras.length + keyBytes.length + value.length).putInt(0).putLong(cas);
+        buffer.put(extras).put(keyBytes).put(value);
+        return buffer.array();
+    }
+
+    private BinaryResponse binary(int opcode, byte[] extras, String key, byte[] value, long cas) throws IOException {
+        send(request(opcode, extras, key, value, cas));
+        return readBinary();
+    }
+
+    private BinaryResponse readBinary() throws IOException {
+        var header = new byte[24];
+        _input.readFully(header);
+        var buffer = ByteBuffer.wrap(header);
+        assertEquals((byte) 0x81, buffer.get());
+
+        var response = new BinaryResponse();
+        response.opcode = buffer.get() & 0xff;
+        var keyLength = buffer.getShort() & 0xffff;
+        var extrasLength = buffer.get() & 0xff;
+        buffer.get();
+        response.status = buffer.getShort();
+        var bodyLength = buffer.getInt();
+        buffer.getInt();
+        response.cas = buffer.getLong();
+
+        response.extras = new byte[extrasLength];
+        _input.readFully(response.extras);
+        response.key = new byte[keyLength];
+        _input.readFully(response.key);
+        response.value = new byte[bodyLength - extrasLength - keyLength];
+        _input.readFully(response.value);
+        return response;
+    }
+}
@@ -0,0 +1,603 @@
+package org.pipservices3.memcached.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory item storage with memcached semantics shared by all protocol handlers.
+ * Items expire lazily when they are accessed after their expiration time.
+ */
+class EmbeddedMemcachedStore {
+    /**
+     * Maximum relative expiration in seconds. Larger values are absolute unix times.
+     */
+    private static final long MAX_RELATIVE_EXPIRATION = 60 * 60 * 24 * 30;
+
+    static final class Item {
+        final byte[] data;
+        final int flags;
+        final long expiresAt;
+        final long cas;
+        final long lastAccess;
+        final boolean stale;
+        final boolean winSent;
+
+        Item(byte[] data, int flags, long expiresAt, long cas, long lastAccess) {
+            this(data, flags, expiresAt, cas, lastAccess, false, false);
+        }
+
+        Item(byte[] data, int flags, long expiresAt, long cas, long lastAccess, boolean stale, boolean winSent) {
+            this.data = data;
+            this.flags = flags;
+            this.expiresAt = expiresAt;
+            this.cas = cas;
+            this.lastAccess = lastAccess;
+            this.stale = stale;
+            this.winSent = winSent;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && expiresAt <= now;
+        }
+    }
+
+    enum Mode {SET, ADD, REPLACE, APPEND, PREPEND, CAS}
+
+    enum Status {STORED, NOT_STORED, EXISTS, NOT_FOUND, NON_NUMERIC}
+
+    static final class Result {
+        final Status status;
+        final Item item;
+
+        Result(Status status, Item item) {
+            this.status = status;
+            this.item = item;
+        }
+    }
+
+    static final class MetaResult {
+        final Item item;
+        final boolean win;
+        final boolean winSent;
+
+        MetaResult(Item item, boolean win, boolean winSent) {
+            this.item = item;
+            this.win = win;
+            this.winSent = winSent;
+        }
+    }
+
+    private static final int SMALLEST_CHUNK_SIZE = 96;
+    private static final double GROWTH_FACTOR = 1.25;
+    private static final int PAGE_SIZE = 1024 * 1024;
+    private static final int ITEM_HEADER_SIZE = 48;
+
+    private final ConcurrentHashMap<String, Item> _items = new ConcurrentHashMap<>();
+    private final AtomicLong _casCounter = new AtomicLong();
+    private final long _startTime = System.currentTimeMillis();
+
+    final AtomicLong cmdGet = new AtomicLong();
+    final AtomicLong cmdSet = new AtomicLong();
+    final AtomicLong cmdTouch = new AtomicLong();
+    final AtomicLong getHits = new AtomicLong();
+    final AtomicLong getMisses = new AtomicLong();
+    final AtomicLong deleteHits = new AtomicLong();
+    final AtomicLong deleteMisses = new AtomicLong();
+    final AtomicLong incrHits = new AtomicLong();
+    final AtomicLong incrMisses = new AtomicLong();
+    final AtomicLong casHits = new AtomicLong();
+    final AtomicLong casMisses = new AtomicLong();
+    final AtomicLong casBadval = new AtomicLong();
+    final AtomicLong totalItems = new AtomicLong();
+    final AtomicLong currConnections = new AtomicLong();
+    final AtomicLong totalConnections = new AtomicLong();
+    final AtomicLong bytesRead = new AtomicLong();
+    final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * Converts memcached expiration time into an absolute time in milliseconds.
+     *
+     * @param exptime expiration in seconds: 0 for none, relative up to 30 days or absolute unix time.
+     * @return the absolute expiration time or 0 for none.
+     */
+    static long toExpiresAt(long exptime) {
+        if (exptime == 0)
+            return 0;
+        if (exptime < 0)
+            return 1;
+        if (exptime <= MAX_RELATIVE_EXPIRATION)
+            return System.currentTimeMillis() + exptime * 1000;
+        return exptime * 1000;
+    }
+
+    private long nextCas() {
+        return _casCounter.incrementAndGet();
+    }
+
+    /**
+     * Gets a live item by its key.
+     *
+     * @param key an item key.
+     * @return the item or <code>null</code> if it is missing or expired.
+     */
+    Item get(String key) {
+        cmdGet.incrementAndGet();
+
+        var now = System.currentTimeMillis();
+        var item = _items.get(key);
+        if (item != null && item.isExpired(now)) {
+            _items.remove(key, item);
+            item = null;
+        }
+
+        if (item == null) {
+            getMisses.incrementAndGet();
+            return null;
+        }
+
+        getHits.incrementAndGet();
+        return item;
+    }
+
+    /**
+     * Gets a live item without updating statistics.
+     *
+     * @param key an item key.
+     * @return the item or <code>null</code> if it is missing or expired.
+     */
+    Item peek(String key) {
+        var item = _items.get(key);
+        return item != null && !item.isExpired(System.currentTimeMillis()) ? item : null;
+    }
+
+    /**
+     * Stores an item.
+     *
+     * @param mode    a storage mode.
+     * @param key     an item key.
+     * @param flags   client flags.
+     * @param exptime expiration in memcached format.
+     * @param data    item data.
+     * @param cas     expected cas value for CAS mode or non-zero cas to compare in other modes.
+     * @return the storage result.
+     */
+    Result store(Mode mode, String key, int flags, long exptime, byte[] data, long cas) {
+        cmdSet.incrementAndGet();
+
+        var now = System.currentTimeMillis();
+        var expiresAt = toExpiresAt(exptime);
+        var status = new Status[1];
+
+        var item = _items.compute(key, (k, current) -> {
+            if (current != null && current.isExpired(now))
+                current = null;
+
+            if (cas != 0 && (mode == Mode.CAS || current != null)) {
+                if (current == null) {
+                    status[0] = Status.NOT_FOUND;
+                    return null;
+                }
+                if (current.cas != cas) {
+                    status[0] = Status.EXISTS;
+                    return current;
+                }
+            }
+
+            switch (mode) {
+                case ADD:
+                    if (current != null) {
+                        status[0] = Status.NOT_STORED;
+                        return current;
+                    }
+                    break;
+                case REPLACE:
+                    if (current == null) {
+                        status[0] = Status.NOT_STORED;
+                        return null;
+                    }
+                    break;
+                case APPEND:
+                case PREPEND:
+                    if (current == null) {
+                        status[0] = Status.NOT_STORED;
+                        return null;
+                    }
+                    var joined = new byte[current.data.length + data.length];
+                    var first = mode == Mode.APPEND ? current.data : data;
+                    var second = mode == Mode.APPEND ? data : current.data;
+                    System.arraycopy(first, 0, joined, 0, first.length);
+                    System.arraycopy(second, 0, joined, first.length, second.length);
+                    status[0] = Status.STORED;
+                    return new Item(joined, current.flags, current.expiresAt, nextCas(), now);
+                default:
+                    break;
+            }
+
+            status[0] = Status.STORED;
+            return new Item(data, flags, expiresAt, nextCas(), now);
+        });
+
+        if (status[0] == Status.STORED)
+            totalItems.incrementAndGet();
+        if (mode == Mode.CAS) {
+            if (status[0] == Status.STORED)
+                casHits.incrementAndGet();
+            else if (status[0] == Status.EXISTS)
+                casBadval.incrementAndGet();
+            else
+                casMisses.incrementAndGet();
+        }
+
+        return new Result(status[0], item);
+    }
+
+    /**
+     * Deletes an item.
+     *
+     * @param key an item key.
+     * @param cas non-zero cas value to compare before deleting.
+     * @return DELETED as STORED, NOT_FOUND or EXISTS when cas does not match.
+     */
+    Status delete(String key, long cas) {
+        var now = System.currentTimeMillis();
+        var status = new Status[1];
+
+        _items.compute(key, (k, current) -> {
+            if (current == null || current.isExpired(now)) {
+                status[0] = Status.NOT_FOUND;
+                return null;
+            }
+            if (cas != 0 && current.cas != cas) {
+                status[0] = Status.EXISTS;
+                return current;
+            }
+            status[0] = Status.STORED;
+            return null;
+        });
+
+        if (status[0] == Status.STORED)
+            deleteHits.incrementAndGet();
+        else
+            deleteMisses.incrementAndGet();
+        return status[0];
+    }
+
+    /**
+     * Gets an item with semantics of the meta "mg" command.
+     * <p>
+     * The first client that gets a missing item with vivify set, a stale item or an item
+     * which remaining time to live is below recache wins the right to recompute it.
+     * Other clients get the item with the win-sent mark until it is stored again.
+     *
+     * @param key     an item key.
+     * @param vivify  expiration of an empty item created on a miss or <code>null</code> to not create it.
+     * @param recache remaining time to live in seconds below which the client wins the recompute or <code>null</code>.
+     * @param touch   new expiration of the item in memcached format or <code>null</code> to keep it.
+     * @return the result with the item or <code>null</code> item on a miss.
+     */
+    MetaResult metaGet(String key, Long vivify, Long recache, Long touch) {
+        cmdGet.incrementAndGet();
+        if (touch != null)
+            cmdTouch.incrementAndGet();
+
+        var now = System.currentTimeMillis();
+        // Win, win-sent and hit marks of the result
+        var marks = new boolean[3];
+
+        var item = _items.compute(key, (k, current) -> {
+            if (current != null && current.isExpired(now))
+                current = null;
+
+            if (current == null) {
+                if (vivify == null)
+                    return null;
+                marks[0] = true;
+                return new Item(new byte[0], 0, toExpiresAt(vivify), nextCas(), now, false, true);
+            }
+
+            marks[2] = true;
+            var expiresAt = touch != null ? toExpiresAt(touch) : current.expiresAt;
+            var winSent = current.winSent;
+            if (winSent) {
+                marks[1] = true;
+            } else if (current.stale || recache != null && expiresAt != 0 && expiresAt - now < recache * 1000) {
+                marks[0] = true;
+                winSent = true;
+            }
+            return new Item(current.data, current.flags, expiresAt, current.cas, now, current.stale, winSent);
+        });
+
+        if (marks[2])
+            getHits.incrementAndGet();
+        else
+            getMisses.incrementAndGet();
+        return new MetaResult(item, marks[0], marks[1]);
+    }
+
+    /**
+     * Deletes or invalidates an item with semantics of the meta "md" command.
+     * Invalidated items are kept as stale, so the next "mg" wins the recompute
+     * while other clients still get the old value.
+     *
+     * @param key        an item key.
+     * @param cas        non-zero cas value to compare before deleting.
+     * @param invalidate true to mark the item as stale instead of deleting it.
+     * @param exptime    new expiration of an invalidated item in memcached format or <code>null</code> to keep it.
+     * @return DELETED as STORED, NOT_FOUND or EXISTS when cas does not match.
+     */
+    Status metaDelete(String key, long cas, boolean invalidate, Long exptime) {
+        if (!invalidate)
+            return delete(key, cas);
+
+        var now = System.currentTimeMillis();
+        var status = new Status[]{Status.NOT_FOUND};
+
+        _items.computeIfPresent(key, (k, current) -> {
+            if (current.isExpired(now))
+                return null;
+            if (cas != 0 && current.cas != cas) {
+                status[0] = Status.EXISTS;
+                return current;
+            }
+            status[0] = Status.STORED;
+            var expiresAt = exptime != null ? toExpiresAt(exptime) : current.expiresAt;
+            return new Item(current.data, current.flags, expiresAt, nextCas(), current.lastAccess, true, false);
+        });
+
+        if (status[0] == Status.STORED)
+            deleteHits.incrementAndGet();
+        else
+            deleteMisses.incrementAndGet();
+        return status[0];
+    }
+
+    /**
+     * Updates expiration of an item.
+     *
+     * @param key     an item key.
+     * @param exptime expiration in memcached format.
+     * @return the touched item or <code>null</code> if it is missing.
+     */
+    Item touch(String key, long exptime) {
+        cmdTouch.incrementAndGet();
+
+        var now = System.currentTimeMillis();
+        var expiresAt = toExpiresAt(exptime);
+        return _items.computeIfPresent(key, (k, current) -> {
+            if (current.isExpired(now))
+                return null;
+            return new Item(current.data, current.flags, expiresAt, current.cas, now, current.stale, current.winSent);
+        });
+    }
+
+    /**
+     * Increments or decrements a numeric item.
+     *
+     * @param key       an item key.
+     * @param delta     an unsigned delta.
+     * @param decrement true to decrement and false to increment.
+     * @param initial   an initial value to create missing items with or <code>null</code> to fail on missing items.
+     * @param exptime   expiration of created items in memcached format.
+     * @return the result with the updated item or NOT_FOUND or NON_NUMERIC status.
+     */
+    Result incr(String key, long delta, boolean decrement, Long initial, long exptime) {
+        var now = System.currentTimeMillis();
+        var status = new Status[1];
+
+        var item = _items.compute(key, (k, current) -> {
+            if (current != null && current.isExpired(now))
+                current = null;
+
+            if (current == null) {
+                if (initial == null) {
+                    status[0] = Status.NOT_FOUND;
+                    return null;
+                }
+                status[0] = Status.STORED;
+                return new Item(Long.toUnsignedString(initial).getBytes(StandardCharsets.US_ASCII),
+                        0, toExpiresAt(exptime), nextCas(), now);
+            }
+
+            long value;
+            try {
+                value = Long.parseUnsignedLong(new String(current.data, StandardCharsets.US_ASCII).trim());
+            } catch (NumberFormatException ex) {
+                status[0] = Status.NON_NUMERIC;
+                return current;
+            }
+
+            if (decrement)
+                value = Long.compareUnsigned(value, delta) < 0 ? 0 : value - delta;
+            else
+                value = value + delta;
+
+            status[0] = Status.STORED;
+            return new Item(Long.toUnsignedString(value).getBytes(StandardCharsets.US_ASCII),
+                    current.flags, current.expiresAt, nextCas(), now);
+        });
+
+        if (status[0] == Status.STORED)
+            incrHits.incrementAndGet();
+        else if (status[0] == Status.NOT_FOUND)
+            incrMisses.incrementAndGet();
+        return new Result(status[0], item);
+    }
+
+    /**
+     * Removes all items.
+     */
+    void flush() {
+        _items.clear();
+    }
+
+    /**
+     * Gets the number of live items.
+     *
+     * @return the number of items.
+     */
+    long countItems() {
+        var now = System.currentTimeMillis();
+        return _items.values().stream().filter(item -> !item.isExpired(now)).count();
+    }
+
+    /**
+     * Gets the total size of live item data.
+     *
+     * @return the size in bytes.
+     */
+    long countBytes() {
+        var now = System.currentTimeMillis();
+        return _items.values().stream().filter(item -> !item.isExpired(now))
+                .mapToLong(item -> item.data.length).sum();
+    }
+
+    /**
+     * Gets the uptime of the store.
+     *
+     * @return the uptime in seconds.
+     */
+    long getUptime() {
+        return (System.currentTimeMillis() - _startTime) / 1000;
+    }
+
+    /**
+     * Gets general statistics in the format of memcached "stats" command.
+     *
+     * @return statistics by their names.
+     */
+    Map<String, String> getStats() {
+        var stats = new java.util.LinkedHashMap<String, String>();
+        stats.put("pid", String.valueOf(ProcessHandle.current().pid()));
+        stats.put("uptime", String.valueOf(getUptime()));
+        stats.put("time", String.valueOf(System.currentTimeMillis() / 1000));
+        stats.put("version", EmbeddedMemcachedServer.VERSION);
+        stats.put("curr_connections", String.valueOf(currConnections.get()));
+        stats.put("total_connections", String.valueOf(totalConnections.get()));
+        stats.put("cmd_get", String.valueOf(cmdGet.get()));
+        stats.put("cmd_set", String.valueOf(cmdSet.get()));
+        stats.put("cmd_touch", String.valueOf(cmdTouch.get()));
+        stats.put("get_hits", String.valueOf(getHits.get()));
+        stats.put("get_misses", String.valueOf(getMisses.get()));
+        stats.put("delete_hits", String.valueOf(deleteHits.get()));
+        stats.put("delete_misses", String.valueOf(deleteMisses.get()));
+        stats.put("incr_hits", String.valueOf(incrHits.get()));
+        stats.put("incr_misses", String.valueOf(incrMisses.get()));
+        stats.put("cas_hits", String.valueOf(casHits.get()));
+        stats.put("cas_misses", String.valueOf(casMisses.get()));
+        stats.put("cas_badval", String.valueOf(casBadval.get()));
+        stats.put("bytes_read", String.valueOf(bytesRead.get()));
+        stats.put("bytes_written", String.valueOf(bytesWritten.get()));
+        stats.put("curr_items", String.valueOf(countItems()));
+        stats.put("total_items", String.valueOf(totalItems.get()));
+        stats.put("bytes", String.valueOf(countBytes()));
+        stats.put("evictions", "0");
+        stats.put("limit_maxbytes", String.valueOf(Runtime.getRuntime().maxMemory()));
+        return stats;
+    }
+
+    /**
+     * Gets statistics of a group in the format of memcached "stats &lt;group&gt;" command.
+     *
+     * @param group a group name: empty for general statistics, slabs or items.
+     * @return statistics by their names or <code>null</code> if the group is not supported.
+     */
+    Map<String, String> getStats(String group) {
+        if (group == null || group.isEmpty())
+            return getStats();
+        if ("slabs".equals(group))
+            return getSlabStats();
+        if ("items".equals(group))
+            return getItemStats();
+        return null;
+    }
+
+    /**
+     * Gets the size of the slab class chunk an item is stored in.
+     * Slab classes emulate memcached defaults: 96 bytes for the smallest chunk and growth factor of 1.25.
+     *
+     * @param size a size of the item with its key and header.
+     * @return a slab class id starting from 1.
+     */
+    private static int toSlabClass(long size) {
+        var slabClass = 1;
+        var chunkSize = SMALLEST_CHUNK_SIZE;
+        while (chunkSize < size && chunkSize < PAGE_SIZE) {
+            chunkSize = toChunkSize(slabClass + 1);
+            slabClass++;
+        }
+        return slabClass;
+    }
+
+    private static int toChunkSize(int slabClass) {
+        var size = (double) SMALLEST_CHUNK_SIZE;
+        for (var i = 1; i < slabClass; i++)
+            size *= GROWTH_FACTOR;
+        var chunkSize = ((int) size + 7) & ~7;
+        return Math.min(chunkSize, PAGE_SIZE);
+    }
+
+    private Map<Integer, long[]> countSlabs() {
+        // Used chunks, requested memory and the oldest access time by slab class
+        var slabs = new java.util.TreeMap<Integer, long[]>();
+        var now = System.currentTimeMillis();
+        for (var entry : _items.entrySet()) {
+            var item = entry.getValue();
+            if (item.isExpired(now))
+                continue;
+
+            var size = ITEM_HEADER_SIZE + entry.getKey().length() + item.data.length;
+            var slab = slabs.computeIfAbsent(toSlabClass(size), (key) -> new long[]{0, 0, now});
+            slab[0]++;
+            slab[1] += size;
+            slab[2] = Math.min(slab[2], item.lastAccess);
+        }
+        return slabs;
+    }
+
+    private Map<String, String> getSlabStats() {
+        var stats = new java.util.LinkedHashMap<String, String>();
+        long totalMalloced = 0;
+        var slabs = countSlabs();
+        for (var slab : slabs.entrySet()) {
+            var id = slab.getKey();
+            var chunkSize = toChunkSize(id);
+            var chunksPerPage = Math.max(1, PAGE_SIZE / chunkSize);
+            var usedChunks = slab.getValue()[0];
+            var totalPages = (usedChunks + chunksPerPage - 1) / chunksPerPage;
+            var totalChunks = totalPages * chunksPerPage;
+            totalMalloced += totalPages * PAGE_SIZE;
+
+            stats.put(id + ":chunk_size", String.valueOf(chunkSize));
+            stats.put(id + ":chunks_per_page", String.valueOf(chunksPerPage));
+            stats.put(id + ":total_pages", String.valueOf(totalPages));
+            stats.put(id + ":total_chunks", String.valueOf(totalChunks));
+            stats.put(id + ":used_chunks", String.valueOf(usedChunks));
+            stats.put(id + ":free_chunks", String.valueOf(totalChunks - usedChunks));
+            stats.put(id + ":free_chunks_end", "0");
+            stats.put(id + ":mem_requested", String.valueOf(slab.getValue()[1]));
+        }
+        stats.put("active_slabs", String.valueOf(slabs.size()));
+        stats.put("total_malloced", String.valueOf(totalMalloced));
+        return stats;
+    }
+
+    private Map<String, String> getItemStats() {
+        var stats = new java.util.LinkedHashMap<String, String>();
+        var now = System.currentTimeMillis();
+        for (var slab : countSlabs().entrySet()) {
+            var prefix = "items:" + slab.getKey() + ":";
+            stats.put(prefix + "number", String.valueOf(slab.getValue()[0]));
+            stats.put(prefix + "age", String.valueOf((now - slab.getValue()[2]) / 1000));
+            stats.put(prefix + "evicted", "0");
+            stats.put(prefix + "evicted_nonzero", "0");
+            stats.put(prefix + "evicted_time", "0");
+            stats.put(prefix + "outofmemory", "0");
+            stats.put(prefix + "reclaimed", "0");
+            stats.put(prefix + "expired_unfetched", "0");
+            stats.put(prefix + "evicted_unfetched", "0");
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,68 @@
+package org.pipservices3.memcached.embedded;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Resolves the memcached server used by tests and benchmarks.
+ * <p>
+ * When MEMCACHED_SERVICE_HOST environment variable is set, the external server
+ * at MEMCACHED_SERVICE_HOST and MEMCACHED_SERVICE_PORT (default 11211) is used.
+ * Otherwise a shared {@link EmbeddedMemcachedServer} is started on a random port
+ * and kept running until the JVM exits.
+ */
+public class MemcachedTestServer {
+    private static EmbeddedMemcachedServer _server;
+
+    /**
+     * Checks if tests run against the embedded server.
+     *
+     * @return <code>true</code> if the embedded server is used and <code>false</code> otherwise.
+     */
+    public static boolean isEmbedded() {
+        return System.getenv("MEMCACHED_SERVICE_HOST") == null;
+    }
+
+    /**
+     * Gets the host of the memcached server.
+     *
+     * @return the server host.
+     */
+    public static String getHost() {
+        if (!isEmbedded())
+            return System.getenv("MEMCACHED_SERVICE_HOST");
+        return getEmbeddedServer().getHost();
+    }
+
+    /**
+     * Gets the port of the memcached server.
+     *
+     * @return the server port.
+     */
+    public static int getPort() {
+        if (!isEmbedded()) {
+            return System.getenv("MEMCACHED_SERVICE_PORT") != null
+                    ? Integer.parseInt(System.getenv("MEMCACHED_SERVICE_PORT")) : 11211;
+        }
+        return getEmbeddedServer().getPort();
+    }
+
+    /**
+     * Gets the shared embedded server and starts it on the first call.
+     *
+     * @return the running embedded server.
+     */
+    public static synchronized EmbeddedMemcachedServer getEmbeddedServer() {
+        if (_server == null) {
+            var server = new EmbeddedMemcachedServer();
+            try {
+                server.start();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to start embedded memcached server", ex);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            _server = server;
+        }
+        return _server;
+    }
+}
@@ -0,0 +1,19 @@
+package org.pipservices3.memcached.embedded;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Handler of a memcached wire protocol for a single connection.
+ */
+interface ProtocolHandler {
+    /**
+     * Processes all complete commands in the input buffer.
+     * Incomplete commands are left in the buffer until more data is received.
+     *
+     * @param input  a buffer with received data in read mode.
+     * @param output a stream to write responses to.
+     * @return <code>false</code> if the connection shall be closed.
+     */
+    boolean process(ByteBuffer input, ByteArrayOutputStream output);
+}
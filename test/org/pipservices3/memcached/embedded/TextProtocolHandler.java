@@ -0,0 +1,676 @@
+package org.pipservices3.memcached.embedded;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handler of memcached text protocol.
+ * <p>
+ * Supported commands: get, gets, gat, gats, set, add, replace, append, prepend, cas,
+ * delete, touch, incr, decr, flush_all, stats, version, verbosity and quit.
+ * Meta commands mg, ms, md, ma and mn support the flags used for values, ttl, cas,
+ * vivify-on-miss, recache, invalidation and counters.
+ */
+class TextProtocolHandler implements ProtocolHandler {
+    private static final int MAX_LINE_LENGTH = 2048;
+    private static final int MAX_KEY_LENGTH = 250;
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final EmbeddedMemcachedStore _store;
+    private final int _maxItemSize;
+
+    TextProtocolHandler(EmbeddedMemcachedStore store, int maxItemSize) {
+        _store = store;
+        _maxItemSize = maxItemSize;
+    }
+
+    @Override
+    public boolean process(ByteBuffer input, ByteArrayOutputStream output) {
+        while (input.hasRemaining()) {
+            var start = input.position();
+            var lineEnd = findLineEnd(input, start);
+            if (lineEnd < 0) {
+                if (input.remaining() > MAX_LINE_LENGTH) {
+                    writeLine(output, "CLIENT_ERROR line is too long");
+                    return false;
+                }
+                return true;
+            }
+
+            var line = new String(input.array(), input.arrayOffset() + start, lineEnd - start, StandardCharsets.US_ASCII);
+            var next = lineEnd + 2;
+            var tokens = tokenize(line);
+
+            if (tokens.isEmpty()) {
+                input.position(next);
+                writeLine(output, "ERROR");
+                continue;
+            }
+
+            var command = tokens.get(0);
+            switch (command) {
+                case "set":
+                case "add":
+                case "replace":
+                case "append":
+                case "prepend":
+                case "cas":
+                    var consumed = processStorage(command, tokens, input, next, output);
+                    if (consumed < 0)
+                        return true;
+                    input.position(consumed);
+                    break;
+                case "ms":
+                    var metaConsumed = processMetaSet(tokens, input, next, output);
+                    if (metaConsumed < 0)
+                        return true;
+                    input.position(metaConsumed);
+                    break;
+                case "quit":
+                    input.position(next);
+                    return false;
+                default:
+                    input.position(next);
+                    processCommand(command, tokens, output);
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Processes a storage command with its data block.
+     *
+     * @return the position after the data block or -1 if the data is incomplete.
+     */
+    private int processStorage(String command, List<String> tokens, ByteBuffer input, int dataStart, ByteArrayOutputStream output) {
+        var isCas = "cas".equals(command);
+        var required = isCas ? 6 : 5;
+
+        if (tokens.size() < required || tokens.get(1).length() > MAX_KEY_LENGTH) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return dataStart;
+        }
+
+        String key = tokens.get(1);
+        int flags;
+        long exptime;
+        int length;
+        long cas = 0;
+        try {
+            flags = (int) Long.parseLong(tokens.get(2));
+            exptime = Long.parseLong(tokens.get(3));
+            length = Integer.parseInt(tokens.get(4));
+            if (isCas)
+                cas = Long.parseUnsignedLong(tokens.get(5));
+        } catch (NumberFormatException ex) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return dataStart;
+        }
+
+        if (length < 0) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return dataStart;
+        }
+
+        var dataEnd = dataStart + length;
+        if (dataEnd + 2 > input.limit())
+            return -1;
+
+        var noreply = "noreply".equals(tokens.get(tokens.size() - 1)) && tokens.size() > required;
+
+        var array = input.array();
+        var offset = input.arrayOffset();
+        if (array[offset + dataEnd] != '\r' || array[offset + dataEnd + 1] != '\n') {
+            writeLine(output, "CLIENT_ERROR bad data chunk");
+            return dataEnd + 2;
+        }
+
+        if (length > _maxItemSize) {
+            writeLine(output, "SERVER_ERROR object too large for cache");
+            return dataEnd + 2;
+        }
+
+        var data = new byte[length];
+        System.arraycopy(array, offset + dataStart, data, 0, length);
+
+        var mode = EmbeddedMemcachedStore.Mode.valueOf(command.toUpperCase());
+        var result = _store.store(mode, key, flags, exptime, data, cas);
+
+        if (!noreply) {
+            switch (result.status) {
+                case STORED:
+                    writeLine(output, "STORED");
+                    break;
+                case EXISTS:
+                    writeLine(output, "EXISTS");
+                    break;
+                case NOT_FOUND:
+                    writeLine(output, "NOT_FOUND");
+                    break;
+                default:
+                    writeLine(output, "NOT_STORED");
+                    break;
+            }
+        }
+        return dataEnd + 2;
+    }
+
+    /**
+     * Processes a meta set command with its data block.
+     *
+     * @return the position after the data block or -1 if the data is incomplete.
+     */
+    private int processMetaSet(List<String> tokens, ByteBuffer input, int dataStart, ByteArrayOutputStream output) {
+        if (tokens.size() < 3 || tokens.get(1).length() > MAX_KEY_LENGTH) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return dataStart;
+        }
+
+        var key = tokens.get(1);
+        int length;
+        var flags = 0;
+        long exptime = 0;
+        long cas = 0;
+        var mode = EmbeddedMemcachedStore.Mode.SET;
+        var quiet = false;
+        var reply = new StringBuilder();
+        try {
+            length = Integer.parseInt(tokens.get(2));
+            for (var flag : tokens.subList(3, tokens.size())) {
+                var value = flag.substring(1);
+                switch (flag.charAt(0)) {
+                    case 'F':
+                        flags = (int) Long.parseLong(value);
+                        break;
+                    case 'T':
+                        exptime = Long.parseLong(value);
+                        break;
+                    case 'C':
+                        cas = Long.parseUnsignedLong(value);
+                        break;
+                    case 'M':
+                        mode = toMetaMode(value);
+                        break;
+                    case 'q':
+                        quiet = true;
+                        break;
+                    case 'O':
+                        reply.append(' ').append(flag);
+                        break;
+                    case 'k':
+                        reply.append(" k").append(key);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return dataStart;
+        }
+
+        if (length < 0 || mode == null) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return dataStart;
+        }
+
+        var dataEnd = dataStart + length;
+        if (dataEnd + 2 > input.limit())
+            return -1;
+
+        var array = input.array();
+        var offset = input.arrayOffset();
+        if (array[offset + dataEnd] != '\r' || array[offset + dataEnd + 1] != '\n') {
+            writeLine(output, "CLIENT_ERROR bad data chunk");
+            return dataEnd + 2;
+        }
+
+        if (length > _maxItemSize) {
+            writeLine(output, "SERVER_ERROR object too large for cache");
+            return dataEnd + 2;
+        }
+
+        var data = new byte[length];
+        System.arraycopy(array, offset + dataStart, data, 0, length);
+
+        var result = _store.store(mode, key, flags, exptime, data, cas);
+        switch (result.status) {
+            case STORED:
+                if (!quiet)
+                    writeLine(output, "HD" + reply);
+                break;
+            case EXISTS:
+                writeLine(output, "EX" + reply);
+                break;
+            case NOT_FOUND:
+                writeLine(output, "NF" + reply);
+                break;
+            default:
+                writeLine(output, "NS" + reply);
+                break;
+        }
+        return dataEnd + 2;
+    }
+
+    private static EmbeddedMemcachedStore.Mode toMetaMode(String mode) {
+        switch (mode) {
+            case "E":
+            case "e":
+                return EmbeddedMemcachedStore.Mode.ADD;
+            case "A":
+            case "a":
+                return EmbeddedMemcachedStore.Mode.APPEND;
+            case "P":
+            case "p":
+                return EmbeddedMemcachedStore.Mode.PREPEND;
+            case "R":
+            case "r":
+                return EmbeddedMemcachedStore.Mode.REPLACE;
+            case "S":
+            case "s":
+                return EmbeddedMemcachedStore.Mode.SET;
+            default:
+                return null;
+        }
+    }
+
+    private void processMetaGet(List<String> tokens, ByteArrayOutputStream output) {
+        if (tokens.size() < 2 || tokens.get(1).length() > MAX_KEY_LENGTH) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return;
+        }
+
+        var key = tokens.get(1);
+        var flags = tokens.subList(2, tokens.size());
+        Long vivify = null;
+        Long recache = null;
+        Long touch = null;
+        var withValue = false;
+        var quiet = false;
+        try {
+            for (var flag : flags) {
+                switch (flag.charAt(0)) {
+                    case 'v':
+                        withValue = true;
+                        break;
+                    case 'q':
+                        quiet = true;
+                        break;
+                    case 'N':
+                        vivify = Long.parseLong(flag.substring(1));
+                        break;
+                    case 'R':
+                        recache = Long.parseLong(flag.substring(1));
+                        break;
+                    case 'T':
+                        touch = Long.parseLong(flag.substring(1));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return;
+        }
+
+        var result = _store.metaGet(key, vivify, recache, touch);
+        var item = result.item;
+        if (item == null) {
+            if (!quiet)
+                writeLine(output, "EN");
+            return;
+        }
+
+        var reply = new StringBuilder();
+        for (var flag : flags) {
+            switch (flag.charAt(0)) {
+                case 'f':
+                    reply.append(" f").append(Integer.toUnsignedString(item.flags));
+                    break;
+                case 'c':
+                    reply.append(" c").append(item.cas);
+                    break;
+                case 't':
+                    var ttl = item.expiresAt == 0 ? -1
+                            : Math.max(0, (item.expiresAt - System.currentTimeMillis() + 999) / 1000);
+                    reply.append(" t").append(ttl);
+                    break;
+                case 's':
+                    reply.append(" s").append(item.data.length);
+                    break;
+                case 'k':
+                    reply.append(" k").append(key);
+                    break;
+                case 'O':
+                    reply.append(' ').append(flag);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (result.win)
+            reply.append(" W");
+        if (item.stale)
+            reply.append(" X");
+        if (result.winSent)
+            reply.append(" Z");
+
+        if (withValue) {
+            writeLine(output, "VA " + item.data.length + reply);
+            output.write(item.data, 0, item.data.length);
+            output.write(CRLF, 0, CRLF.length);
+        } else {
+            writeLine(output, "HD" + reply);
+        }
+    }
+
+    private void processMetaDelete(List<String> tokens, ByteArrayOutputStream output) {
+        if (tokens.size() < 2 || tokens.get(1).length() > MAX_KEY_LENGTH) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return;
+        }
+
+        var key = tokens.get(1);
+        long cas = 0;
+        Long exptime = null;
+        var invalidate = false;
+        var quiet = false;
+        var reply = new StringBuilder();
+        try {
+            for (var flag : tokens.subList(2, tokens.size())) {
+                switch (flag.charAt(0)) {
+                    case 'C':
+                        cas = Long.parseUnsignedLong(flag.substring(1));
+                        break;
+                    case 'T':
+                        exptime = Long.parseLong(flag.substring(1));
+                        break;
+                    case 'I':
+                        invalidate = true;
+                        break;
+                    case 'q':
+                        quiet = true;
+                        break;
+                    case 'O':
+                        reply.append(' ').append(flag);
+                        break;
+                    case 'k':
+                        reply.append(" k").append(key);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return;
+        }
+
+        var status = _store.metaDelete(key, cas, invalidate, exptime);
+        switch (status) {
+            case STORED:
+                if (!quiet)
+                    writeLine(output, "HD" + reply);
+                break;
+            case EXISTS:
+                writeLine(output, "EX" + reply);
+                break;
+            default:
+                writeLine(output, "NF" + reply);
+                break;
+        }
+    }
+
+    private void processMetaArithmetic(List<String> tokens, ByteArrayOutputStream output) {
+        if (tokens.size() < 2 || tokens.get(1).length() > MAX_KEY_LENGTH) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return;
+        }
+
+        var key = tokens.get(1);
+        Long vivify = null;
+        long initial = 0;
+        long delta = 1;
+        var decrement = false;
+        var withValue = false;
+        var quiet = false;
+        var reply = new StringBuilder();
+        try {
+            for (var flag : tokens.subList(2, tokens.size())) {
+                var value = flag.substring(1);
+                switch (flag.charAt(0)) {
+                    case 'N':
+                        vivify = Long.parseLong(value);
+                        break;
+                    case 'J':
+                        initial = Long.parseUnsignedLong(value);
+                        break;
+                    case 'D':
+                        delta = Long.parseUnsignedLong(value);
+                        break;
+                    case 'M':
+                        if ("D".equalsIgnoreCase(value) || "-".equals(value))
+                            decrement = true;
+                        else if (!"I".equalsIgnoreCase(value) && !"+".equals(value))
+                            throw new NumberFormatException();
+                        break;
+                    case 'v':
+                        withValue = true;
+                        break;
+                    case 'q':
+                        quiet = true;
+                        break;
+                    case 'O':
+                        reply.append(' ').append(flag);
+                        break;
+                    case 'k':
+                        reply.append(" k").append(key);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+            writeLine(output, "CLIENT_ERROR bad command line format");
+            return;
+        }
+
+        var result = _store.incr(key, delta, decrement, vivify != null ? initial : null, vivify != null ? vivify : 0);
+        switch (result.status) {
+            case STORED:
+                if (withValue) {
+                    writeLine(output, "VA " + result.item.data.length + reply);
+                    output.write(result.item.data, 0, result.item.data.length);
+                    output.write(CRLF, 0, CRLF.length);
+                } else if (!quiet) {
+                    writeLine(output, "HD" + reply);
+                }
+                break;
+            case NON_NUMERIC:
+                writeLine(output, "CLIENT_ERROR cannot increment or decrement non-numeric value");
+                break;
+            default:
+                writeLine(output, "NF" + reply);
+                break;
+        }
+    }
+
+    private void processCommand(String command, List<String> tokens, ByteArrayOutputStream output) {
+        var noreply = tokens.size() > 1 && "noreply".equals(tokens.get(tokens.size() - 1));
+
+        switch (command) {
+            case "get":
+            case "gets":
+                processGet(tokens.subList(1, tokens.size()), "gets".equals(command), null, output);
+                break;
+            case "gat":
+            case "gats":
+                if (tokens.size() < 3) {
+                    writeLine(output, "ERROR");
+                    break;
+                }
+                try {
+                    var exptime = Long.parseLong(tokens.get(1));
+                    processGet(tokens.subList(2, tokens.size()), "gats".equals(command), exptime, output);
+                } catch (NumberFormatException ex) {
+                    writeLine(output, "CLIENT_ERROR invalid exptime argument");
+                }
+                break;
+            case "delete": {
+                if (tokens.size() < 2) {
+                    writeLine(output, "ERROR");
+                    break;
+                }
+                var status = _store.delete(tokens.get(1), 0);
+                if (!noreply)
+                    writeLine(output, status == EmbeddedMemcachedStore.Status.STORED ? "DELETED" : "NOT_FOUND");
+                break;
+            }
+            case "touch": {
+                if (tokens.size() < 3) {
+                    writeLine(output, "ERROR");
+                    break;
+                }
+                try {
+                    var item = _store.touch(tokens.get(1), Long.parseLong(tokens.get(2)));
+                    if (!noreply)
+                        writeLine(output, item != null ? "TOUCHED" : "NOT_FOUND");
+                } catch (NumberFormatException ex) {
+                    writeLine(output, "CLIENT_ERROR invalid exptime argument");
+                }
+                break;
+            }
+            case "incr":
+            case "decr": {
+                if (tokens.size() < 3) {
+                    writeLine(output, "ERROR");
+                    break;
+                }
+                long delta;
+                try {
+                    delta = Long.parseUnsignedLong(tokens.get(2));
+                } catch (NumberFormatException ex) {
+                    writeLine(output, "CLIENT_ERROR invalid numeric delta argument");
+                    break;
+                }
+                var result = _store.incr(tokens.get(1), delta, "decr".equals(command), null, 0);
+                if (noreply)
+                    break;
+                switch (result.status) {
+                    case STORED:
+                        writeLine(output, new String(result.item.data, StandardCharsets.US_ASCII));
+                        break;
+                    case NON_NUMERIC:
+                        writeLine(output, "CLIENT_ERROR cannot increment or decrement non-numeric value");
+                        break;
+                    default:
+                        writeLine(output, "NOT_FOUND");
+                        break;
+                }
+                break;
+            }
+            case "flush_all":
+                _store.flush();
+                if (!noreply)
+                    writeLine(output, "OK");
+                break;
+            case "stats": {
+                var stats = _store.getStats(tokens.size() > 1 ? tokens.get(1) : null);
+                if (stats == null) {
+                    writeLine(output, "ERROR");
+                    break;
+                }
+                for (var stat : stats.entrySet())
+                    writeLine(output, "STAT " + stat.getKey() + " " + stat.getValue());
+                writeLine(output, "END");
+                break;
+            }
+            case "mg":
+                processMetaGet(tokens, output);
+                break;
+            case "md":
+                processMetaDelete(tokens, output);
+                break;
+            case "ma":
+                processMetaArithmetic(tokens, output);
+                break;
+            case "mn":
+                writeLine(output, "MN");
+                break;
+            case "version":
+                writeLine(output, "VERSION " + EmbeddedMemcachedServer.VERSION);
+                break;
+            case "verbosity":
+                if (!noreply)
+                    writeLine(output, "OK");
+                break;
+            default:
+                writeLine(output, "ERROR");
+                break;
+        }
+    }
+
+    private void processGet(List<String> keys, boolean withCas, Long exptime, ByteArrayOutputStream output) {
+        if (keys.isEmpty()) {
+            writeLine(output, "ERROR");
+            return;
+        }
+
+        for (var key : keys) {
+            var item = exptime != null ? _store.touch(key, exptime) : _store.get(key);
+            if (item == null)
+                continue;
+
+            var header = "VALUE " + key + " " + Integer.toUnsignedString(item.flags) + " " + item.data.length
+                    + (withCas ? " " + item.cas : "");
+            writeLine(output, header);
+            output.write(item.data, 0, item.data.length);
+            output.write(CRLF, 0, CRLF.length);
+        }
+        writeLine(output, "END");
+    }
+
+    /**
+     * Finds the end of a line terminated by CRLF.
+     *
+     * @return the position of CR or -1 if the line is incomplete.
+     */
+    static int findLineEnd(ByteBuffer input, int start) {
+        var array = input.array();
+        var offset = input.arrayOffset();
+        for (var index = start; index + 1 < input.limit(); index++) {
+            if (array[offset + index] == '\r' && array[offset + index + 1] == '\n')
+                return index;
+        }
+        return -1;
+    }
+
+    static List<String> tokenize(String line) {
+        var tokens = new ArrayList<String>();
+        var start = -1;
+        for (var index = 0; index < line.length(); index++) {
+            if (line.charAt(index) == ' ') {
+                if (start >= 0)
+                    tokens.add(line.substring(start, index));
+                start = -1;
+            } else if (start < 0) {
+                start = index;
+            }
+        }
+        if (start >= 0)
+            tokens.add(line.substring(start));
+        return tokens;
+    }
+
+    static void writeLine(ByteArrayOutputStream output, String line) {
+        var bytes = line.getBytes(StandardCharsets.US_ASCII);
+        output.write(bytes, 0, bytes.length);
+        output.write(CRLF, 0, CRLF.length);
+    }
+}
@@ -1,6 +1,5 @@
 package org.pipservices3.memcached.fixtures;
 
-import org.pipservices3.commons.convert.JsonConverter;
 import org.pipservices3.components.cache.ICache;
 
 import java.io.IOException;
@@ -49,8 +48,8 @@ public class CacheFixture {
         assertEquals(VALUE1, val);
 
         val = this._cache.retrieve(null, KEY2);
-        var resMap = JsonConverter.toMap(val.toString());
-        assertNotNull(resMap);
+        assertTrue(val instanceof Map);
+        var resMap = (Map<?, ?>) val;
         assertEquals(VALUE2.get("val"), resMap.get("val"));
 
         val = this._cache.retrieve(null, KEY3);
@@ -59,15 +58,14 @@ public class CacheFixture {
                 .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME), val.toString());
 
         val = this._cache.retrieve(null, KEY4);
-        var resList = JsonConverter.fromJson(List.class, (String) val);
-        assertNotNull(resList);
+        assertTrue(val instanceof List);
+        var resList = (List<?>) val;
         assertEquals(resList.size(), 4);
         assertEquals(VALUE4.get(0), resList.get(0));
 
         val = this._cache.retrieve(null, KEY5);
-        var resInt = Integer.parseInt((String)val);
-        assertNotNull(resInt);
-        assertEquals(VALUE5, resInt);
+        assertNotNull(val);
+        assertEquals(VALUE5, val);
 
         val = this._cache.retrieve(null, KEY6);
         assertNotNull(val);
@@ -5,16 +5,20 @@ import org.junit.Before;
 import org.junit.Test;
 import org.pipservices3.commons.config.ConfigParams;
 import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.commons.errors.ConfigException;
+import org.pipservices3.memcached.embedded.MemcachedTestServer;
 import org.pipservices3.memcached.fixtures.LockFixture;
 
+import static org.junit.Assert.*;
+
 public class RedisLockTest {
     MemcachedLock _lock;
     LockFixture _fixture;
 
     @Before
     public void setup() throws ApplicationException {
-        var host = System.getenv("MEMCACHED_SERVICE_HOST") != null ? System.getenv("MEMCACHED_SERVICE_HOST") : "localhost";
-        var port = System.getenv("MEMCACHED_SERVICE_PORT") != null ? Integer.parseInt(System.getenv("MEMCACHED_SERVICE_PORT")) : 11211;
+        var host = MemcachedTestServer.getHost();
+        var port = MemcachedTestServer.getPort();
 
         _lock = new MemcachedLock();
 
@@ -48,4 +52,22 @@ public class RedisLockTest {
     public void testReleaseLock() {
         _fixture.testReleaseLock();
     }
+
+    @Test
+    public void testMetaProtocolIsRejected() {
+        var lock = new MemcachedLock();
+        lock.configure(ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort(),
+                "options.protocol", "meta"
+        ));
+
+        try {
+            lock.open(null);
+            fail("Expected config error");
+        } catch (ApplicationException ex) {
+            assertTrue(ex instanceof ConfigException);
+            assertEquals("BAD_PROTOCOL", ex.getCode());
+        }
+    }
 }
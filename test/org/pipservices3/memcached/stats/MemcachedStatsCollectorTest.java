@@ -0,0 +1,93 @@
+package org.pipservices3.memcached.stats;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pipservices3.commons.config.ConfigParams;
+import org.pipservices3.commons.errors.ApplicationException;
+import org.pipservices3.memcached.cache.MemcachedCache;
+import org.pipservices3.memcached.embedded.MemcachedTestServer;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MemcachedStatsCollectorTest {
+    MemcachedStatsCollector _collector;
+    MemcachedCache _cache;
+
+    @Before
+    public void setup() throws ApplicationException {
+        var config = ConfigParams.fromTuples(
+                "connection.host", MemcachedTestServer.getHost(),
+                "connection.port", MemcachedTestServer.getPort(),
+                "options.interval", 0
+        );
+
+        _cache = new MemcachedCache();
+        _cache.configure(config);
+        _cache.open(null);
+
+        _collector = new MemcachedStatsCollector();
+        _collector.configure(config);
+        _collector.open(null);
+    }
+
+    @After
+    public void teardown() {
+        _collector.close(null);
+        _cache.close(null);
+    }
+
+    @Test
+    public void testCollect() {
+        _cache.store(null, "stats1", "value1", 5000);
+        _cache.retrieve(null, "stats1");
+        _cache.retrieve(null, "stats2");
+
+        var snapshots = _collector.collect(null);
+        assertEquals(1, snapshots.size());
+
+        var snapshot = snapshots.get(0);
+        assertSame(snapshot, _collector.getSnapshot(snapshot.getServer()));
+        assertTrue(snapshot.getCurrItems() >= 1);
+        assertTrue(snapshot.getCurrConnections() >= 1);
+        assertTrue(snapshot.getGetHits() >= 1);
+        assertTrue(snapshot.getGetMisses() >= 1);
+        assertTrue(snapshot.getHitRatio() > 0 && snapshot.getHitRatio() < 1);
+
+        assertFalse(snapshot.getSlabs().isEmpty());
+        var slab = snapshot.getSlabs().get(0);
+        assertTrue(slab.getUsedChunks() >= 1);
+        assertTrue(slab.getItems() >= 1);
+    }
+
+    @Test
+    public void testParse() {
+        var snapshot = MemcachedServerStats.parse("localhost:11211",
+                Map.of("curr_items", "10", "get_hits", "3", "get_misses", "1",
+                        "bytes", "256", "limit_maxbytes", "1024", "evictions", "7", "version", "1.6.21"),
+                Map.of("1:chunk_size", "96", "1:total_chunks", "10922", "1:used_chunks", "5461",
+                        "2:chunk_size", "120", "active_slabs", "2", "total_malloced", "2097152"),
+                Map.of("items:1:number", "5461", "items:1:evicted", "7", "items:1:age", "3600",
+                        "items:2:number", "0")
+        );
+
+        assertEquals("1.6.21", snapshot.getVersion());
+        assertEquals(10, snapshot.getCurrItems());
+        assertEquals(7, snapshot.getEvictions());
+        assertEquals(0.75, snapshot.getHitRatio(), 0.001);
+        assertEquals(0.25, snapshot.getMemoryUsage(), 0.001);
+        assertEquals(0, snapshot.getCurrConnections());
+
+        assertEquals(2, snapshot.getSlabs().size());
+        var slab = snapshot.getSlabs().get(0);
+        assertEquals(1, slab.getId());
+        assertEquals(96, slab.getChunkSize());
+        assertEquals(5461, slab.getItems());
+        assertEquals(7, slab.getEvicted());
+        assertEquals(3600, slab.getAge());
+        assertEquals(0.5, slab.getFillRatio(), 0.001);
+        assertEquals(120, snapshot.getSlabs().get(1).getChunkSize());
+    }
+}